@@ -0,0 +1,10 @@
+-- migrates a database created by the former db_setup.sql
+-- float ip columns become bigint, lookups get an index on ip_to
+
+set schema GEOLOCATION;
+
+ALTER TABLE iplocation ALTER COLUMN ip_from bigint NOT NULL;
+ALTER TABLE iplocation ALTER COLUMN ip_to bigint NOT NULL;
+
+ALTER TABLE iplocation ADD CONSTRAINT iplocation_pk PRIMARY KEY (ip_from);
+CREATE UNIQUE INDEX iplocation_ip_to ON iplocation (ip_to);
@@ -3,8 +3,8 @@ create schema GEOLOCATION;
 set schema GEOLOCATION;
 
 CREATE TABLE iplocation (
- ip_from float NOT NULL,
- ip_to float NOT NULL,
+ ip_from bigint NOT NULL,
+ ip_to bigint NOT NULL,
  country_code nvarchar(2) NOT NULL,
  country_name nvarchar(64) NOT NULL,
  region_name nvarchar(128) NOT NULL,
@@ -12,8 +12,12 @@ CREATE TABLE iplocation (
  latitude float NOT NULL,
  longitude float NOT NULL,
  zip_code nvarchar(30) NOT NULL,
- time_zone nvarchar(8) NOT NULL
+ time_zone nvarchar(8) NOT NULL,
+ CONSTRAINT iplocation_pk PRIMARY KEY (ip_from)
 );
 
-insert into iplocation 
-SELECT * FROM CSVREAD('d:\Projects\springGeo\IP2LOCATION-LITE-DB11.CSV');
\ No newline at end of file
+-- ranges do not overlap, lookups take the first range ending at or after the address
+CREATE UNIQUE INDEX iplocation_ip_to ON iplocation (ip_to);
+
+-- load the rows with the importer, it streams the csv file in batches and checks the ranges:
+-- java com.epam.training.cli.LocationImporter IP2LOCATION-LITE-DB11.CSV jdbc
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.epam.training.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import com.epam.training.dao.LocationDao;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.LocationService;
+
+/**
+ * Load test of the JSON api in an embedded servlet 3.0 container with a small
+ * fixed request thread pool, against a dao with fixed latency
+ *
+ * 64 client threads send single lookups over keep-alive connections. sync is
+ * a blocking handler calling LocationService.getLocation, as the api did
+ * before, its throughput is bound by the container threads. async is the
+ * DeferredResult handler of GeoApiController, container threads are released
+ * while the lookup executor waits for the dao.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="AsyncLoad"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = { "-Dhttp.maxConnections=64" })
+public class AsyncLoadBenchmark {
+
+	/** Threads serving requests, the acceptor and the selector need 2 more */
+	private static final int CONTAINER_THREADS = 8;
+
+	private static final String ADDRESS = "192.168.100.199";
+
+	/**
+	 * Container and application shared by all client threads
+	 */
+	@State(Scope.Benchmark)
+	public static class Container {
+
+		@Param({ "sync", "async" })
+		String mode;
+
+		@Param({ "20" })
+		int daoLatencyMillis;
+
+		Server server;
+		URL url;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			System.setProperty("benchmark.daoLatencyMillis",
+					String.valueOf(daoLatencyMillis));
+
+			QueuedThreadPool threadPool = new QueuedThreadPool(
+					CONTAINER_THREADS + 2);
+			threadPool.setMinThreads(CONTAINER_THREADS + 2);
+			server = new Server();
+			server.setThreadPool(threadPool);
+			SelectChannelConnector connector = new SelectChannelConnector();
+			connector.setHost("127.0.0.1");
+			connector.setPort(0);
+			server.addConnector(connector);
+
+			ServletHolder servletHolder = new ServletHolder(
+					new DispatcherServlet());
+			servletHolder.setInitParameter("contextConfigLocation",
+					"classpath:async-load-servlet.xml");
+			servletHolder.setAsyncSupported(true);
+			servletHolder.setInitOrder(1);
+			ServletContextHandler context = new ServletContextHandler();
+			context.setContextPath("/");
+			context.addServlet(servletHolder, "/");
+			server.setHandler(context);
+			server.start();
+
+			url = new URL("http://127.0.0.1:" + connector.getLocalPort()
+					+ ("sync".equals(mode) ? "/sync/location/"
+							: "/api/v1/location/") + ADDRESS);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Read buffer of a client thread
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+		final byte[] buffer = new byte[4096];
+	}
+
+	@Benchmark
+	public int getLocation(Container container, Client client)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) container.url
+				.openConnection();
+		int status = connection.getResponseCode();
+		int length = 0;
+		try (InputStream in = status < 400 ? connection.getInputStream()
+				: connection.getErrorStream()) {
+			for (int read; (read = in.read(client.buffer)) > 0;) {
+				length += read;
+			}
+		}
+		if (status != HttpServletResponse.SC_OK) {
+			throw new IOException("unexpected status " + status);
+		}
+		return length;
+	}
+
+	/**
+	 * Blocking lookup handler, the container thread waits for the dao
+	 *
+	 */
+	@Controller
+	public static class SyncLocationController {
+
+		@Autowired
+		private LocationService locationService;
+
+		@RequestMapping(value = "/sync/location/{ip:.+}", method = RequestMethod.GET)
+		public void getLocation(@PathVariable("ip") String address,
+				HttpServletResponse response) throws IOException,
+				AppException {
+			LocationEntity locationEntity = locationService
+					.getLocation(address);
+			response.setContentType("application/json;charset=UTF-8");
+			response.getOutputStream().write(
+					("{\"countryCode\":\"" + locationEntity.getCountryCode() + "\"}")
+							.getBytes("UTF-8"));
+		}
+	}
+
+	/**
+	 * Dao answering every lookup with the same location after a fixed delay,
+	 * standing in for a remote database
+	 *
+	 */
+	public static class SlowLocationDao implements LocationDao {
+		private final long latencyMillis;
+
+		public SlowLocationDao(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		public LocationEntity find(long convertedIp4Address)
+				throws AppException {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			LocationEntity locationEntity = new LocationEntity();
+			locationEntity.setCountryCode("HU");
+			locationEntity.setCountryName("HUNGARY");
+			locationEntity.setRegionName("CSONGRAD");
+			locationEntity.setCityName("SZEGED");
+			locationEntity.setLatitude(46.253);
+			locationEntity.setLongitude(20.14824);
+			locationEntity.setZipCode("6754");
+			locationEntity.setTimeZone("+01:00");
+			return locationEntity;
+		}
+
+		public LocationRange findRange(long convertedIp4Address)
+				throws AppException {
+			return new LocationRange(convertedIp4Address, convertedIp4Address,
+					find(convertedIp4Address));
+		}
+
+		public LocationEntity[] findAll(long[] sortedConvertedIp4Addresses)
+				throws AppException {
+			LocationEntity[] locationEntities = new LocationEntity[sortedConvertedIp4Addresses.length];
+			for (int i = 0; i < locationEntities.length; i++) {
+				locationEntities[i] = find(sortedConvertedIp4Addresses[i]);
+			}
+			return locationEntities;
+		}
+
+		@Deprecated
+		public LocationEntity find(double convertedIp4Address)
+				throws AppException {
+			return find((long) convertedIp4Address);
+		}
+
+		@Deprecated
+		public LocationRange findRange(double convertedIp4Address)
+				throws AppException {
+			return findRange((long) convertedIp4Address);
+		}
+
+		@Deprecated
+		public LocationEntity[] findAll(double[] sortedConvertedIp4Addresses)
+				throws AppException {
+			long[] converted = new long[sortedConvertedIp4Addresses.length];
+			for (int i = 0; i < converted.length; i++) {
+				converted[i] = (long) sortedConvertedIp4Addresses[i];
+			}
+			return findAll(converted);
+		}
+	}
+}
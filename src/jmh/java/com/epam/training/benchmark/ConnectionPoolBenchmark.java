@@ -0,0 +1,166 @@
+package com.epam.training.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.epam.training.dao.jdbc.SimpleJdbcLocationEntityImpl;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+
+/**
+ * JDBC lookups of 200 concurrent request threads through the connection pool
+ * configured by context-jdbc.xml and jdbc.properties
+ *
+ * The pool implementation and size are overridden with system properties,
+ * the rest of the settings come from jdbc.properties. Time spent waiting for
+ * a connection is reported in the poolWaitMicros and borrows counters, their
+ * ratio is the mean wait per lookup.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ConnectionPool"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(200)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+	private static final int ADDRESS_COUNT = 4096;
+
+	/**
+	 * Database and pool shared by all threads
+	 */
+	@State(Scope.Benchmark)
+	public static class Pool {
+
+		@Param({ "dbcp", "hikari" })
+		String pool;
+
+		@Param({ "8", "32" })
+		int maxActive;
+
+		@Param({ "100000" })
+		int rangeCount;
+
+		SyntheticDb11Dataset dataset;
+		ClassPathXmlApplicationContext context;
+		SimpleJdbcLocationEntityImpl jdbcDao;
+		long[] addresses;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			dataset = new SyntheticDb11Dataset("connectionpoolbenchmark",
+					rangeCount, rangeCount / 10);
+
+			// system properties take precedence over jdbc.properties
+			System.setProperty("jdbc.url", dataset.getUrl());
+			System.setProperty("jdbc.username", "sa");
+			System.setProperty("jdbc.password", "");
+			System.setProperty("jdbc.pool", pool);
+			System.setProperty("jdbc.pool.maxActive", String.valueOf(maxActive));
+			System.setProperty("jdbc.pool.initialSize",
+					String.valueOf(maxActive));
+			System.setProperty("jdbc.pool.minIdle", String.valueOf(maxActive));
+			context = new ClassPathXmlApplicationContext(
+					"classpath:context-jdbc.xml");
+
+			jdbcDao = new SimpleJdbcLocationEntityImpl();
+			ReflectionTestUtils.setField(jdbcDao, "jdbcTemplate",
+					new JdbcTemplate(new WaitTimingDataSource(context.getBean(
+							"dataSource", DataSource.class))));
+
+			addresses = dataset.randomAddresses(new Random(7), ADDRESS_COUNT);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			context.close();
+			dataset.close();
+		}
+	}
+
+	/**
+	 * Connection wait of the lookups of a thread, summed up by JMH
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class PoolWait {
+		public long poolWaitMicros;
+		public long borrows;
+
+		private int next = 0;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			poolWaitMicros = 0;
+			borrows = 0;
+		}
+
+		int next() {
+			next = (next + 1) & (ADDRESS_COUNT - 1);
+			return next;
+		}
+	}
+
+	@Benchmark
+	public LocationEntity jdbcFind(Pool pool, PoolWait poolWait)
+			throws AppException {
+		LocationEntity locationEntity = pool.jdbcDao
+				.find(pool.addresses[poolWait.next()]);
+		poolWait.poolWaitMicros += WaitTimingDataSource.LAST_WAIT_NANOS.get()[0] / 1000;
+		poolWait.borrows++;
+		return locationEntity;
+	}
+
+	/**
+	 * Records how long the calling thread waited for its last connection
+	 */
+	static final class WaitTimingDataSource extends DelegatingDataSource {
+		static final ThreadLocal<long[]> LAST_WAIT_NANOS = new ThreadLocal<long[]>() {
+			@Override
+			protected long[] initialValue() {
+				return new long[1];
+			}
+		};
+
+		WaitTimingDataSource(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			long start = System.nanoTime();
+			Connection connection = super.getConnection();
+			LAST_WAIT_NANOS.get()[0] = System.nanoTime() - start;
+			return connection;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.epam.training.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.epam.training.dao.memory.SortedRangeLocationDao;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.impl.LocationServiceImpl;
+import com.epam.training.utils.AccessLog;
+import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.Validator;
+import com.epam.training.web.GeoApiController;
+
+/**
+ * Cost of lookups on an input mix where every second address is invalid
+ *
+ * LocationServiceImpl on the in-memory SortedRangeLocationDao, and the JSON
+ * api of GeoApiController on top of it with the lookups run on the calling
+ * thread. Errors are logged to a NullAppender at the levels of log4j.xml, so
+ * whatever the controller logs is formatted but not written anywhere.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ErrorPath -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+	private static final int ADDRESS_COUNT = 4096;
+
+	/**
+	 * Units shared by all threads
+	 */
+	@State(Scope.Benchmark)
+	public static class Lookup {
+
+		@Param({ "500000" })
+		int rangeCount;
+
+		@Param({ "50000" })
+		int locationCount;
+
+		SyntheticDb11Dataset dataset;
+
+		LocationServiceImpl locationService;
+		GeoApiController controller;
+
+		/** Valid and invalid addresses alternating */
+		String[] ipAddresses;
+
+		@Setup(Level.Trial)
+		public void setup() throws AppException {
+			Logger logger = Logger.getLogger("com.epam.training");
+			logger.setLevel(org.apache.log4j.Level.INFO);
+			logger.setAdditivity(false);
+			logger.addAppender(new NullAppender());
+
+			dataset = new SyntheticDb11Dataset("errorpathbenchmark",
+					rangeCount, locationCount);
+
+			SortedRangeLocationDao locationDao = new SortedRangeLocationDao();
+			ReflectionTestUtils.setField(locationDao, "jdbcTemplate",
+					new JdbcTemplate(dataset.getDataSource()));
+			locationDao.find(0L);
+
+			locationService = new LocationServiceImpl();
+			ReflectionTestUtils.setField(locationService, "locationDao",
+					locationDao);
+			ReflectionTestUtils.setField(locationService, "ipConverter",
+					new Ip4Converter());
+			ReflectionTestUtils.setField(locationService, "ipValidator",
+					new Validator());
+			ReflectionTestUtils.setField(locationService, "lookupMetrics",
+					new LookupMetrics());
+			ReflectionTestUtils.setField(locationService, "lookupExecutor",
+					new Executor() {
+						public void execute(Runnable command) {
+							command.run();
+						}
+					});
+
+			controller = new GeoApiController();
+			ReflectionTestUtils.setField(controller, "locationService",
+					locationService);
+			ReflectionTestUtils.setField(controller, "accessLog",
+					new AccessLog(0.01));
+
+			long[] addresses = dataset.randomAddresses(new Random(7),
+					ADDRESS_COUNT);
+			ipAddresses = new String[ADDRESS_COUNT];
+			for (int i = 0; i < ADDRESS_COUNT; i++) {
+				String ipAddress = SyntheticDb11Dataset.toString(addresses[i]);
+				ipAddresses[i] = (i % 2 == 0) ? ipAddress : ipAddress + ".1";
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			dataset.close();
+		}
+	}
+
+	/**
+	 * Position in the address set, per thread
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next = 0;
+
+		int next() {
+			next = (next + 1) & (ADDRESS_COUNT - 1);
+			return next;
+		}
+	}
+
+	@Benchmark
+	public Object serviceGetLocation(Lookup lookup, Cursor cursor) {
+		try {
+			LocationEntity locationEntity = lookup.locationService
+					.getLocation(lookup.ipAddresses[cursor.next()]);
+			return locationEntity;
+		} catch (AppException ae) {
+			return ae;
+		}
+	}
+
+	@Benchmark
+	public DeferredResult<ResponseEntity<byte[]>> apiGetLocation(
+			Lookup lookup, Cursor cursor) {
+		return lookup.controller.getLocation(lookup.ipAddresses[cursor
+				.next()]);
+	}
+}
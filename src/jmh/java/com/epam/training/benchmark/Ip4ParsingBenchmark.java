@@ -0,0 +1,178 @@
+package com.epam.training.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.Validator;
+
+/**
+ * Compares the former regexp/split based ip4 validation and conversion with
+ * the single pass parser on address mixes with a given share of invalid
+ * input
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="Ip4Parsing -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ip4ParsingBenchmark {
+
+	private static final int ADDRESS_COUNT = 1024;
+
+	/** Typical invalid input: out of range, typos, truncated, not an ip */
+	private static final String[] INVALID_SAMPLES = { "256.256.0.3",
+			"25a.f56.0.3", "192.168.1", "192.168.1.1.1", "192.168..1", "",
+			"localhost", "10.0.0.1 ", "::1", "192.168.1.300" };
+
+	@Param({ "0", "10", "50" })
+	private int invalidPercent;
+
+	private String[] addresses;
+
+	private final Validator validator = new Validator();
+	private final Ip4Converter converter = new Ip4Converter();
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		addresses = new String[ADDRESS_COUNT];
+		for (int i = 0; i < ADDRESS_COUNT; i++) {
+			if (random.nextInt(100) < invalidPercent) {
+				addresses[i] = INVALID_SAMPLES[random
+						.nextInt(INVALID_SAMPLES.length)];
+			} else {
+				addresses[i] = random.nextInt(224) + "." + random.nextInt(256)
+						+ "." + random.nextInt(256) + "." + random.nextInt(256);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	public int validateLegacy() {
+		int valid = 0;
+		for (String address : addresses) {
+			if (Legacy.validateIp4String(address)) {
+				valid++;
+			}
+		}
+		return valid;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	public int validateParser() {
+		int valid = 0;
+		for (String address : addresses) {
+			if (validator.validateIp4String(address)) {
+				valid++;
+			}
+		}
+		return valid;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	public double convertLegacy() {
+		double sum = 0;
+		for (String address : addresses) {
+			sum += Legacy.convertFromStringToDouble(address);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	@SuppressWarnings("deprecation")
+	public double convertParser() {
+		double sum = 0;
+		for (String address : addresses) {
+			sum += converter.convertFromStringToDouble(address);
+		}
+		return sum;
+	}
+
+	/** Service path: validate, then convert the valid addresses */
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	public double validateAndConvertLegacy() {
+		double sum = 0;
+		for (String address : addresses) {
+			if (Legacy.validateIp4String(address)) {
+				sum += Legacy.convertFromStringToDouble(address);
+			}
+		}
+		return sum;
+	}
+
+	/** Service path: validate, then convert the valid addresses */
+	@Benchmark
+	@OperationsPerInvocation(ADDRESS_COUNT)
+	public double validateAndConvertParser() {
+		double sum = 0;
+		for (String address : addresses) {
+			if (validator.validateIp4String(address)) {
+				sum += converter.convertFromStringToLong(address);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * The former Validator and Ip4Converter implementations
+	 */
+	private static final class Legacy {
+		private static final String IP4_VALIDATOR_REGEXP = "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$";
+
+		static boolean validateIp4String(String ip4Address) {
+			if (ip4Address == null || ip4Address.equals("")) {
+				return false;
+			}
+
+			Pattern pattern = Pattern.compile(IP4_VALIDATOR_REGEXP);
+			Matcher matcher = pattern.matcher(ip4Address);
+
+			return matcher.matches();
+		}
+
+		static double convertFromStringToDouble(String ip4Address) {
+			double num = 0;
+			if (ip4Address == null || ip4Address.equals("")) {
+				num = 0;
+			} else {
+				String[] arrDec = ip4Address.split("\\.");
+				try {
+					for (int i = arrDec.length - 1; i >= 0; i--) {
+						num += (Integer.parseInt(arrDec[i]) % 256)
+								* Math.pow(256, (3 - i));
+					}
+				} catch (NumberFormatException nfe) {
+					num = 0;
+				}
+			}
+			return num;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.epam.training.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.epam.training.dao.jdbc.SimpleJdbcLocationEntityImpl;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.impl.LocationServiceImpl;
+import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.Validator;
+
+/**
+ * Cost of a single lookup, step by step and end to end
+ *
+ * Validator and Ip4Converter on dotted-quad strings, the JDBC dao on an
+ * embedded H2 holding a SyntheticDb11Dataset, and LocationServiceImpl
+ * wired with all of them. Every invocation looks up the next of a fixed set
+ * of random addresses.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="Lookup -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+	private static final int ADDRESS_COUNT = 4096;
+
+	/**
+	 * Database and units shared by all threads
+	 */
+	@State(Scope.Benchmark)
+	public static class Lookup {
+
+		@Param({ "500000" })
+		int rangeCount;
+
+		@Param({ "50000" })
+		int locationCount;
+
+		SyntheticDb11Dataset dataset;
+
+		Validator validator;
+		Ip4Converter converter;
+		SimpleJdbcLocationEntityImpl jdbcDao;
+		LocationServiceImpl locationService;
+
+		long[] addresses;
+		String[] ip4Addresses;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			dataset = new SyntheticDb11Dataset("lookupbenchmark", rangeCount,
+					locationCount);
+
+			validator = new Validator();
+			converter = new Ip4Converter();
+
+			jdbcDao = new SimpleJdbcLocationEntityImpl();
+			ReflectionTestUtils.setField(jdbcDao, "jdbcTemplate",
+					new JdbcTemplate(dataset.getDataSource()));
+
+			locationService = new LocationServiceImpl();
+			ReflectionTestUtils.setField(locationService, "locationDao",
+					jdbcDao);
+			ReflectionTestUtils.setField(locationService, "ipConverter",
+					converter);
+			ReflectionTestUtils.setField(locationService, "ipValidator",
+					validator);
+			ReflectionTestUtils.setField(locationService, "lookupMetrics",
+					new LookupMetrics());
+
+			addresses = dataset.randomAddresses(new Random(7), ADDRESS_COUNT);
+			ip4Addresses = new String[ADDRESS_COUNT];
+			for (int i = 0; i < ADDRESS_COUNT; i++) {
+				ip4Addresses[i] = SyntheticDb11Dataset.toString(addresses[i]);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			dataset.close();
+		}
+	}
+
+	/**
+	 * Position in the address set, per thread
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next = 0;
+
+		int next() {
+			next = (next + 1) & (ADDRESS_COUNT - 1);
+			return next;
+		}
+	}
+
+	@Benchmark
+	public boolean validate(Lookup lookup, Cursor cursor) {
+		return lookup.validator.validateIp4String(lookup.ip4Addresses[cursor
+				.next()]);
+	}
+
+	@Benchmark
+	public long convert(Lookup lookup, Cursor cursor) {
+		return lookup.converter.convertFromStringToLong(lookup.ip4Addresses[cursor
+				.next()]);
+	}
+
+	@Benchmark
+	public LocationEntity jdbcFind(Lookup lookup, Cursor cursor)
+			throws AppException {
+		return lookup.jdbcDao.find(lookup.addresses[cursor.next()]);
+	}
+
+	@Benchmark
+	public LocationEntity serviceGetLocation(Lookup lookup, Cursor cursor)
+			throws AppException {
+		return lookup.locationService.getLocation(lookup.ip4Addresses[cursor
+				.next()]);
+	}
+}
@@ -0,0 +1,74 @@
+package com.epam.training.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.LookupMetrics.Outcome;
+import com.epam.training.utils.LookupMetrics.Stage;
+
+/**
+ * Cost of the LookupMetrics instrumentation of a lookup
+ *
+ * nanoTime is the bare clock read, recordStage a timed stage, lookup what
+ * LocationServiceImpl records for one ip4 lookup: the start time, three
+ * stages and the outcome. The contended variant shares the metrics between
+ * four threads like the request threads of the web application.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="Metrics -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+	private final LookupMetrics lookupMetrics = new LookupMetrics();
+
+	@Benchmark
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Benchmark
+	public long recordStage() {
+		return lookupMetrics.record(Stage.DAO_LOOKUP, System.nanoTime());
+	}
+
+	@Benchmark
+	public long lookup() {
+		return recordLookup();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long lookupContended() {
+		return recordLookup();
+	}
+
+	private long recordLookup() {
+		long startNanos = System.nanoTime();
+		long validatedNanos = lookupMetrics.record(Stage.VALIDATION,
+				startNanos);
+		long convertedNanos = lookupMetrics.record(Stage.CONVERSION,
+				validatedNanos);
+		long endNanos = lookupMetrics.record(Stage.DAO_LOOKUP, convertedNanos);
+		lookupMetrics.count(Outcome.HIT);
+		return endNanos;
+	}
+}
@@ -0,0 +1,168 @@
+package com.epam.training.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Embedded H2 database filled with DB11 shaped rows
+ *
+ * Ranges are contiguous and cover the whole ip4 space, their sizes vary
+ * like in the real database, from single addresses to large blocks. Rows
+ * share a limited set of locations, as many ranges map to the same city.
+ * The schema is the one of database/db_setup.sql.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class SyntheticDb11Dataset {
+
+	private static final long MAX_IP4_ADDRESS = 0xFFFFFFFFL;
+	private static final int BATCH_SIZE = 10000;
+
+	private final String url;
+	private final BasicDataSource dataSource;
+	private final long[] ipFrom;
+
+	/**
+	 * Creates and fills the database
+	 *
+	 * @param String
+	 *            name of the in-memory database
+	 * @param int number of ranges
+	 * @param int number of distinct locations
+	 */
+	public SyntheticDb11Dataset(String name, int rangeCount, int locationCount) {
+		url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+		dataSource = new BasicDataSource();
+		dataSource.setDriverClassName("org.h2.Driver");
+		dataSource.setUrl(url);
+		dataSource.setUsername("sa");
+		dataSource.setPassword("");
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE SCHEMA GEOLOCATION");
+		jdbcTemplate.execute("CREATE TABLE GEOLOCATION.IPLOCATION ("
+				+ "ip_from bigint NOT NULL, ip_to bigint NOT NULL, "
+				+ "country_code nvarchar(2) NOT NULL, country_name nvarchar(64) NOT NULL, "
+				+ "region_name nvarchar(128) NOT NULL, city_name nvarchar(128) NOT NULL, "
+				+ "latitude float NOT NULL, longitude float NOT NULL, "
+				+ "zip_code nvarchar(30) NOT NULL, time_zone nvarchar(8) NOT NULL, "
+				+ "CONSTRAINT iplocation_pk PRIMARY KEY (ip_from))");
+		jdbcTemplate.execute("CREATE UNIQUE INDEX iplocation_ip_to "
+				+ "ON GEOLOCATION.IPLOCATION (ip_to)");
+
+		Random random = new Random(42);
+		ipFrom = rangeStarts(random, rangeCount);
+		Object[][] locations = locations(random, locationCount);
+
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < rangeCount; i++) {
+			long to = (i + 1 < rangeCount) ? ipFrom[i + 1] - 1
+					: MAX_IP4_ADDRESS;
+			Object[] location = locations[random.nextInt(locationCount)];
+
+			Object[] row = new Object[2 + location.length];
+			row[0] = ipFrom[i];
+			row[1] = to;
+			System.arraycopy(location, 0, row, 2, location.length);
+			batch.add(row);
+
+			if (batch.size() == BATCH_SIZE || i + 1 == rangeCount) {
+				jdbcTemplate.batchUpdate(
+						"INSERT INTO GEOLOCATION.IPLOCATION VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+						batch);
+				batch.clear();
+			}
+		}
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * @return String jdbc url of the database, user sa with empty password
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	public int getRangeCount() {
+		return ipFrom.length;
+	}
+
+	/**
+	 * @return long[] random addresses, uniformly spread over the ranges
+	 */
+	public long[] randomAddresses(Random random, int count) {
+		long[] addresses = new long[count];
+		for (int i = 0; i < count; i++) {
+			int range = random.nextInt(ipFrom.length);
+			long to = (range + 1 < ipFrom.length) ? ipFrom[range + 1] - 1
+					: MAX_IP4_ADDRESS;
+			addresses[i] = ipFrom[range]
+					+ (long) (random.nextDouble() * (to - ipFrom[range] + 1));
+		}
+		return addresses;
+	}
+
+	/**
+	 * @return String dotted-quad format of the address
+	 */
+	public static String toString(long address) {
+		return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF)
+				+ "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+	}
+
+	public void close() throws Exception {
+		new JdbcTemplate(dataSource).execute("SHUTDOWN");
+		dataSource.close();
+	}
+
+	/**
+	 * Sorted distinct range starts, the first one is 0. Range sizes are log
+	 * uniform, then scaled to fill the address space.
+	 */
+	private static long[] rangeStarts(Random random, int rangeCount) {
+		double[] sizes = new double[rangeCount];
+		double total = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			sizes[i] = Math.pow(2, random.nextDouble() * 16);
+			total += sizes[i];
+		}
+
+		long[] starts = new long[rangeCount];
+		double scale = (MAX_IP4_ADDRESS + 1.0) / total;
+		double position = 0;
+		for (int i = 1; i < rangeCount; i++) {
+			position += sizes[i - 1] * scale;
+			starts[i] = Math.max(starts[i - 1] + 1, (long) position);
+		}
+		return starts;
+	}
+
+	private static Object[][] locations(Random random, int locationCount) {
+		String[] timeZones = { "-08:00", "-05:00", "+00:00", "+01:00",
+				"+02:00", "+05:30", "+08:00", "+09:00", "+10:00" };
+		Object[][] locations = new Object[locationCount][];
+		for (int i = 0; i < locationCount; i++) {
+			int country = random.nextInt(200);
+			String countryCode = "" + (char) ('A' + country / 26)
+					+ (char) ('A' + country % 26);
+			locations[i] = new Object[] { countryCode,
+					"COUNTRY " + countryCode,
+					"REGION " + countryCode + random.nextInt(50),
+					"CITY " + i, random.nextDouble() * 180 - 90,
+					random.nextDouble() * 360 - 180,
+					String.valueOf(10000 + random.nextInt(90000)),
+					timeZones[random.nextInt(timeZones.length)] };
+		}
+		return locations;
+	}
+}
@@ -0,0 +1,90 @@
+package com.epam.training.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+
+import com.epam.training.dao.MyIpDao;
+import com.epam.training.exception.AppException;
+import com.epam.training.utils.trace.Span;
+import com.epam.training.utils.trace.TracedInterfacesPointcut;
+import com.epam.training.utils.trace.Tracer;
+import com.epam.training.utils.trace.TracingMethodInterceptor;
+
+/**
+ * Cost of the request tracing of a dao call
+ *
+ * direct calls the dao without tracing, traced starts a request, calls the
+ * dao through the class based tracing proxy of context-service.xml and ends
+ * the request, at the sample rates of the param: unsampled requests, the
+ * default rate and every request traced.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="Tracing -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingBenchmark {
+
+	@Param({ "0", "0.01", "1" })
+	private double sampleRate;
+
+	private Tracer tracer;
+	private MyIpDao myIpDao;
+	private MyIpDao tracedMyIpDao;
+
+	/**
+	 * Answers without I/O, the cost of the call is the cost of the proxy
+	 */
+	public static class FixedMyIpDao implements MyIpDao {
+		@Override
+		public String find() {
+			return "81.182.1.2";
+		}
+	}
+
+	@Setup
+	public void setup() {
+		tracer = new Tracer(sampleRate, 20);
+		myIpDao = new FixedMyIpDao();
+		ProxyFactory proxyFactory = new ProxyFactory(myIpDao);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvisor(new DefaultPointcutAdvisor(
+				new TracedInterfacesPointcut(new Class<?>[] { MyIpDao.class }),
+				new TracingMethodInterceptor(tracer)));
+		tracedMyIpDao = (MyIpDao) proxyFactory.getProxy();
+	}
+
+	@Benchmark
+	public String direct() throws AppException {
+		return myIpDao.find();
+	}
+
+	@Benchmark
+	public String traced() throws AppException {
+		Span root = tracer.startTrace("GET", "/", null);
+		try {
+			return tracedMyIpDao.find();
+		} finally {
+			tracer.endSpan(root, null);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.epam.training.benchmark;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import com.epam.training.dao.jdbc.SimpleJdbcLocationEntityImpl;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.LocationService;
+import com.epam.training.service.impl.LocationServiceImpl;
+import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.Validator;
+
+/**
+ * LocationService lookups on the H2 path with and without a read-only
+ * transaction around every call
+ *
+ * transactional is the former setup, where the interface level
+ * Transactional(readOnly=true) wrapped each lookup in a transaction bound to
+ * a pooled connection. direct is the current one, the single SELECT runs in
+ * auto-commit mode.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.args="Transaction -prof gc"
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+	private static final int ADDRESS_COUNT = 4096;
+
+	/**
+	 * Database and services shared by all threads
+	 */
+	@State(Scope.Benchmark)
+	public static class Services {
+
+		@Param({ "500000" })
+		int rangeCount;
+
+		SyntheticDb11Dataset dataset;
+
+		LocationService directService;
+		LocationService transactionalService;
+
+		String[] ip4Addresses;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			dataset = new SyntheticDb11Dataset("transactionbenchmark",
+					rangeCount, rangeCount / 10);
+
+			SimpleJdbcLocationEntityImpl jdbcDao = new SimpleJdbcLocationEntityImpl();
+			ReflectionTestUtils.setField(jdbcDao, "jdbcTemplate",
+					new JdbcTemplate(dataset.getDataSource()));
+
+			LocationServiceImpl locationService = new LocationServiceImpl();
+			ReflectionTestUtils.setField(locationService, "locationDao",
+					jdbcDao);
+			ReflectionTestUtils.setField(locationService, "ipConverter",
+					new Ip4Converter());
+			ReflectionTestUtils.setField(locationService, "ipValidator",
+					new Validator());
+			ReflectionTestUtils.setField(locationService, "lookupMetrics",
+					new LookupMetrics());
+			directService = locationService;
+
+			// what tx:annotation-driven made of the annotated interface
+			Properties attributes = new Properties();
+			attributes.setProperty("*", "PROPAGATION_REQUIRED,readOnly");
+			ProxyFactory proxyFactory = new ProxyFactory(locationService);
+			proxyFactory.addInterface(LocationService.class);
+			proxyFactory.addAdvice(new TransactionInterceptor(
+					new DataSourceTransactionManager(dataset.getDataSource()),
+					attributes));
+			transactionalService = (LocationService) proxyFactory.getProxy();
+
+			long[] addresses = dataset.randomAddresses(new Random(7),
+					ADDRESS_COUNT);
+			ip4Addresses = new String[ADDRESS_COUNT];
+			for (int i = 0; i < ADDRESS_COUNT; i++) {
+				ip4Addresses[i] = SyntheticDb11Dataset.toString(addresses[i]);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			dataset.close();
+		}
+	}
+
+	/**
+	 * Position in the address set, per thread
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next = 0;
+
+		int next() {
+			next = (next + 1) & (ADDRESS_COUNT - 1);
+			return next;
+		}
+	}
+
+	@Benchmark
+	public LocationEntity direct(Services services, Cursor cursor)
+			throws AppException {
+		return services.directService.getLocation(services.ip4Addresses[cursor
+				.next()]);
+	}
+
+	@Benchmark
+	public LocationEntity transactional(Services services, Cursor cursor)
+			throws AppException {
+		return services.transactionalService
+				.getLocation(services.ip4Addresses[cursor.next()]);
+	}
+}
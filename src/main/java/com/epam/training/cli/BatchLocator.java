@@ -0,0 +1,301 @@
+package com.epam.training.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationService;
+import com.epam.training.utils.ReadAheadQueue;
+
+/**
+ * Looks up the locations of a stream of addresses and writes them as CSV or
+ * JSON Lines
+ *
+ * Input lines are read in chunks, every chunk is resolved with one
+ * LocationService.getLocations call on a thread pool, and written on the
+ * calling thread in input order. Only a few chunks are in memory at a time, so
+ * inputs of any size are processed with constant memory.
+ *
+ * Every non-empty input line gives one output line, invalid addresses and
+ * addresses not found have no location fields.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class BatchLocator {
+
+	public enum Format {
+		CSV, JSONL
+	}
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String CSV_HEADER = "ip4Address,countryCode,countryName,regionName,"
+			+ "cityName,latitude,longitude,zipCode,timeZone";
+
+	private final LocationService locationService;
+	private final int threadCount;
+	private final int chunkSize;
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	/**
+	 * @param LocationService
+	 *            service resolving the chunks
+	 * @param int number of lookup threads
+	 * @param int number of addresses resolved with one service call
+	 */
+	public BatchLocator(LocationService locationService, int threadCount,
+			int chunkSize) {
+		if (threadCount < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException(String.format(
+					"invalid batch settings: threadCount=%d chunkSize=%d",
+					threadCount, chunkSize));
+		}
+		this.locationService = locationService;
+		this.threadCount = threadCount;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Looks up all addresses of the input
+	 *
+	 * @param ReadableByteChannel
+	 *            UTF-8 lines holding an address, or CSV lines holding it in
+	 *            the given column
+	 * @param WritableByteChannel
+	 *            destination of the UTF-8 output lines
+	 * @param int zero based CSV column of the address, -1 if the whole line
+	 *        is the address
+	 * @param Format
+	 *            output format
+	 * @return long number of addresses looked up
+	 *
+	 * @exception AppException
+	 *                on IO or service error
+	 * @see AppException
+	 */
+	public long locate(ReadableByteChannel input, WritableByteChannel output,
+			int column, Format format) throws AppException {
+		long count = 0;
+
+		try (BufferedReader reader = new BufferedReader(Channels.newReader(
+				input, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE),
+				BUFFER_SIZE);
+				Writer writer = new BufferedWriter(Channels.newWriter(output,
+						StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE),
+						BUFFER_SIZE);
+				ReadAheadQueue<Chunk> chunks = new ReadAheadQueue<>(
+						threadCount)) {
+			JsonGenerator generator = null;
+			if (format == Format.JSONL) {
+				generator = jsonFactory.createJsonGenerator(writer);
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+			} else {
+				writer.write(CSV_HEADER);
+				writer.write('\n');
+			}
+
+			boolean eof = false;
+			while (!eof || !chunks.isEmpty()) {
+				while (!eof && !chunks.isFull()) {
+					final List<String> addresses = readChunk(reader, column);
+					if (addresses.isEmpty()) {
+						eof = true;
+					} else {
+						chunks.submit(new Callable<Chunk>() {
+							public Chunk call() throws AppException {
+								return new Chunk(addresses, locationService
+										.getLocations(addresses));
+							}
+						});
+					}
+				}
+
+				if (!chunks.isEmpty()) {
+					Chunk chunk = chunks.take();
+					for (int i = 0; i < chunk.addresses.size(); i++) {
+						if (generator != null) {
+							writeJson(generator, chunk.addresses.get(i),
+									chunk.locationEntities.get(i));
+						} else {
+							writeCsv(writer, chunk.addresses.get(i),
+									chunk.locationEntities.get(i));
+						}
+					}
+					count += chunk.addresses.size();
+				}
+			}
+
+			if (generator != null) {
+				generator.close();
+				if (count > 0) {
+					writer.write('\n');
+				}
+			}
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("BatchLocator",
+					"could not read addresses or write locations", ioe)
+					.setParameter("count", count));
+			throw ae;
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof AppException) {
+				throw (AppException) ee.getCause();
+			}
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getUnexpectedErrorInfo("BatchLocator",
+					"lookup failed", ee).setParameter("count", count));
+			throw ae;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getUnexpectedErrorInfo("BatchLocator",
+					"interrupted", ie).setParameter("count", count));
+			throw ae;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Addresses of the next non-empty lines, empty at end of input
+	 */
+	private List<String> readChunk(BufferedReader reader, int column)
+			throws IOException {
+		List<String> addresses = new ArrayList<>(chunkSize);
+		String line;
+		while (addresses.size() < chunkSize
+				&& (line = reader.readLine()) != null) {
+			String address = column < 0 ? line.trim() : getColumn(line,
+					column);
+			if (!address.isEmpty()) {
+				addresses.add(address);
+			}
+		}
+		return addresses;
+	}
+
+	/**
+	 * Field of a CSV line without surrounding quotes, empty if the line has
+	 * fewer fields
+	 */
+	static String getColumn(String line, int column) {
+		int start = 0;
+		for (int i = 0; i < column; i++) {
+			start = line.indexOf(',', start) + 1;
+			if (start == 0) {
+				return "";
+			}
+		}
+		int end = line.indexOf(',', start);
+		String field = (end < 0 ? line.substring(start) : line.substring(
+				start, end)).trim();
+		if (field.length() > 1 && field.startsWith("\"")
+				&& field.endsWith("\"")) {
+			field = field.substring(1, field.length() - 1);
+		}
+		return field;
+	}
+
+	private void writeJson(JsonGenerator generator, String address,
+			LocationEntity locationEntity) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("ip4Address", address);
+		if (locationEntity != null && !locationEntity.isUnknownLocation()) {
+			generator.writeStringField("countryCode",
+					locationEntity.getCountryCode());
+			generator.writeStringField("countryName",
+					locationEntity.getCountryName());
+			generator.writeStringField("regionName",
+					locationEntity.getRegionName());
+			generator.writeStringField("cityName",
+					locationEntity.getCityName());
+			generator.writeNumberField("latitude",
+					locationEntity.getLatitude());
+			generator.writeNumberField("longitude",
+					locationEntity.getLongitude());
+			generator.writeStringField("zipCode", locationEntity.getZipCode());
+			generator.writeStringField("timeZone",
+					locationEntity.getTimeZone());
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeCsv(Writer writer, String address,
+			LocationEntity locationEntity) throws IOException {
+		writeCsvField(writer, address);
+		if (locationEntity != null && !locationEntity.isUnknownLocation()) {
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getCountryCode());
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getCountryName());
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getRegionName());
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getCityName());
+			writer.write(',');
+			writer.write(Double.toString(locationEntity.getLatitude()));
+			writer.write(',');
+			writer.write(Double.toString(locationEntity.getLongitude()));
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getZipCode());
+			writer.write(',');
+			writeCsvField(writer, locationEntity.getTimeZone());
+		} else {
+			writer.write(",,,,,,,,");
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the value, quoted if it contains a separator or quote
+	 */
+	private static void writeCsvField(Writer writer, String value)
+			throws IOException {
+		if (value == null) {
+			return;
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+				&& value.indexOf('\n') < 0) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	/**
+	 * Addresses of a chunk with their locations
+	 *
+	 */
+	private static final class Chunk {
+		final List<String> addresses;
+		final List<LocationEntity> locationEntities;
+
+		Chunk(List<String> addresses, List<LocationEntity> locationEntities) {
+			this.addresses = addresses;
+			this.locationEntities = locationEntities;
+		}
+	}
+}
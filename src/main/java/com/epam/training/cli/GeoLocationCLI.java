@@ -1,6 +1,15 @@
 package com.epam.training.cli;
 
 import java.io.Console;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +18,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
 
 import com.epam.training.domain.LocationEntity;
 import com.epam.training.exception.AppException;
@@ -18,6 +29,21 @@ import com.epam.training.service.LocationService;
 /**
  * Command line interface for GeoLocation App *
  * 
+ * Without arguments an address is read from the console and its location is
+ * logged. In batch mode the addresses of a file or of the standard input are
+ * looked up with BatchLocator and the locations are written to the standard
+ * output, logs go to the standard error.
+ * 
+ * When a binary location database is set by location.mapped.file, in
+ * geolocation.properties or as a system property, only the lookup components
+ * of context-cli.xml are loaded and the addresses are looked up in the mapped
+ * file, without connecting to the database. Otherwise the full context of the
+ * web application is loaded.
+ * 
+ * Usage: GeoLocationCLI<br>
+ * GeoLocationCLI batch &lt;input file | -&gt; [csv | jsonl] [threads] [csv
+ * column of the address, 1 based]
+ * 
  * @author Ferenc Kis
  * @version 1.1
  */
@@ -28,6 +54,13 @@ public class GeoLocationCLI {
 
 	private static final String JDBC_CONTEXT = "classpath:context-jdbc.xml";
 	private static final String SERVICE_CONTEXT = "classpath:context-service.xml";
+	private static final String CLI_CONTEXT = "classpath:context-cli.xml";
+
+	private static final String PROPERTIES = "geolocation.properties";
+	private static final String MAPPED_FILE_PROPERTY = "location.mapped.file";
+
+	private static final String USAGE = "Usage: GeoLocationCLI | GeoLocationCLI batch <input file | -> "
+			+ "[csv | jsonl] [threads] [csv column of the address]";
 
 	@Autowired
 	private LocationService locationService;
@@ -40,6 +73,10 @@ public class GeoLocationCLI {
 		loadContext();
 	}
 
+	public GeoLocationCLI() throws AppException {
+		this(null);
+	}
+
 	/**
 	 * Loads application context
 	 * 
@@ -48,10 +85,7 @@ public class GeoLocationCLI {
 	 * @see AppException
 	 */
 	private void loadContext() throws AppException {
-		LOG.info("Loading context...");
-
-		ApplicationContext context = new ClassPathXmlApplicationContext(
-				JDBC_CONTEXT, SERVICE_CONTEXT);
+		ApplicationContext context = createContext();
 		AutowireCapableBeanFactory acbFactory = context
 				.getAutowireCapableBeanFactory();
 		try {
@@ -66,6 +100,51 @@ public class GeoLocationCLI {
 
 	}
 
+	/**
+	 * Creates the context of the command line tools, the lookup components
+	 * only if a binary location database is set
+	 * 
+	 * @return ClassPathXmlApplicationContext context to be closed by the caller
+	 * @exception AppException
+	 *                if geolocation.properties could not be read.
+	 * @see AppException
+	 */
+	static ClassPathXmlApplicationContext createContext() throws AppException {
+		if (isMappedFileSet()) {
+			LOG.info("Loading lookup context...");
+			return new ClassPathXmlApplicationContext(CLI_CONTEXT);
+		}
+		LOG.info("Loading context...");
+		return new ClassPathXmlApplicationContext(JDBC_CONTEXT,
+				SERVICE_CONTEXT);
+	}
+
+	/**
+	 * Checks whether a binary location database is set, system properties
+	 * override geolocation.properties like in the contexts
+	 * 
+	 * @exception AppException
+	 *                if geolocation.properties could not be read.
+	 * @see AppException
+	 */
+	private static boolean isMappedFileSet() throws AppException {
+		String fileName = System.getProperty(MAPPED_FILE_PROPERTY);
+		if (fileName == null) {
+			try {
+				Properties properties = PropertiesLoaderUtils
+						.loadProperties(new ClassPathResource(PROPERTIES));
+				fileName = properties.getProperty(MAPPED_FILE_PROPERTY);
+			} catch (IOException ioe) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+						"GeoLocationCLI", "could not read properties", ioe)
+						.setParameter("properties", PROPERTIES));
+				throw ae;
+			}
+		}
+		return fileName != null && !fileName.trim().isEmpty();
+	}
+
 	/**
 	 * Gets location for member variable ip4Address (can be populated through
 	 * constructor)
@@ -81,6 +160,84 @@ public class GeoLocationCLI {
 
 	}
 
+	/**
+	 * Looks up the locations of all addresses of the input and writes them
+	 * to the standard output
+	 * 
+	 * @param ReadableByteChannel
+	 *            input with one address per line or a csv column of addresses
+	 * @param int zero based csv column of the address, -1 if the whole line
+	 *        is the address
+	 * @param BatchLocator.Format
+	 *            output format
+	 * @param int number of lookup threads
+	 * @return long number of addresses looked up
+	 * 
+	 * @exception AppException
+	 *                on IO or internal errors.
+	 * @see AppException
+	 */
+	public long getLocations(ReadableByteChannel input, int column,
+			BatchLocator.Format format, int threadCount) throws AppException {
+		BatchLocator batchLocator = new BatchLocator(locationService,
+				threadCount, BatchLocator.DEFAULT_CHUNK_SIZE);
+		return batchLocator.locate(input,
+				new FileOutputStream(FileDescriptor.out).getChannel(), column,
+				format);
+	}
+
+	/**
+	 * Batch mode entry point
+	 * 
+	 * @exception AppException
+	 *                on wrong arguments, IO or internal errors.
+	 * @see AppException
+	 */
+	private static void batch(String[] args) throws AppException {
+		BatchLocator.Format format;
+		int threadCount;
+		int column;
+		try {
+			if (args.length < 2 || args.length > 5) {
+				throw new IllegalArgumentException("wrong number of arguments");
+			}
+			format = args.length > 2 ? BatchLocator.Format.valueOf(args[2]
+					.toUpperCase()) : BatchLocator.Format.CSV;
+			threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime
+					.getRuntime().availableProcessors();
+			column = args.length > 4 ? Integer.parseInt(args[4]) - 1 : -1;
+			if (threadCount < 1 || column < -1) {
+				throw new IllegalArgumentException(
+						"threads and column must be positive");
+			}
+		} catch (IllegalArgumentException iae) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getIllegalClientParameterErrorInfo(
+					"GeoLocationCLI", "wrong arguments: " + iae.getMessage(),
+					USAGE, "args", args.length));
+			throw ae;
+		}
+
+		ReadableByteChannel input;
+		try {
+			input = "-".equals(args[1]) ? Channels.newChannel(System.in)
+					: FileChannel.open(Paths.get(args[1]),
+							StandardOpenOption.READ);
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("GeoLocationCLI",
+					"could not open input file", ioe).setParameter(
+					"inputFile", args[1]));
+			throw ae;
+		}
+
+		long start = System.currentTimeMillis();
+		long count = new GeoLocationCLI().getLocations(input, column, format,
+				threadCount);
+		LOG.info("Looked up {} addresses in {} ms", count,
+				System.currentTimeMillis() - start);
+	}
+
 	/**
 	 * Application entry point from command line
 	 * 
@@ -91,6 +248,19 @@ public class GeoLocationCLI {
 		String inputString;
 
 		try {
+			if (args.length > 0) {
+				if (!"batch".equals(args[0])) {
+					AppException ae = new AppException();
+					ae.addInfo(ErrorInfoFactory
+							.getIllegalClientParameterErrorInfo(
+									"GeoLocationCLI", "unknown mode", USAGE,
+									"mode", args[0]));
+					throw ae;
+				}
+				batch(args);
+				return;
+			}
+
 			console = System.console();
 
 			// checks for valid console
@@ -0,0 +1,76 @@
+package com.epam.training.cli;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * Command line tool building the binary location database read by
+ * MappedLocationDao from an IP2Location DB11 csv file
+ *
+ * Same as the file target of LocationImporter, kept for its shorter usage.
+ *
+ * Usage: LocationFileBuilder &lt;DB11 csv file&gt; &lt;output file&gt;
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LocationFileBuilder {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(LocationFileBuilder.class);
+
+	/**
+	 * Converts the csv file into the binary format
+	 *
+	 * @param File
+	 *            DB11 csv file, rows sorted by ip_from
+	 * @param File
+	 *            binary location database to create
+	 * @return int number of ranges written
+	 *
+	 * @exception AppException
+	 *                on IO error or corrupted csv file
+	 * @see AppException
+	 */
+	public int build(File csvFile, File outputFile) throws AppException {
+		return (int) new LocationImporter().importToFile(csvFile, outputFile);
+	}
+
+	/**
+	 * Application entry point from command line
+	 *
+	 */
+	public static void main(String[] args) {
+		try {
+			if (args.length != 2) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getIllegalClientParameterErrorInfo(
+						"LocationFileBuilder", "wrong number of arguments",
+						"Usage: LocationFileBuilder <DB11 csv file> <output file>",
+						"args", args.length));
+				throw ae;
+			}
+
+			long start = System.currentTimeMillis();
+			new LocationFileBuilder().build(new File(args[0]), new File(
+					args[1]));
+			LOG.info("Location database {} built in {} ms", args[1],
+					System.currentTimeMillis() - start);
+		} catch (AppException ae) {
+			LOG.info(
+					"{}",
+					"".equals(ae.getUserLog()) ? "Ooops... Something went wrong, please check error log!"
+							: ae.getUserLog());
+			LOG.error("{}", ae);
+		} catch (Throwable t) {
+			LOG.info("{}",
+					"Ooops... Something went wrong, please check error log!");
+			LOG.error("{}", t);
+		}
+	}
+}
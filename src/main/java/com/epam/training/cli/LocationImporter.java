@@ -0,0 +1,331 @@
+package com.epam.training.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.epam.training.dao.csv.Db11CsvReader;
+import com.epam.training.dao.csv.ParallelDb11CsvReader;
+import com.epam.training.dao.mapped.LocationFileWriter;
+import com.epam.training.dao.memory.LocationRecord;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * Command line tool importing an IP2Location DB11 csv file into the location
+ * table in JDBC batches, or into the binary location database read by
+ * MappedLocationDao
+ *
+ * The csv file is streamed with ParallelDb11CsvReader, ranges are checked to
+ * be sorted and not overlapping before they are written. Progress is logged
+ * every few seconds. Batches are committed as they are written, a failed
+ * import reports the number of rows already in the table.
+ *
+ * Usage: LocationImporter &lt;DB11 csv file&gt; jdbc<br>
+ * LocationImporter &lt;DB11 csv file&gt; file &lt;output file&gt;
+ *
+ * The jdbc target is configured by jdbc.properties, the table is created by
+ * database/db_setup.sql. Batches are inserted over a single connection. The
+ * file target is also used by LocationFileBuilder.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LocationImporter {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(LocationImporter.class);
+
+	private static final String INSERT_SQL = "INSERT INTO GEOLOCATION.IPLOCATION "
+			+ "(ip_from, ip_to, country_code, country_name, region_name, city_name, "
+			+ "latitude, longitude, zip_code, time_zone) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final int BATCH_SIZE = 5000;
+	private static final long PROGRESS_INTERVAL_MILLIS = 2000;
+	private static final long MAX_IP4_ADDRESS = 0xFFFFFFFFL;
+
+	private final ParallelDb11CsvReader reader;
+
+	public LocationImporter() {
+		this(new ParallelDb11CsvReader());
+	}
+
+	public LocationImporter(ParallelDb11CsvReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Destination of the checked ranges
+	 *
+	 */
+	private interface Target {
+		void add(long ipFrom, long ipTo, LocationRecord record)
+				throws AppException;
+
+		void finish() throws AppException;
+	}
+
+	/**
+	 * Imports the csv file into the location table
+	 *
+	 * @param File
+	 *            DB11 csv file, rows sorted by ip_from
+	 * @param DataSource
+	 *            database holding an empty GEOLOCATION.IPLOCATION table
+	 * @return long number of rows imported
+	 *
+	 * @exception AppException
+	 *                on IO, database error or corrupted csv file
+	 * @see AppException
+	 */
+	public long importToDatabase(File csvFile, DataSource dataSource)
+			throws AppException {
+		return importTo(csvFile, new JdbcTarget(new JdbcTemplate(dataSource)));
+	}
+
+	/**
+	 * Imports the csv file into a binary location database file
+	 *
+	 * @param File
+	 *            DB11 csv file, rows sorted by ip_from
+	 * @param File
+	 *            binary location database to create
+	 * @return long number of rows imported
+	 *
+	 * @exception AppException
+	 *                on IO error or corrupted csv file
+	 * @see AppException
+	 */
+	public long importToFile(File csvFile, File outputFile)
+			throws AppException {
+		try (LocationFileWriter writer = new LocationFileWriter(outputFile)) {
+			return importTo(csvFile, new FileTarget(outputFile, writer));
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+					"LocationImporter",
+					"could not write location database file", ioe)
+					.setParameter("outputFile", outputFile));
+			throw ae;
+		}
+	}
+
+	private long importTo(final File csvFile, final Target target)
+			throws AppException {
+		final long fileSize = csvFile.length();
+		final long start = System.currentTimeMillis();
+		final long[] state = { -1L, start, 0L }; // last ipTo, last report, rows
+
+		reader.read(csvFile, new Db11CsvReader.RowHandler() {
+			public void handle(long ipFrom, long ipTo, LocationRecord record)
+					throws AppException {
+				if (ipFrom > ipTo || ipTo > MAX_IP4_ADDRESS
+						|| ipFrom <= state[0]) {
+					AppException ae = new AppException();
+					ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+							"LocationImporter",
+							"range is invalid, unordered or overlapping", null)
+							.setParameter("ipFrom", ipFrom)
+							.setParameter("ipTo", ipTo)
+							.setParameter("row", state[2] + 1));
+					throw ae;
+				}
+				state[0] = ipTo;
+				state[2]++;
+
+				target.add(ipFrom, ipTo, record);
+
+				long now = System.currentTimeMillis();
+				if (now - state[1] >= PROGRESS_INTERVAL_MILLIS) {
+					state[1] = now;
+					LOG.info("{} rows, {} rows/s, {}% of {}", new Object[] {
+							state[2], state[2] * 1000 / (now - start),
+							fileSize == 0 ? 100 : reader.getPosition() * 100
+									/ fileSize, csvFile });
+				}
+			}
+		});
+		target.finish();
+
+		long millis = Math.max(1, System.currentTimeMillis() - start);
+		LOG.info("Imported {} rows in {} ms, {} rows/s", new Object[] {
+				state[2], millis, state[2] * 1000 / millis });
+		return state[2];
+	}
+
+	/**
+	 * Inserts rows in JDBC batches
+	 *
+	 */
+	private static final class JdbcTarget implements Target {
+		private final JdbcTemplate jdbcTemplate;
+
+		private final long[] ipFrom = new long[BATCH_SIZE];
+		private final long[] ipTo = new long[BATCH_SIZE];
+		private final LocationRecord[] records = new LocationRecord[BATCH_SIZE];
+		private int count = 0;
+		private long inserted = 0;
+
+		JdbcTarget(JdbcTemplate jdbcTemplate) {
+			this.jdbcTemplate = jdbcTemplate;
+		}
+
+		public void add(long from, long to, LocationRecord record)
+				throws AppException {
+			ipFrom[count] = from;
+			ipTo[count] = to;
+			records[count] = record;
+			if (++count == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		public void finish() throws AppException {
+			flush();
+		}
+
+		private void flush() throws AppException {
+			if (count == 0) {
+				return;
+			}
+			try {
+				jdbcTemplate.batchUpdate(INSERT_SQL,
+						new BatchPreparedStatementSetter() {
+							public void setValues(PreparedStatement ps, int i)
+									throws SQLException {
+								LocationRecord record = records[i];
+								ps.setLong(1, ipFrom[i]);
+								ps.setLong(2, ipTo[i]);
+								ps.setString(3, record.getCountryCode());
+								ps.setString(4, record.getCountryName());
+								ps.setString(5, record.getRegionName());
+								ps.setString(6, record.getCityName());
+								ps.setDouble(7, record.getLatitude());
+								ps.setDouble(8, record.getLongitude());
+								ps.setString(9, record.getZipCode());
+								ps.setString(10, record.getTimeZone());
+							}
+
+							public int getBatchSize() {
+								return count;
+							}
+						});
+			} catch (DataAccessException dae) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
+						"LocationImporter", "could not insert rows", dae)
+						.setParameter("insertedRows", inserted));
+				throw ae;
+			}
+			inserted += count;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Writes rows into the binary location database format, the file is
+	 * written when the import is finished
+	 *
+	 */
+	private static final class FileTarget implements Target {
+		private final File outputFile;
+		private final LocationFileWriter writer;
+
+		FileTarget(File outputFile, LocationFileWriter writer) {
+			this.outputFile = outputFile;
+			this.writer = writer;
+		}
+
+		public void add(long from, long to, LocationRecord record)
+				throws AppException {
+			try {
+				writer.add(from, to, record);
+			} catch (IOException | IllegalArgumentException e) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+						"LocationImporter", "could not write range", e)
+						.setParameter("ipFrom", from)
+						.setParameter("ipTo", to)
+						.setParameter("outputFile", outputFile));
+				throw ae;
+			}
+		}
+
+		public void finish() throws AppException {
+			try {
+				writer.finish();
+				LOG.info("Written {} ranges and {} bytes of strings",
+						writer.getRangeCount(), writer.getDictionarySize());
+			} catch (IOException ioe) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+						"LocationImporter",
+						"could not write location database file", ioe)
+						.setParameter("outputFile", outputFile));
+				throw ae;
+			}
+		}
+	}
+
+	/**
+	 * Application entry point from command line
+	 *
+	 */
+	public static void main(String[] args) {
+		try {
+			if (!(args.length == 2 && "jdbc".equals(args[1]))
+					&& !(args.length == 3 && "file".equals(args[1]))) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getIllegalClientParameterErrorInfo(
+						"LocationImporter",
+						"wrong arguments",
+						"Usage: LocationImporter <DB11 csv file> jdbc | LocationImporter <DB11 csv file> file <output file>",
+						"args", args.length));
+				throw ae;
+			}
+
+			File csvFile = new File(args[0]);
+			if (args.length == 3) {
+				new LocationImporter().importToFile(csvFile, new File(args[2]));
+			} else {
+				Properties jdbc = PropertiesLoaderUtils
+						.loadProperties(new ClassPathResource("jdbc.properties"));
+				// one connection for every batch, closed when the import ends
+				SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+						jdbc.getProperty("jdbc.url"),
+						jdbc.getProperty("jdbc.username"),
+						jdbc.getProperty("jdbc.password"), true);
+				dataSource.setDriverClassName(jdbc.getProperty("jdbc.driver"));
+				try {
+					new LocationImporter().importToDatabase(csvFile, dataSource);
+				} finally {
+					dataSource.destroy();
+				}
+			}
+		} catch (AppException ae) {
+			LOG.info(
+					"{}",
+					"".equals(ae.getUserLog()) ? "Ooops... Something went wrong, please check error log!"
+							: ae.getUserLog());
+			LOG.error("{}", ae);
+		} catch (Throwable t) {
+			LOG.info("{}",
+					"Ooops... Something went wrong, please check error log!");
+			LOG.error("{}", t);
+		}
+	}
+}
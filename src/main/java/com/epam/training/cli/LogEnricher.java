@@ -0,0 +1,491 @@
+package com.epam.training.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationService;
+import com.epam.training.utils.LineChunk;
+
+/**
+ * Command line tool appending the location of the client to every line of a
+ * web access log
+ *
+ * The log is processed by four stages connected by bounded queues: the
+ * reader maps the file in chunks ending on line boundaries, parsers split
+ * the chunks into lines and extract the client address, lookups resolve the
+ * addresses of a chunk with one LocationService.getLocations call and build
+ * the enriched lines, and the writer writes the chunks in file order. The
+ * number of chunks between reader and writer is limited too, so memory stays
+ * flat for logs of any size.
+ *
+ * The client address is a space separated field of the line, the first one
+ * in the common and combined log formats. Country code, region, city,
+ * latitude and longitude are appended to the line, - for addresses not
+ * found.
+ *
+ * The context is loaded like in GeoLocationCLI: only the lookup components
+ * when location.mapped.file is set, the full context otherwise.
+ *
+ * Usage: LogEnricher &lt;access log&gt; &lt;output file | -&gt; [address
+ * field, 1 based] [lookup threads]
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LogEnricher {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(LogEnricher.class);
+
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private static final byte[] NOT_FOUND = " \"-\" \"-\" \"-\" - -"
+			.getBytes(StandardCharsets.UTF_8);
+
+	/** Marks the end of the input in the queues */
+	private static final Chunk END = new Chunk(-1, null);
+
+	private final LocationService locationService;
+	private final int addressField;
+	private final int parserCount;
+	private final int lookupCount;
+	private final int chunkSize;
+
+	/**
+	 * @param LocationService
+	 *            service resolving the addresses
+	 * @param int zero based space separated field of the client address
+	 * @param int number of parser threads
+	 * @param int number of lookup threads
+	 * @param int size of the mapped chunks in bytes
+	 */
+	public LogEnricher(LocationService locationService, int addressField,
+			int parserCount, int lookupCount, int chunkSize) {
+		if (addressField < 0 || parserCount < 1 || lookupCount < 1
+				|| chunkSize < 1) {
+			throw new IllegalArgumentException(
+					String.format(
+							"invalid enricher settings: addressField=%d parserCount=%d lookupCount=%d chunkSize=%d",
+							addressField, parserCount, lookupCount, chunkSize));
+		}
+		this.locationService = locationService;
+		this.addressField = addressField;
+		this.parserCount = parserCount;
+		this.lookupCount = lookupCount;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Part of the log passed between the stages, its lines are set by the
+	 * parser, its output by the lookup
+	 *
+	 */
+	private static class Chunk {
+		final long sequence;
+		final LineChunk lines;
+
+		int[] lineStart;
+		int[] lineEnd;
+		List<String> addresses;
+		byte[] output;
+
+		Chunk(long sequence, LineChunk lines) {
+			this.sequence = sequence;
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Failure of a stage, handed to the writer in place of a chunk
+	 *
+	 */
+	private static final class FailedChunk extends Chunk {
+		final Throwable throwable;
+
+		FailedChunk(Throwable throwable) {
+			super(-1, null);
+			this.throwable = throwable;
+		}
+	}
+
+	/**
+	 * Enriches all lines of the log
+	 *
+	 * @param File
+	 *            web access log
+	 * @param WritableByteChannel
+	 *            destination of the enriched lines
+	 * @return long number of lines written
+	 *
+	 * @exception AppException
+	 *                on IO, parse or service error
+	 * @see AppException
+	 */
+	public long enrich(final File logFile, WritableByteChannel output)
+			throws AppException {
+		final BlockingQueue<Chunk> mapped = new ArrayBlockingQueue<>(
+				parserCount);
+		final BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(
+				lookupCount);
+		final BlockingQueue<Chunk> enriched = new ArrayBlockingQueue<>(
+				lookupCount);
+		// chunks read but not written yet, including the ones waiting for an
+		// earlier chunk in the writer
+		final Semaphore inFlight = new Semaphore(2 * (parserCount + lookupCount));
+
+		ExecutorService executor = Executors.newFixedThreadPool(1
+				+ parserCount + lookupCount);
+		long lineCount = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(logFile, "r");
+				final FileChannel channel = raf.getChannel()) {
+			executor.execute(new Stage(enriched) {
+				void process() throws Exception {
+					read(channel, mapped, inFlight);
+					for (int i = 0; i < parserCount; i++) {
+						mapped.put(END);
+					}
+				}
+			});
+
+			final AtomicInteger parsersLeft = new AtomicInteger(parserCount);
+			for (int i = 0; i < parserCount; i++) {
+				executor.execute(new Stage(enriched) {
+					void process() throws Exception {
+						for (Chunk chunk; (chunk = mapped.take()) != END;) {
+							parse(chunk);
+							parsed.put(chunk);
+						}
+						if (parsersLeft.decrementAndGet() == 0) {
+							for (int i = 0; i < lookupCount; i++) {
+								parsed.put(END);
+							}
+						}
+					}
+				});
+			}
+
+			final AtomicInteger lookupsLeft = new AtomicInteger(lookupCount);
+			for (int i = 0; i < lookupCount; i++) {
+				executor.execute(new Stage(enriched) {
+					void process() throws Exception {
+						for (Chunk chunk; (chunk = parsed.take()) != END;) {
+							lookup(chunk);
+							enriched.put(chunk);
+						}
+						if (lookupsLeft.decrementAndGet() == 0) {
+							enriched.put(END);
+						}
+					}
+				});
+			}
+
+			lineCount = write(enriched, inFlight, output);
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("LogEnricher",
+					"could not read log or write enriched log", ioe)
+					.setParameter("logFile", logFile));
+			throw ae;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("LogEnricher",
+					"interrupted", ie).setParameter("logFile", logFile));
+			throw ae;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return lineCount;
+	}
+
+	/**
+	 * Pipeline stage, a failure is handed to the writer, errors too, as the
+	 * writer would wait for the chunks of the failed stage forever
+	 *
+	 */
+	private abstract static class Stage implements Runnable {
+		private final BlockingQueue<Chunk> enriched;
+
+		Stage(BlockingQueue<Chunk> enriched) {
+			this.enriched = enriched;
+		}
+
+		abstract void process() throws Exception;
+
+		public void run() {
+			try {
+				process();
+			} catch (InterruptedException ie) {
+				// the pipeline is shut down
+			} catch (Throwable t) {
+				try {
+					enriched.put(new FailedChunk(t));
+				} catch (InterruptedException ie) {
+					// the pipeline is shut down
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reader stage, maps the chunks, each chunk owns the lines starting
+	 * inside it
+	 */
+	private void read(FileChannel channel, BlockingQueue<Chunk> mapped,
+			Semaphore inFlight) throws IOException, InterruptedException {
+		long size = channel.size();
+		long sequence = 0;
+		for (long start = 0; start < size; start += chunkSize) {
+			LineChunk lines = LineChunk.map(channel, size, start,
+					Math.min(size, start + chunkSize));
+			inFlight.acquire();
+			mapped.put(new Chunk(sequence++, lines));
+		}
+	}
+
+	/**
+	 * Parser stage, finds the lines and their client addresses
+	 */
+	private void parse(Chunk chunk) {
+		LineChunk lines = chunk.lines;
+		ByteBuffer buffer = lines.getBuffer();
+		List<Integer> starts = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		chunk.addresses = new ArrayList<>();
+
+		int pos = lines.getFrom();
+		while (pos < lines.getTo()) {
+			int eol = lines.lineEnd(pos);
+			int end = eol;
+			if (end > pos && buffer.get(end - 1) == '\r') {
+				end--;
+			}
+			if (end > pos) {
+				starts.add(pos);
+				ends.add(end);
+				chunk.addresses.add(field(buffer, pos, end));
+			}
+			pos = eol + 1;
+		}
+
+		chunk.lineStart = new int[starts.size()];
+		chunk.lineEnd = new int[ends.size()];
+		for (int i = 0; i < chunk.lineStart.length; i++) {
+			chunk.lineStart[i] = starts.get(i);
+			chunk.lineEnd[i] = ends.get(i);
+		}
+	}
+
+	/**
+	 * Space separated field of the line, empty if the line has fewer fields
+	 */
+	private String field(ByteBuffer buffer, int from, int to) {
+		int start = from;
+		for (int i = 0; i < addressField; i++) {
+			while (start < to && buffer.get(start) != ' ') {
+				start++;
+			}
+			while (start < to && buffer.get(start) == ' ') {
+				start++;
+			}
+		}
+		int end = start;
+		while (end < to && buffer.get(end) != ' ') {
+			end++;
+		}
+		byte[] bytes = new byte[end - start];
+		buffer.position(start);
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Lookup stage, resolves the addresses and builds the enriched lines
+	 */
+	private void lookup(Chunk chunk) throws AppException, IOException {
+		List<LocationEntity> locationEntities = locationService
+				.getLocations(chunk.addresses);
+
+		ByteBuffer buffer = chunk.lines.getBuffer();
+		ByteArrayOutputStream output = new ByteArrayOutputStream(
+				chunk.lines.getTo() - chunk.lines.getFrom() + 48
+						* chunk.lineStart.length);
+		byte[] line = new byte[256];
+		for (int i = 0; i < chunk.lineStart.length; i++) {
+			int length = chunk.lineEnd[i] - chunk.lineStart[i];
+			if (line.length < length) {
+				line = new byte[Math.max(length, 2 * line.length)];
+			}
+			buffer.position(chunk.lineStart[i]);
+			buffer.get(line, 0, length);
+			output.write(line, 0, length);
+
+			LocationEntity locationEntity = locationEntities.get(i);
+			if (locationEntity == null || locationEntity.isUnknownLocation()) {
+				output.write(NOT_FOUND);
+			} else {
+				StringBuilder sb = new StringBuilder(64);
+				appendQuoted(sb, locationEntity.getCountryCode());
+				appendQuoted(sb, locationEntity.getRegionName());
+				appendQuoted(sb, locationEntity.getCityName());
+				sb.append(' ').append(locationEntity.getLatitude());
+				sb.append(' ').append(locationEntity.getLongitude());
+				output.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			output.write('\n');
+		}
+		chunk.output = output.toByteArray();
+	}
+
+	/**
+	 * Appends a space and the value quoted, quotes and backslashes escaped as
+	 * in access logs
+	 */
+	private static void appendQuoted(StringBuilder sb, String value) {
+		sb.append(" \"");
+		if (value == null) {
+			sb.append('-');
+		} else {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					sb.append('\\');
+				}
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Writer stage on the calling thread, writes the chunks in file order
+	 */
+	private long write(BlockingQueue<Chunk> enriched, Semaphore inFlight,
+			WritableByteChannel output) throws AppException, IOException,
+			InterruptedException {
+		long lineCount = 0;
+		long next = 0;
+		Map<Long, Chunk> waiting = new HashMap<>();
+		for (Chunk chunk; (chunk = enriched.take()) != END;) {
+			if (chunk instanceof FailedChunk) {
+				Throwable t = ((FailedChunk) chunk).throwable;
+				if (t instanceof Error) {
+					throw (Error) t;
+				}
+				if (t instanceof AppException) {
+					throw (AppException) t;
+				}
+				if (t instanceof IOException) {
+					throw (IOException) t;
+				}
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getUnexpectedErrorInfo(
+						"LogEnricher", "enrichment failed", (Exception) t)
+						.setParameter("lineCount", lineCount));
+				throw ae;
+			}
+
+			waiting.put(chunk.sequence, chunk);
+			while ((chunk = waiting.remove(next)) != null) {
+				ByteBuffer bytes = ByteBuffer.wrap(chunk.output);
+				while (bytes.hasRemaining()) {
+					output.write(bytes);
+				}
+				lineCount += chunk.lineStart.length;
+				next++;
+				inFlight.release();
+			}
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Application entry point from command line
+	 *
+	 */
+	public static void main(String[] args) {
+		ClassPathXmlApplicationContext context = null;
+		try {
+			int addressField;
+			int lookupCount;
+			try {
+				if (args.length < 2 || args.length > 4) {
+					throw new IllegalArgumentException(
+							"wrong number of arguments");
+				}
+				addressField = args.length > 2 ? Integer.parseInt(args[2]) - 1
+						: 0;
+				lookupCount = args.length > 3 ? Integer.parseInt(args[3])
+						: Runtime.getRuntime().availableProcessors();
+			} catch (IllegalArgumentException iae) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getIllegalClientParameterErrorInfo(
+						"LogEnricher",
+						"wrong arguments: " + iae.getMessage(),
+						"Usage: LogEnricher <access log> <output file | -> [address field] [lookup threads]",
+						"args", args.length));
+				throw ae;
+			}
+
+			context = GeoLocationCLI.createContext();
+			LogEnricher logEnricher = new LogEnricher(
+					context.getBean(LocationService.class), addressField,
+					Math.max(1, lookupCount / 2), lookupCount,
+					DEFAULT_CHUNK_SIZE);
+
+			long start = System.currentTimeMillis();
+			long lineCount;
+			if ("-".equals(args[1])) {
+				lineCount = logEnricher.enrich(new File(args[0]),
+						new FileOutputStream(FileDescriptor.out).getChannel());
+			} else {
+				try (FileOutputStream fos = new FileOutputStream(args[1])) {
+					lineCount = logEnricher.enrich(new File(args[0]),
+							fos.getChannel());
+				}
+			}
+			LOG.info("Enriched {} lines in {} ms", lineCount,
+					System.currentTimeMillis() - start);
+		} catch (AppException ae) {
+			LOG.info(
+					"{}",
+					"".equals(ae.getUserLog()) ? "Ooops... Something went wrong, please check error log!"
+							: ae.getUserLog());
+			LOG.error("{}", ae);
+		} catch (Throwable t) {
+			LOG.info("{}",
+					"Ooops... Something went wrong, please check error log!");
+			LOG.error("{}", t);
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.epam.training.dao;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * Base class of the LocationDao implementations Adapts the deprecated double
+ * based methods to the long based ones
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public abstract class AbstractLocationDao implements LocationDao {
+
+	/** Converted address no range can contain */
+	protected static final long UNCOVERED = -1L;
+
+	/**
+	 * Smallest accepted ratio of new and old range count on reload, guards
+	 * against swapping in a truncated file
+	 */
+	protected static final double MIN_RELOAD_RATIO = 0.5;
+
+	@Deprecated
+	@Override
+	public LocationEntity find(double convertedIp4Address) throws AppException {
+		return find(toLong(convertedIp4Address));
+	}
+
+	@Deprecated
+	@Override
+	public LocationRange findRange(double convertedIp4Address)
+			throws AppException {
+		return findRange(toLong(convertedIp4Address));
+	}
+
+	@Deprecated
+	@Override
+	public LocationEntity[] findAll(double[] sortedConvertedIp4Addresses)
+			throws AppException {
+		long[] addresses = new long[sortedConvertedIp4Addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = toLong(sortedConvertedIp4Addresses[i]);
+		}
+		return findAll(addresses);
+	}
+
+	/**
+	 * Integral part of a double converted address, UNCOVERED for negative and
+	 * NaN values
+	 * 
+	 */
+	private static long toLong(double convertedIp4Address) {
+		return convertedIp4Address >= 0 ? (long) Math
+				.floor(convertedIp4Address) : UNCOVERED;
+	}
+
+	/**
+	 * Checks a freshly built snapshot before it replaces the current one
+	 * 
+	 * @param String
+	 *            context id of the error
+	 * @param int number of ranges of the current snapshot, 0 if not loaded
+	 * @param int number of ranges of the new snapshot
+	 * @exception AppException
+	 *                if the new snapshot is empty or much smaller than the
+	 *                current one
+	 * @see AppException
+	 */
+	protected static void validateReload(String contextId, int oldRangeCount,
+			int newRangeCount) throws AppException {
+		if (newRangeCount == 0 || newRangeCount < oldRangeCount
+				* MIN_RELOAD_RATIO) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getInitializaionErrorInfo(contextId,
+					String.format(
+							"new dataset has %d ranges, current one has %d",
+							newRangeCount, oldRangeCount), "newRangeCount",
+					newRangeCount));
+			throw ae;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.epam.training.dao;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+
+/**
+ * DAO interface for LocationEntity of ip6 addresses Addresses are unsigned
+ * 128 bit values carried in two longs, the high and the low 64 bits.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public interface Ip6LocationDao {
+
+	/**
+	 * @param long high 64 bits of the ip6 address
+	 * @param long low 64 bits of the ip6 address
+	 * @return LocationEntity location of the range containing the address
+	 */
+	LocationEntity find(long high, long low) throws AppException;
+
+	/**
+	 * Batch find
+	 * 
+	 * @param long[] high 64 bits of the ip6 addresses
+	 * @param long[] low 64 bits of the ip6 addresses
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 */
+	LocationEntity[] findAll(long[] highs, long[] lows) throws AppException;
+}
@@ -1,14 +1,54 @@
 package com.epam.training.dao;
 
 import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
 import com.epam.training.exception.AppException;
 
 /**
- * DAO interface for LocationEntity
+ * DAO interface for LocationEntity Addresses are unsigned 32 bit values
+ * carried in a long.
  * 
  * @author Ferenc Kis
  * @version 1.1
+ * @see AbstractLocationDao
  */
 public interface LocationDao {
+	LocationEntity find(long convertedIp4Address) throws AppException;
+
+	/**
+	 * Finds the whole range containing the address
+	 * 
+	 * @param long converted ip4Address
+	 * @return LocationRange bounds and location of the matching range
+	 */
+	LocationRange findRange(long convertedIp4Address) throws AppException;
+
+	/**
+	 * Batch find, resolves all addresses in one sweep over the ranges
+	 * 
+	 * @param long[] converted ip4Addresses sorted in ascending order
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 */
+	LocationEntity[] findAll(long[] sortedConvertedIp4Addresses)
+			throws AppException;
+
+	/**
+	 * @deprecated use {@link #find(long)}
+	 */
+	@Deprecated
 	LocationEntity find(double convertedIp4Address) throws AppException;
+
+	/**
+	 * @deprecated use {@link #findRange(long)}
+	 */
+	@Deprecated
+	LocationRange findRange(double convertedIp4Address) throws AppException;
+
+	/**
+	 * @deprecated use {@link #findAll(long[])}
+	 */
+	@Deprecated
+	LocationEntity[] findAll(double[] sortedConvertedIp4Addresses)
+			throws AppException;
 }
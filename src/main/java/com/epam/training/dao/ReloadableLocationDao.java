@@ -0,0 +1,31 @@
+package com.epam.training.dao;
+
+import java.io.File;
+
+import com.epam.training.exception.AppException;
+
+/**
+ * LocationDao whose dataset can be replaced at runtime A new snapshot is
+ * built and validated next to the current one, then swapped in with a single
+ * write. Lookups in progress finish on the snapshot they started with.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public interface ReloadableLocationDao {
+
+	/**
+	 * @return int number of ranges of the current snapshot, 0 if not loaded
+	 *         yet
+	 */
+	int getRangeCount();
+
+	/**
+	 * Builds a new snapshot from the file and swaps it in
+	 * 
+	 * @param File
+	 *            dataset file in the format of the implementation
+	 * @return int number of ranges of the replaced snapshot
+	 */
+	int reload(File file) throws AppException;
+}
@@ -0,0 +1,203 @@
+package com.epam.training.dao.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import com.epam.training.dao.memory.LocationRecord;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.utils.Ip6Parser;
+
+/**
+ * Reader for IP2Location DB11 csv files. Lines look like
+ * "16777216","16777471","AU","Australia","Queensland","Brisbane","-27.46794","153.02809","4000","+10:00"
+ *
+ * The ip6 edition has the same columns, the bounds are 128 bit decimal
+ * numbers there.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class Db11CsvReader {
+
+	public static final int FIELD_COUNT = 10;
+
+	/**
+	 * Callback receiving parsed csv rows in file order
+	 *
+	 */
+	public interface RowHandler {
+		void handle(long ipFrom, long ipTo, LocationRecord record)
+				throws AppException;
+	}
+
+	/**
+	 * Callback receiving parsed rows of the ip6 csv in file order, bounds are
+	 * split into high and low 64 bits
+	 *
+	 */
+	public interface Ip6RowHandler {
+		void handle(long fromHigh, long fromLow, long toHigh, long toLow,
+				LocationRecord record) throws AppException;
+	}
+
+	/**
+	 * Callback receiving the fields of a csv line
+	 *
+	 */
+	private interface LineHandler {
+		void handle(String[] fields) throws AppException;
+	}
+
+	/**
+	 * Reads all rows of the csv file
+	 *
+	 * @param File
+	 *            DB11 csv file
+	 * @param RowHandler
+	 *            callback for parsed rows
+	 * @return long number of rows read
+	 *
+	 * @exception AppException
+	 *                on IO or parse error
+	 * @see AppException
+	 */
+	public long read(File csvFile, final RowHandler handler)
+			throws AppException {
+		return readLines(csvFile, new LineHandler() {
+			public void handle(String[] fields) throws AppException {
+				handler.handle(Long.parseLong(fields[0]),
+						Long.parseLong(fields[1]), toLocationRecord(fields));
+			}
+		});
+	}
+
+	/**
+	 * Reads all rows of the ip6 csv file
+	 *
+	 * @param File
+	 *            DB11 ip6 csv file
+	 * @param Ip6RowHandler
+	 *            callback for parsed rows
+	 * @return long number of rows read
+	 *
+	 * @exception AppException
+	 *                on IO or parse error
+	 * @see AppException
+	 */
+	public long readIp6(File csvFile, final Ip6RowHandler handler)
+			throws AppException {
+		final long[] from = new long[2];
+		final long[] to = new long[2];
+		return readLines(csvFile, new LineHandler() {
+			public void handle(String[] fields) throws AppException {
+				if (!Ip6Parser.parseDecimal(fields[0], from)
+						|| !Ip6Parser.parseDecimal(fields[1], to)) {
+					throw new IllegalArgumentException(
+							"ip6 bounds must be 128 bit decimal numbers");
+				}
+				handler.handle(from[Ip6Parser.HIGH], from[Ip6Parser.LOW],
+						to[Ip6Parser.HIGH], to[Ip6Parser.LOW],
+						toLocationRecord(fields));
+			}
+		});
+	}
+
+	private static LocationRecord toLocationRecord(String[] fields) {
+		return new LocationRecord(fields[2], fields[3], fields[4], fields[5],
+				Double.parseDouble(fields[6]), Double.parseDouble(fields[7]),
+				fields[8], fields[9]);
+	}
+
+	/**
+	 * Splits every line of the csv file and passes the fields to the handler
+	 *
+	 * @return long number of lines read
+	 *
+	 * @exception AppException
+	 *                on IO or parse error
+	 * @see AppException
+	 */
+	private long readLines(File csvFile, LineHandler handler)
+			throws AppException {
+		long lineNumber = 0;
+		String line = null;
+		String[] fields = new String[FIELD_COUNT];
+		StringBuilder field = new StringBuilder();
+
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(
+				new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
+			while ((line = br.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (splitLine(line, fields, field) != FIELD_COUNT) {
+					throw new IllegalArgumentException(String.format(
+							"expected %d fields", FIELD_COUNT));
+				}
+				handler.handle(fields);
+			}
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("Db11CsvReader",
+					"could not read csv file", ioe).setParameter("csvFile",
+					csvFile));
+			throw ae;
+		} catch (IllegalArgumentException iae) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo("Db11CsvReader",
+					"corrupted csv line", iae)
+					.setParameter("lineNumber", lineNumber)
+					.setParameter("line", line));
+			throw ae;
+		}
+
+		return lineNumber;
+	}
+
+	/**
+	 * Splits a csv line into fields, handles quoted fields and escaped quotes
+	 *
+	 * @return int number of fields found
+	 */
+	private int splitLine(String line, String[] fields, StringBuilder field) {
+		int count = 0;
+		int length = line.length();
+		int i = 0;
+
+		while (i <= length) {
+			field.setLength(0);
+			if (i < length && line.charAt(i) == '"') {
+				i++;
+				while (i < length) {
+					char c = line.charAt(i++);
+					if (c == '"') {
+						if (i < length && line.charAt(i) == '"') {
+							field.append('"');
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						field.append(c);
+					}
+				}
+			}
+			while (i < length && line.charAt(i) != ',') {
+				field.append(line.charAt(i++));
+			}
+			if (count < fields.length) {
+				fields[count] = field.toString();
+			}
+			count++;
+			i++;
+		}
+
+		return count;
+	}
+}
@@ -0,0 +1,320 @@
+package com.epam.training.dao.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.epam.training.dao.memory.LocationRecord;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.utils.LineChunk;
+import com.epam.training.utils.ReadAheadQueue;
+
+/**
+ * Streaming reader for IP2Location DB11 csv files, same format as
+ * Db11CsvReader
+ *
+ * The file is memory mapped in chunks, chunks are parsed on a thread pool
+ * straight from the mapped bytes and handed to the RowHandler in file order
+ * on the calling thread. Only a few chunks are in memory at a time, so files
+ * of any size are read with constant memory.
+ *
+ * A chunk owns the lines starting inside it, the last of them may end in the
+ * next chunk, see LineChunk.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ * @see Db11CsvReader
+ */
+public class ParallelDb11CsvReader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private final int threadCount;
+	private final int chunkSize;
+
+	private volatile long position;
+
+	public ParallelDb11CsvReader() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param int number of parser threads
+	 * @param int size of the mapped chunks in bytes
+	 */
+	public ParallelDb11CsvReader(int threadCount, int chunkSize) {
+		if (threadCount < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException(String.format(
+					"invalid reader settings: threadCount=%d chunkSize=%d",
+					threadCount, chunkSize));
+		}
+		this.threadCount = threadCount;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return long end offset of the rows handed to the handler so far
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Reads all rows of the csv file
+	 *
+	 * @param File
+	 *            DB11 csv file
+	 * @param RowHandler
+	 *            callback for parsed rows, called on the calling thread
+	 * @return long number of rows read
+	 *
+	 * @exception AppException
+	 *                on IO or parse error
+	 * @see AppException
+	 */
+	public long read(File csvFile, Db11CsvReader.RowHandler handler)
+			throws AppException {
+		position = 0;
+		long rowCount = 0;
+
+		try (RandomAccessFile raf = new RandomAccessFile(csvFile, "r");
+				FileChannel channel = raf.getChannel();
+				ReadAheadQueue<Chunk> chunks = new ReadAheadQueue<>(
+						threadCount)) {
+			long size = channel.size();
+
+			long nextStart = 0;
+			while (nextStart < size || !chunks.isEmpty()) {
+				while (nextStart < size && !chunks.isFull()) {
+					long end = Math.min(size, nextStart + chunkSize);
+					chunks.submit(new ChunkParser(channel, size, nextStart,
+							end));
+					nextStart = end;
+				}
+
+				Chunk chunk = chunks.take();
+				for (int i = 0; i < chunk.count; i++) {
+					handler.handle(chunk.ipFrom[i], chunk.ipTo[i],
+							chunk.records[i]);
+				}
+				rowCount += chunk.count;
+				position = chunk.end;
+			}
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+					"ParallelDb11CsvReader", "could not read csv file", ioe)
+					.setParameter("csvFile", csvFile));
+			throw ae;
+		} catch (ExecutionException ee) {
+			if (!(ee.getCause() instanceof CorruptedLineException)) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+						"ParallelDb11CsvReader", "could not read csv file", ee)
+						.setParameter("csvFile", csvFile));
+				throw ae;
+			}
+			CorruptedLineException cle = (CorruptedLineException) ee
+					.getCause();
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+					"ParallelDb11CsvReader", "corrupted csv line",
+					cle.parseError).setParameter("offset", cle.offset)
+					.setParameter("line", cle.line));
+			throw ae;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+					"ParallelDb11CsvReader", "interrupted", ie).setParameter(
+					"csvFile", csvFile));
+			throw ae;
+		}
+
+		return rowCount;
+	}
+
+	/**
+	 * Parsed rows of a chunk
+	 *
+	 */
+	private static final class Chunk {
+		long[] ipFrom = new long[1024];
+		long[] ipTo = new long[1024];
+		LocationRecord[] records = new LocationRecord[1024];
+		int count;
+		long end;
+
+		void add(long from, long to, LocationRecord record) {
+			if (count == ipFrom.length) {
+				int capacity = count + (count >> 1);
+				ipFrom = Arrays.copyOf(ipFrom, capacity);
+				ipTo = Arrays.copyOf(ipTo, capacity);
+				records = Arrays.copyOf(records, capacity);
+			}
+			ipFrom[count] = from;
+			ipTo[count] = to;
+			records[count] = record;
+			count++;
+		}
+	}
+
+	/**
+	 * Parse error with the file offset of the line
+	 *
+	 */
+	private static final class CorruptedLineException extends Exception {
+		private static final long serialVersionUID = -3950452867715314218L;
+
+		final long offset;
+		final String line;
+		final IllegalArgumentException parseError;
+
+		CorruptedLineException(long offset, String line,
+				IllegalArgumentException parseError) {
+			super(parseError);
+			this.offset = offset;
+			this.line = line;
+			this.parseError = parseError;
+		}
+	}
+
+	/**
+	 * Maps a chunk and parses the lines starting inside it
+	 *
+	 */
+	private static final class ChunkParser implements Callable<Chunk> {
+		private final FileChannel channel;
+		private final long size;
+		private final long start;
+		private final long end;
+
+		private byte[] line = new byte[256];
+		private final int[] fieldStart = new int[Db11CsvReader.FIELD_COUNT];
+		private final int[] fieldEnd = new int[Db11CsvReader.FIELD_COUNT];
+
+		ChunkParser(FileChannel channel, long size, long start, long end) {
+			this.channel = channel;
+			this.size = size;
+			this.start = start;
+			this.end = end;
+		}
+
+		public Chunk call() throws IOException, CorruptedLineException {
+			LineChunk lines = LineChunk.map(channel, size, start, end);
+			MappedByteBuffer buffer = lines.getBuffer();
+
+			Chunk chunk = new Chunk();
+			chunk.end = end;
+			int pos = lines.getFrom();
+			while (pos < lines.getTo()) {
+				int eol = lines.lineEnd(pos);
+				int length = eol - pos;
+				if (length > 0 && buffer.get(eol - 1) == '\r') {
+					length--;
+				}
+
+				if (length > 0) {
+					if (line.length < length) {
+						line = new byte[Math.max(length, 2 * line.length)];
+					}
+					buffer.position(pos);
+					buffer.get(line, 0, length);
+					try {
+						parseLine(length, chunk);
+					} catch (IllegalArgumentException iae) {
+						throw new CorruptedLineException(lines.getOffset()
+								+ pos, new String(line, 0, length,
+								StandardCharsets.UTF_8), iae);
+					}
+				}
+				pos = eol + 1;
+			}
+
+			return chunk;
+		}
+
+		/**
+		 * Splits the line in place, quotes are removed and escaped quotes
+		 * unescaped, then converts the fields
+		 */
+		private void parseLine(int length, Chunk chunk) {
+			int count = 0;
+			int i = 0;
+			while (i <= length) {
+				if (count == Db11CsvReader.FIELD_COUNT) {
+					throw new IllegalArgumentException(String.format(
+							"expected %d fields", Db11CsvReader.FIELD_COUNT));
+				}
+				int out = i;
+				fieldStart[count] = out;
+				if (i < length && line[i] == '"') {
+					i++;
+					while (i < length) {
+						byte b = line[i++];
+						if (b == '"') {
+							if (i < length && line[i] == '"') {
+								line[out++] = '"';
+								i++;
+							} else {
+								break;
+							}
+						} else {
+							line[out++] = b;
+						}
+					}
+				}
+				while (i < length && line[i] != ',') {
+					line[out++] = line[i++];
+				}
+				fieldEnd[count] = out;
+				count++;
+				i++;
+			}
+			if (count != Db11CsvReader.FIELD_COUNT) {
+				throw new IllegalArgumentException(String.format(
+						"expected %d fields", Db11CsvReader.FIELD_COUNT));
+			}
+
+			chunk.add(parseLong(0), parseLong(1), new LocationRecord(
+					string(2), string(3), string(4), string(5),
+					parseDouble(6), parseDouble(7), string(8), string(9)));
+		}
+
+		private long parseLong(int field) {
+			int from = fieldStart[field];
+			int to = fieldEnd[field];
+			if (from == to || to - from > 18) {
+				throw new IllegalArgumentException("invalid ip address field");
+			}
+			long value = 0;
+			for (int i = from; i < to; i++) {
+				int digit = line[i] - '0';
+				if (digit < 0 || digit > 9) {
+					throw new IllegalArgumentException(
+							"invalid ip address field");
+				}
+				value = value * 10 + digit;
+			}
+			return value;
+		}
+
+		private double parseDouble(int field) {
+			return Double.parseDouble(new String(line, fieldStart[field],
+					fieldEnd[field] - fieldStart[field],
+					StandardCharsets.ISO_8859_1));
+		}
+
+		private String string(int field) {
+			return new String(line, fieldStart[field], fieldEnd[field]
+					- fieldStart[field], StandardCharsets.UTF_8);
+		}
+	}
+}
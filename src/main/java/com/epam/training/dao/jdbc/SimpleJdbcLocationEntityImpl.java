@@ -2,26 +2,39 @@ package com.epam.training.dao.jdbc;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.epam.training.dao.LocationDao;
+import com.epam.training.dao.AbstractLocationDao;
 import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
 import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
 import com.epam.training.exception.ErrorInfoFactory;
 
 /**
  * JDBC Dao implementation for LocalitonEntity classes
  * 
+ * Ranges do not overlap, so the only range that may contain an address is
+ * the first one ending at or after it. Both queries are range scans on the
+ * unique ip_to index instead of a BETWEEN over the whole table.
+ * 
  * @author Ferenc Kis
  * @version 1.1
  */
 @Repository
-public class SimpleJdbcLocationEntityImpl implements LocationDao {
+public class SimpleJdbcLocationEntityImpl extends AbstractLocationDao {
+
+	private static final String SELECT_COLUMNS = "SELECT ip_from, ip_to, country_code, country_name, region_name, city_name, "
+			+ "latitude, longitude, zip_code, time_zone "
+			+ "FROM GEOLOCATION.IPLOCATION ";
 
 	@Autowired
 	private JdbcTemplate jdbcTemplate;
@@ -29,21 +42,33 @@ public class SimpleJdbcLocationEntityImpl implements LocationDao {
 	/**
 	 * DAO find method for single LocationEntity
 	 * 
-	 * @param double converted ip4Address
+	 * @param long converted ip4Address
 	 * @exception AppException
 	 *                on data access error, database server failure, etc...
 	 * @see AppException
 	 */
-	public LocationEntity find(double convertedIp4Address) throws AppException {
-		LocationEntity locationEntity = null;
+	public LocationEntity find(long convertedIp4Address) throws AppException {
+		return findRange(convertedIp4Address).getLocationEntity();
+	}
+
+	/**
+	 * DAO find method for the range containing the address
+	 * 
+	 * @param long converted ip4Address
+	 * @return LocationRange bounds and location of the matching range
+	 * @exception AppException
+	 *                on data access error, database server failure, or if
+	 *                address is not covered by any range
+	 * @see AppException
+	 */
+	public LocationRange findRange(long convertedIp4Address)
+			throws AppException {
+		List<LocationRange> locationRanges = null;
 
 		try {
-			locationEntity = jdbcTemplate
-					.queryForObject(
-							"SELECT country_code, country_name, region_name, city_name, "
-									+ "latitude, longitude, zip_code, time_zone "
-									+ "FROM GEOLOCATION.IPLOCATION WHERE ? BETWEEN ip_from AND ip_to",
-							new UserEntityRowMapper(), convertedIp4Address);
+			locationRanges = jdbcTemplate.query(SELECT_COLUMNS
+					+ "WHERE ip_to >= ? ORDER BY ip_to LIMIT 1",
+					new LocationRangeRowMapper(), convertedIp4Address);
 		} catch (DataAccessException dae) {
 			AppException ae = new AppException();
 			ae.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
@@ -52,7 +77,82 @@ public class SimpleJdbcLocationEntityImpl implements LocationDao {
 			throw ae;
 		}
 
-		return locationEntity;
+		if (locationRanges.isEmpty()
+				|| !locationRanges.get(0).contains(convertedIp4Address)) {
+			AppException ae = new ClientErrorException();
+			ae.addInfo(ErrorInfoFactory.getIllegalReturnErrorInfo(
+					"SimpleJdbcLocationEntityImpl",
+					"ip address is not covered by any range",
+					"IP address was not found - maybe local or sensitive",
+					"convertedIp4Address", convertedIp4Address));
+			throw ae;
+		}
+
+		return locationRanges.get(0);
+	}
+
+	/**
+	 * DAO batch find method, streams the ranges between the smallest and the
+	 * largest address once and merges them with the sorted addresses
+	 * Both queries run in one read-only transaction, so they see the same
+	 * table even while it is being updated.
+	 * 
+	 * @param long[] converted ip4Addresses sorted in ascending order
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 * @exception AppException
+	 *                on data access error, database server failure, etc...
+	 * @see AppException
+	 */
+	@Transactional(readOnly = true)
+	public LocationEntity[] findAll(final long[] sortedConvertedIp4Addresses)
+			throws AppException {
+		final LocationEntity[] locationEntities = new LocationEntity[sortedConvertedIp4Addresses.length];
+		if (sortedConvertedIp4Addresses.length == 0) {
+			return locationEntities;
+		}
+
+		try {
+			// end of the last range needed, the table end if there is none
+			List<Long> lastIpTo = jdbcTemplate.queryForList(
+					"SELECT ip_to FROM GEOLOCATION.IPLOCATION "
+							+ "WHERE ip_to >= ? ORDER BY ip_to LIMIT 1",
+					Long.class,
+					sortedConvertedIp4Addresses[sortedConvertedIp4Addresses.length - 1]);
+
+			jdbcTemplate.query(SELECT_COLUMNS
+					+ "WHERE ip_to BETWEEN ? AND ? ORDER BY ip_to",
+					new RowCallbackHandler() {
+						private final UserEntityRowMapper rowMapper = new UserEntityRowMapper();
+						private int next = 0;
+
+						public void processRow(ResultSet rs)
+								throws SQLException {
+							long ipFrom = rs.getLong("ip_from");
+							long ipTo = rs.getLong("ip_to");
+
+							// addresses before this range are not covered
+							while (next < sortedConvertedIp4Addresses.length
+									&& sortedConvertedIp4Addresses[next] < ipFrom) {
+								next++;
+							}
+							while (next < sortedConvertedIp4Addresses.length
+									&& sortedConvertedIp4Addresses[next] <= ipTo) {
+								locationEntities[next++] = rowMapper.mapRow(
+										rs, rs.getRow());
+							}
+						}
+					}, sortedConvertedIp4Addresses[0],
+					lastIpTo.isEmpty() ? Long.MAX_VALUE : lastIpTo.get(0));
+		} catch (DataAccessException dae) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
+					"SimpleJdbcLocationEntityImpl",
+					"could not access database - maybe not operational", dae));
+			throw ae;
+		}
+
+		return locationEntities;
 	}
 
 	/**
@@ -79,4 +179,19 @@ public class SimpleJdbcLocationEntityImpl implements LocationDao {
 			return locationEntity;
 		}
 	}
+
+	/**
+	 * RowMapper for jdbcTemplate Maps location entity database records with
+	 * their bounds to LocationRange objects
+	 * 
+	 */
+	private class LocationRangeRowMapper implements RowMapper<LocationRange> {
+		private final UserEntityRowMapper rowMapper = new UserEntityRowMapper();
+
+		public LocationRange mapRow(ResultSet rs, int rowNum)
+				throws SQLException {
+			return new LocationRange(rs.getLong("ip_from"),
+					rs.getLong("ip_to"), rowMapper.mapRow(rs, rowNum));
+		}
+	}
 }
@@ -0,0 +1,63 @@
+package com.epam.training.dao.mapped;
+
+/**
+ * Layout of the binary location database file
+ *
+ * <pre>
+ * header     magic, version, rangeCount, recordSize, rangesOffset,
+ *            dictionaryOffset, dictionarySize (int each, padded to 32 bytes)
+ * ranges     rangeCount fixed width records sorted by ipFrom:
+ *            ipFrom, ipTo (int, biased by Integer.MIN_VALUE),
+ *            latitude, longitude (double),
+ *            countryCode, countryName, regionName, cityName, zipCode,
+ *            timeZone (int offsets into dictionary)
+ * dictionary distinct strings, each stored once as
+ *            unsigned short byte length + UTF-8 bytes
+ * </pre>
+ *
+ * All values are big endian.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class LocationFileFormat {
+
+	public static final int MAGIC = 0x47454F4C; // "GEOL"
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 32;
+
+	public static final int MAGIC_POSITION = 0;
+	public static final int VERSION_POSITION = 4;
+	public static final int RANGE_COUNT_POSITION = 8;
+	public static final int RECORD_SIZE_POSITION = 12;
+	public static final int RANGES_OFFSET_POSITION = 16;
+	public static final int DICTIONARY_OFFSET_POSITION = 20;
+	public static final int DICTIONARY_SIZE_POSITION = 24;
+
+	public static final int RECORD_SIZE = 48;
+
+	public static final int IP_FROM = 0;
+	public static final int IP_TO = 4;
+	public static final int LATITUDE = 8;
+	public static final int LONGITUDE = 16;
+	public static final int COUNTRY_CODE = 24;
+	public static final int COUNTRY_NAME = 28;
+	public static final int REGION_NAME = 32;
+	public static final int CITY_NAME = 36;
+	public static final int ZIP_CODE = 40;
+	public static final int TIME_ZONE = 44;
+
+	public static final int MAX_STRING_BYTES = 0xFFFF;
+
+	private LocationFileFormat() {
+	}
+
+	public static int toKey(long ip4Address) {
+		return (int) (ip4Address + Integer.MIN_VALUE);
+	}
+
+	public static long fromKey(int key) {
+		return (long) key - Integer.MIN_VALUE;
+	}
+}
@@ -0,0 +1,164 @@
+package com.epam.training.dao.mapped;
+
+import static com.epam.training.dao.mapped.LocationFileFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.epam.training.dao.memory.LocationRecord;
+
+/**
+ * Writes sorted ranges into the binary location database format. Strings are
+ * deduplicated into the dictionary section, the header is written by finish.
+ *
+ * Ranges are written into a temporary file next to the target, finish renames
+ * it to the target. A writer closed without finish, e.g. on a failed build,
+ * deletes the temporary file, so an incomplete database is never mapped and
+ * the previous one is left in place.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ * @see LocationFileFormat
+ */
+public class LocationFileWriter implements Closeable {
+
+	private final File file;
+	private final File tempFile;
+	private final DataOutputStream ranges;
+
+	private final ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+	private final DataOutputStream dictionary = new DataOutputStream(
+			dictionaryBytes);
+	private final Map<String, Integer> dictionaryOffsets = new HashMap<>();
+
+	private int rangeCount = 0;
+	private long lastIpTo = -1;
+	private boolean finished = false;
+
+	public LocationFileWriter(File file) throws IOException {
+		this.file = file;
+		this.tempFile = File.createTempFile(file.getName(), ".tmp", file
+				.getAbsoluteFile().getParentFile());
+		try {
+			this.ranges = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile), 1 << 16));
+			// header placeholder, filled by finish
+			this.ranges.write(new byte[HEADER_SIZE]);
+		} catch (IOException ioe) {
+			tempFile.delete();
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Appends a range. Ranges must be added in ascending order and must not
+	 * overlap.
+	 *
+	 * @throws IllegalArgumentException
+	 *             on invalid, unordered or overlapping range
+	 */
+	public void add(long from, long to, LocationRecord record)
+			throws IOException {
+		if (from < 0 || to > 0xFFFFFFFFL || from > to) {
+			throw new IllegalArgumentException(String.format(
+					"invalid range: from=%d to=%d", from, to));
+		}
+		if (from <= lastIpTo) {
+			throw new IllegalArgumentException(String.format(
+					"range is unordered or overlapping: from=%d to=%d", from,
+					to));
+		}
+
+		ranges.writeInt(toKey(from));
+		ranges.writeInt(toKey(to));
+		ranges.writeDouble(record.getLatitude());
+		ranges.writeDouble(record.getLongitude());
+		ranges.writeInt(dictionaryOffset(record.getCountryCode()));
+		ranges.writeInt(dictionaryOffset(record.getCountryName()));
+		ranges.writeInt(dictionaryOffset(record.getRegionName()));
+		ranges.writeInt(dictionaryOffset(record.getCityName()));
+		ranges.writeInt(dictionaryOffset(record.getZipCode()));
+		ranges.writeInt(dictionaryOffset(record.getTimeZone()));
+
+		lastIpTo = to;
+		rangeCount++;
+	}
+
+	public int getRangeCount() {
+		return rangeCount;
+	}
+
+	public int getDictionarySize() {
+		return dictionary.size();
+	}
+
+	private int dictionaryOffset(String value) throws IOException {
+		Integer offset = dictionaryOffsets.get(value);
+		if (offset == null) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > MAX_STRING_BYTES) {
+				throw new IllegalArgumentException(String.format(
+						"string is too long: %s", value));
+			}
+			offset = dictionary.size();
+			dictionary.writeShort(bytes.length);
+			dictionary.write(bytes);
+			dictionaryOffsets.put(value, offset);
+		}
+		return offset;
+	}
+
+	/**
+	 * Appends the dictionary section, writes the header and renames the
+	 * temporary file to the target, replacing an existing file
+	 *
+	 */
+	public void finish() throws IOException {
+		int dictionaryOffset = HEADER_SIZE + rangeCount * RECORD_SIZE;
+		dictionary.flush();
+		dictionaryBytes.writeTo(ranges);
+		ranges.close();
+
+		try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+			raf.seek(MAGIC_POSITION);
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeInt(rangeCount);
+			raf.writeInt(RECORD_SIZE);
+			raf.writeInt(HEADER_SIZE);
+			raf.writeInt(dictionaryOffset);
+			raf.writeInt(dictionary.size());
+		}
+		Files.move(tempFile.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		finished = true;
+	}
+
+	/**
+	 * Deletes the temporary file if the writer is not finished
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		if (finished) {
+			return;
+		}
+		try {
+			ranges.close();
+		} finally {
+			tempFile.delete();
+		}
+	}
+}
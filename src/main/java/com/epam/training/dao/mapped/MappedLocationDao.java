@@ -0,0 +1,205 @@
+package com.epam.training.dao.mapped;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import com.epam.training.dao.AbstractLocationDao;
+import com.epam.training.dao.ReloadableLocationDao;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * Memory mapped Dao implementation for LocationEntity classes. Reads the
+ * binary location database built by LocationFileBuilder. Another file can be
+ * mapped in its place at runtime.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ * @see MappedLocationFile
+ */
+@Repository
+public class MappedLocationDao extends AbstractLocationDao implements
+		ReloadableLocationDao {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(MappedLocationDao.class);
+
+	@Value("${location.mapped.file}")
+	private String fileName;
+
+	private volatile MappedLocationFile locationFile;
+
+	/**
+	 * DAO find method for single LocationEntity
+	 *
+	 * @param long converted ip4Address
+	 * @exception AppException
+	 *                on mapping error or if address is not covered by any
+	 *                range
+	 * @see AppException
+	 */
+	public LocationEntity find(long convertedIp4Address) throws AppException {
+		MappedLocationFile mappedLocationFile = getLocationFile();
+		int position = findPosition(mappedLocationFile, convertedIp4Address);
+		return mappedLocationFile.toLocationEntity(position);
+	}
+
+	/**
+	 * DAO find method for the range containing the address
+	 *
+	 * @param long converted ip4Address
+	 * @return LocationRange bounds and location of the matching range
+	 * @exception AppException
+	 *                on mapping error or if address is not covered by any
+	 *                range
+	 * @see AppException
+	 */
+	public LocationRange findRange(long convertedIp4Address)
+			throws AppException {
+		MappedLocationFile mappedLocationFile = getLocationFile();
+		int position = findPosition(mappedLocationFile, convertedIp4Address);
+		return new LocationRange(mappedLocationFile.getIpFrom(position),
+				mappedLocationFile.getIpTo(position),
+				mappedLocationFile.toLocationEntity(position));
+	}
+
+	/**
+	 * DAO batch find method, a single sweep over the ranges where every
+	 * search starts at the range found for the previous address
+	 *
+	 * @param long[] converted ip4Addresses sorted in ascending order
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 * @exception AppException
+	 *                on mapping error
+	 * @see AppException
+	 */
+	public LocationEntity[] findAll(long[] sortedConvertedIp4Addresses)
+			throws AppException {
+		MappedLocationFile mappedLocationFile = getLocationFile();
+		LocationEntity[] locationEntities = new LocationEntity[sortedConvertedIp4Addresses.length];
+
+		int fromPosition = 0;
+		for (int i = 0; i < sortedConvertedIp4Addresses.length; i++) {
+			int position = mappedLocationFile.indexOf(
+					sortedConvertedIp4Addresses[i], fromPosition);
+			if (position >= 0) {
+				locationEntities[i] = mappedLocationFile.toLocationEntity(position);
+				fromPosition = position;
+			}
+		}
+
+		return locationEntities;
+	}
+
+	@Override
+	public int getRangeCount() {
+		MappedLocationFile mappedLocationFile = locationFile;
+		return mappedLocationFile == null ? 0 : mappedLocationFile.size();
+	}
+
+	/**
+	 * Maps a new location database file and swaps it in, lookups in progress
+	 * finish on the former mapping, which is released once unreachable
+	 *
+	 * @param File
+	 *            binary location database built by LocationFileBuilder
+	 * @return int number of ranges of the replaced file
+	 * @exception AppException
+	 *                on missing or corrupted file or failed validation, the
+	 *                current file stays in place
+	 * @see AppException
+	 */
+	@Override
+	public synchronized int reload(File file) throws AppException {
+		MappedLocationFile mappedLocationFile = open(file);
+
+		int oldRangeCount = getRangeCount();
+		validateReload("MappedLocationDao", oldRangeCount,
+				mappedLocationFile.size());
+		locationFile = mappedLocationFile;
+
+		LOG.info("Swapped {} ranges for {} ranges", oldRangeCount,
+				mappedLocationFile.size());
+		return oldRangeCount;
+	}
+
+	/**
+	 * Position of the range containing the address
+	 *
+	 * @exception AppException
+	 *                if address is not covered by any range
+	 * @see AppException
+	 */
+	private static int findPosition(MappedLocationFile mappedLocationFile,
+			long convertedIp4Address) throws AppException {
+		int position = mappedLocationFile.indexOf(convertedIp4Address);
+		if (position < 0) {
+			AppException ae = new ClientErrorException();
+			ae.addInfo(ErrorInfoFactory.getIllegalReturnErrorInfo(
+					"MappedLocationDao",
+					"ip address is not covered by any range",
+					"IP address was not found - maybe local or sensitive",
+					"convertedIp4Address", convertedIp4Address));
+			throw ae;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Returns the mapped file, maps it on first call
+	 *
+	 * @exception AppException
+	 *                on missing or corrupted file
+	 * @see AppException
+	 */
+	MappedLocationFile getLocationFile() throws AppException {
+		MappedLocationFile result = locationFile;
+		if (result == null) {
+			synchronized (this) {
+				result = locationFile;
+				if (result == null) {
+					result = open();
+					locationFile = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private MappedLocationFile open() throws AppException {
+		if (fileName == null || fileName.isEmpty()) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getInitializaionErrorInfo(
+					"MappedLocationDao", "location database file is not set",
+					"location.mapped.file", fileName));
+			throw ae;
+		}
+		return open(new File(fileName));
+	}
+
+	private static MappedLocationFile open(File file) throws AppException {
+		try {
+			MappedLocationFile mappedLocationFile = MappedLocationFile
+					.open(file);
+			LOG.info("Mapped {} ranges from {}", mappedLocationFile.size(),
+					file);
+			return mappedLocationFile;
+		} catch (IOException ioe) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getFileDaoErrorInfo(
+					"MappedLocationDao",
+					"could not map location database file", ioe)
+					.setParameter("file", file));
+			throw ae;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.epam.training.dao.mapped;
+
+import static com.epam.training.dao.mapped.LocationFileFormat.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.epam.training.domain.LocationEntity;
+
+/**
+ * Read-only view of a binary location database file mapped into memory.
+ * Lookups read the mapped pages directly with absolute gets, so the data is
+ * not copied to the heap and the pages are shared through the OS page cache
+ * by every process mapping the same file.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ * @see LocationFileFormat
+ */
+public class MappedLocationFile {
+
+	private static final ThreadLocal<byte[]> STRING_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[MAX_STRING_BYTES];
+		}
+	};
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int rangeCount;
+	private final int rangesOffset;
+	private final int dictionaryOffset;
+
+	private MappedLocationFile(File file, MappedByteBuffer buffer) {
+		this.file = file;
+		this.buffer = buffer;
+		this.rangeCount = buffer.getInt(RANGE_COUNT_POSITION);
+		this.rangesOffset = buffer.getInt(RANGES_OFFSET_POSITION);
+		this.dictionaryOffset = buffer.getInt(DICTIONARY_OFFSET_POSITION);
+	}
+
+	/**
+	 * Maps the file and checks its header
+	 *
+	 * @param File
+	 *            binary location database file
+	 * @throws IOException
+	 *             on IO error or if the file is not a valid location database
+	 */
+	public static MappedLocationFile open(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_SIZE
+					|| channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format(
+						"invalid location database size: %d", channel.size()));
+			}
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+
+		if (buffer.getInt(MAGIC_POSITION) != MAGIC
+				|| buffer.getInt(VERSION_POSITION) != VERSION
+				|| buffer.getInt(RECORD_SIZE_POSITION) != RECORD_SIZE) {
+			throw new IOException(String.format(
+					"not a location database or unsupported version: %s",
+					file));
+		}
+		long expectedSize = (long) buffer.getInt(DICTIONARY_OFFSET_POSITION)
+				+ buffer.getInt(DICTIONARY_SIZE_POSITION);
+		if (expectedSize != buffer.capacity()
+				|| buffer.getInt(DICTIONARY_OFFSET_POSITION) != (long) buffer
+						.getInt(RANGES_OFFSET_POSITION)
+						+ (long) buffer.getInt(RANGE_COUNT_POSITION)
+						* RECORD_SIZE) {
+			throw new IOException(String.format(
+					"truncated or corrupted location database: %s", file));
+		}
+
+		return new MappedLocationFile(file, buffer);
+	}
+
+	/**
+	 * Searches the range containing the given address
+	 *
+	 * @param long
+	 *            ip address as unsigned 32 bit value
+	 * @return int position of the matching range or -1 if no range contains
+	 *         the address
+	 */
+	public int indexOf(long ip4Address) {
+		return indexOf(ip4Address, 0);
+	}
+
+	/**
+	 * Searches the range containing the given address among the ranges
+	 * starting at the given position. Used by sweeps over sorted addresses.
+	 *
+	 * @param long
+	 *            ip address as unsigned 32 bit value
+	 * @param int
+	 *            first position to search
+	 * @return int position of the matching range or -1 if no range contains
+	 *         the address
+	 */
+	public int indexOf(long ip4Address, int fromPosition) {
+		if (ip4Address < 0 || ip4Address > 0xFFFFFFFFL) {
+			return -1;
+		}
+		int key = toKey(ip4Address);
+
+		int low = fromPosition;
+		int high = rangeCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (buffer.getInt(recordOffset(mid) + IP_FROM) <= key) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return (high >= fromPosition && key <= buffer.getInt(recordOffset(high)
+				+ IP_TO)) ? high : -1;
+	}
+
+	public long getIpFrom(int position) {
+		return fromKey(buffer.getInt(recordOffset(position) + IP_FROM));
+	}
+
+	public long getIpTo(int position) {
+		return fromKey(buffer.getInt(recordOffset(position) + IP_TO));
+	}
+
+	/**
+	 * Materializes the LocationEntity of a range
+	 *
+	 * @param int position of the range
+	 * @return LocationEntity new entity instance
+	 */
+	public LocationEntity toLocationEntity(int position) {
+		int offset = recordOffset(position);
+		LocationEntity locationEntity = new LocationEntity();
+
+		locationEntity.setCountryCode(readString(offset + COUNTRY_CODE));
+		locationEntity.setCountryName(readString(offset + COUNTRY_NAME));
+		locationEntity.setRegionName(readString(offset + REGION_NAME));
+		locationEntity.setCityName(readString(offset + CITY_NAME));
+		locationEntity.setLatitude(buffer.getDouble(offset + LATITUDE));
+		locationEntity.setLongitude(buffer.getDouble(offset + LONGITUDE));
+		locationEntity.setZipCode(readString(offset + ZIP_CODE));
+		locationEntity.setTimeZone(readString(offset + TIME_ZONE));
+		locationEntity.setDefaultAddress(false);
+
+		return locationEntity;
+	}
+
+	/**
+	 * @return number of ranges
+	 */
+	public int size() {
+		return rangeCount;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	private int recordOffset(int position) {
+		return rangesOffset + position * RECORD_SIZE;
+	}
+
+	private String readString(int referenceOffset) {
+		int offset = dictionaryOffset + buffer.getInt(referenceOffset);
+		int length = buffer.getShort(offset) & 0xFFFF;
+
+		byte[] bytes = STRING_BUFFER.get();
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
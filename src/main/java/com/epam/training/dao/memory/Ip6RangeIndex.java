@@ -0,0 +1,173 @@
+package com.epam.training.dao.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.epam.training.utils.Ip6Parser;
+
+/**
+ * Immutable lookup structure for ip6 ranges. Ranges are kept sorted in
+ * primitive parallel arrays, a 128 bit bound is split into a high and a low
+ * long, and searched with binary search without creating objects.
+ *
+ * Bounds are stored biased by Long.MIN_VALUE, so plain signed long
+ * comparison gives the unsigned order. Each distinct location is stored
+ * once, ranges refer to it through rowRef.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class Ip6RangeIndex {
+
+	private final long[] fromHigh;
+	private final long[] fromLow;
+	private final long[] toHigh;
+	private final long[] toLow;
+	private final int[] rowRef;
+	private final LocationRecord[] records;
+
+	private Ip6RangeIndex(long[] fromHigh, long[] fromLow, long[] toHigh,
+			long[] toLow, int[] rowRef, LocationRecord[] records) {
+		this.fromHigh = fromHigh;
+		this.fromLow = fromLow;
+		this.toHigh = toHigh;
+		this.toLow = toLow;
+		this.rowRef = rowRef;
+		this.records = records;
+	}
+
+	/**
+	 * Searches the range containing the given address
+	 *
+	 * @param long high 64 bits of the address
+	 * @param long low 64 bits of the address
+	 * @return int position of the matching range or -1 if no range contains
+	 *         the address
+	 */
+	public int indexOf(long high, long low) {
+		long keyHigh = toKey(high);
+		long keyLow = toKey(low);
+
+		// last range starting at or before the key
+		int lowPosition = 0;
+		int highPosition = fromHigh.length - 1;
+		while (lowPosition <= highPosition) {
+			int mid = (lowPosition + highPosition) >>> 1;
+			if (fromHigh[mid] < keyHigh
+					|| (fromHigh[mid] == keyHigh && fromLow[mid] <= keyLow)) {
+				lowPosition = mid + 1;
+			} else {
+				highPosition = mid - 1;
+			}
+		}
+
+		if (highPosition < 0) {
+			return -1;
+		}
+		boolean covered = keyHigh < toHigh[highPosition]
+				|| (keyHigh == toHigh[highPosition] && keyLow <= toLow[highPosition]);
+		return covered ? highPosition : -1;
+	}
+
+	public LocationRecord getRecord(int position) {
+		return records[rowRef[position]];
+	}
+
+	/**
+	 * @return number of ranges
+	 */
+	public int size() {
+		return fromHigh.length;
+	}
+
+	/**
+	 * @return number of distinct locations
+	 */
+	public int getLocationCount() {
+		return records.length;
+	}
+
+	private static long toKey(long value) {
+		return value ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Collects ranges in ascending order and creates the immutable index.
+	 * Equal location records and equal strings are deduplicated.
+	 *
+	 */
+	public static class Builder {
+		private long[] fromHigh = new long[1024];
+		private long[] fromLow = new long[1024];
+		private long[] toHigh = new long[1024];
+		private long[] toLow = new long[1024];
+		private int[] rowRef = new int[1024];
+		private List<LocationRecord> records = new ArrayList<>();
+		private Map<LocationRecord, Integer> recordRefs = new HashMap<>();
+		private Map<String, String> strings = new HashMap<>();
+		private int size = 0;
+
+		/**
+		 * Appends a range. Ranges must be added in ascending order and must
+		 * not overlap.
+		 *
+		 * @throws IllegalArgumentException
+		 *             on invalid, unordered or overlapping range
+		 */
+		public Builder add(long fromHigh, long fromLow, long toHigh,
+				long toLow, LocationRecord record) {
+			if (Ip6Parser.compare(fromHigh, fromLow, toHigh, toLow) > 0) {
+				throw new IllegalArgumentException(String.format(
+						"invalid range: from=%016x%016x to=%016x%016x",
+						fromHigh, fromLow, toHigh, toLow));
+			}
+			if (size > 0
+					&& Ip6Parser.compare(fromHigh, fromLow,
+							toKey(this.toHigh[size - 1]),
+							toKey(this.toLow[size - 1])) <= 0) {
+				throw new IllegalArgumentException(String.format(
+						"range is unordered or overlapping: from=%016x%016x to=%016x%016x",
+						fromHigh, fromLow, toHigh, toLow));
+			}
+			if (size == this.fromHigh.length) {
+				int capacity = size + (size >> 1);
+				this.fromHigh = Arrays.copyOf(this.fromHigh, capacity);
+				this.fromLow = Arrays.copyOf(this.fromLow, capacity);
+				this.toHigh = Arrays.copyOf(this.toHigh, capacity);
+				this.toLow = Arrays.copyOf(this.toLow, capacity);
+				rowRef = Arrays.copyOf(rowRef, capacity);
+			}
+
+			Integer ref = recordRefs.get(record);
+			if (ref == null) {
+				ref = records.size();
+				LocationRecord interned = record.intern(strings);
+				records.add(interned);
+				recordRefs.put(interned, ref);
+			}
+
+			this.fromHigh[size] = toKey(fromHigh);
+			this.fromLow[size] = toKey(fromLow);
+			this.toHigh[size] = toKey(toHigh);
+			this.toLow[size] = toKey(toLow);
+			rowRef[size] = ref;
+			size++;
+
+			return this;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Ip6RangeIndex build() {
+			return new Ip6RangeIndex(Arrays.copyOf(fromHigh, size),
+					Arrays.copyOf(fromLow, size), Arrays.copyOf(toHigh, size),
+					Arrays.copyOf(toLow, size), Arrays.copyOf(rowRef, size),
+					records.toArray(new LocationRecord[records.size()]));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.epam.training.dao.memory;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import com.epam.training.dao.Ip6LocationDao;
+import com.epam.training.dao.csv.Db11CsvReader;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * In-memory Dao implementation for ip6 LocationEntity classes. Loads the
+ * IP2Location DB11 ip6 csv file once into an Ip6RangeIndex and answers
+ * lookups with binary search. Without a configured file no ip6 address is
+ * found.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@Repository
+public class Ip6RangeLocationDao implements Ip6LocationDao {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(Ip6RangeLocationDao.class);
+
+	@Value("${location.ip6.file}")
+	private String fileName;
+
+	private volatile Ip6RangeIndex index;
+
+	/**
+	 * DAO find method for single LocationEntity
+	 *
+	 * @param long high 64 bits of the ip6 address
+	 * @param long low 64 bits of the ip6 address
+	 * @exception AppException
+	 *                on load error or if address is not covered by any range
+	 * @see AppException
+	 */
+	public LocationEntity find(long high, long low) throws AppException {
+		Ip6RangeIndex ip6RangeIndex = getIndex();
+		int position = ip6RangeIndex.indexOf(high, low);
+		if (position < 0) {
+			AppException ae = new ClientErrorException();
+			ae.addInfo(ErrorInfoFactory.getIllegalReturnErrorInfo(
+					"Ip6RangeLocationDao",
+					"ip address is not covered by any range",
+					"IP address was not found - maybe local or sensitive",
+					"ip6AddressHigh", high).setParameter("ip6AddressLow",
+					low));
+			throw ae;
+		}
+		return ip6RangeIndex.getRecord(position).toLocationEntity();
+	}
+
+	/**
+	 * DAO batch find method
+	 *
+	 * @param long[] high 64 bits of the ip6 addresses
+	 * @param long[] low 64 bits of the ip6 addresses
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 * @exception AppException
+	 *                on load error
+	 * @see AppException
+	 */
+	public LocationEntity[] findAll(long[] highs, long[] lows)
+			throws AppException {
+		Ip6RangeIndex ip6RangeIndex = getIndex();
+		LocationEntity[] locationEntities = new LocationEntity[highs.length];
+		for (int i = 0; i < highs.length; i++) {
+			int position = ip6RangeIndex.indexOf(highs[i], lows[i]);
+			if (position >= 0) {
+				locationEntities[i] = ip6RangeIndex.getRecord(position)
+						.toLocationEntity();
+			}
+		}
+		return locationEntities;
+	}
+
+	/**
+	 * Returns the loaded index, loads it on first call
+	 *
+	 * @exception AppException
+	 *                on missing or corrupted file
+	 * @see AppException
+	 */
+	Ip6RangeIndex getIndex() throws AppException {
+		Ip6RangeIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					result = load();
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the whole ip6 csv file, ranges must be in ascending order
+	 *
+	 * @exception AppException
+	 *                on missing or corrupted file
+	 * @see AppException
+	 */
+	private Ip6RangeIndex load() throws AppException {
+		final Ip6RangeIndex.Builder builder = new Ip6RangeIndex.Builder();
+		if (fileName == null || fileName.isEmpty()) {
+			LOG.info("location.ip6.file is not set, ip6 addresses will not be found");
+			return builder.build();
+		}
+
+		LOG.info("Loading ip6 location file {} into memory...", fileName);
+		long start = System.currentTimeMillis();
+		// unordered or overlapping ranges are reported as corrupted lines
+		new Db11CsvReader().readIp6(new File(fileName),
+				new Db11CsvReader.Ip6RowHandler() {
+					public void handle(long fromHigh, long fromLow,
+							long toHigh, long toLow, LocationRecord record) {
+						builder.add(fromHigh, fromLow, toHigh, toLow, record);
+					}
+				});
+
+		Ip6RangeIndex ip6RangeIndex = builder.build();
+		LOG.info("Loaded {} ip6 ranges, {} distinct locations in {} ms",
+				new Object[] { ip6RangeIndex.size(),
+						ip6RangeIndex.getLocationCount(),
+						System.currentTimeMillis() - start });
+		return ip6RangeIndex;
+	}
+}
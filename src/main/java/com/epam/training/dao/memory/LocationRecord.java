@@ -0,0 +1,167 @@
+package com.epam.training.dao.memory;
+
+import java.util.Map;
+
+import com.epam.training.domain.LocationEntity;
+
+/**
+ * Immutable location data of a DB11 row kept by in-memory lookup structures.
+ * LocationEntity objects are materialized from it on demand because
+ * LocationEntity is mutable and is modified by the service layer. Equal
+ * records are stored only once, see SortedRangeIndex.Builder.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LocationRecord {
+
+	private final String countryCode;
+	private final String countryName;
+	private final String regionName;
+	private final String cityName;
+	private final double latitude;
+	private final double longitude;
+	private final String zipCode;
+	private final String timeZone;
+
+	public LocationRecord(String countryCode, String countryName,
+			String regionName, String cityName, double latitude,
+			double longitude, String zipCode, String timeZone) {
+		this.countryCode = countryCode;
+		this.countryName = countryName;
+		this.regionName = regionName;
+		this.cityName = cityName;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.zipCode = zipCode;
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * Creates a new LocationEntity filled the same way as the JDBC row mapper
+	 * does
+	 *
+	 * @return LocationEntity new entity instance
+	 */
+	public LocationEntity toLocationEntity() {
+		LocationEntity locationEntity = new LocationEntity();
+
+		locationEntity.setCountryCode(countryCode);
+		locationEntity.setCountryName(countryName);
+		locationEntity.setRegionName(regionName);
+		locationEntity.setCityName(cityName);
+		locationEntity.setLatitude(latitude);
+		locationEntity.setLongitude(longitude);
+		locationEntity.setZipCode(zipCode);
+		locationEntity.setTimeZone(timeZone);
+		locationEntity.setDefaultAddress(false);
+
+		return locationEntity;
+	}
+
+	public String getCountryCode() {
+		return countryCode;
+	}
+
+	public String getCountryName() {
+		return countryName;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public String getCityName() {
+		return cityName;
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public String getZipCode() {
+		return zipCode;
+	}
+
+	public String getTimeZone() {
+		return timeZone;
+	}
+
+	/**
+	 * Copy of this record using the given pooled instances of equal strings
+	 *
+	 * @param Map
+	 *            string pool, new strings are added to it
+	 * @return LocationRecord record sharing strings with other records
+	 */
+	LocationRecord intern(Map<String, String> pool) {
+		return new LocationRecord(intern(pool, countryCode), intern(pool,
+				countryName), intern(pool, regionName),
+				intern(pool, cityName), latitude, longitude, intern(pool,
+						zipCode), intern(pool, timeZone));
+	}
+
+	private static String intern(Map<String, String> pool, String value) {
+		if (value == null) {
+			return null;
+		}
+		String pooled = pool.get(value);
+		if (pooled == null) {
+			pool.put(value, value);
+			pooled = value;
+		}
+		return pooled;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((cityName == null) ? 0 : cityName.hashCode());
+		result = prime * result
+				+ ((countryCode == null) ? 0 : countryCode.hashCode());
+		result = prime * result
+				+ ((countryName == null) ? 0 : countryName.hashCode());
+		long temp;
+		temp = Double.doubleToLongBits(latitude);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		temp = Double.doubleToLongBits(longitude);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		result = prime * result
+				+ ((regionName == null) ? 0 : regionName.hashCode());
+		result = prime * result
+				+ ((timeZone == null) ? 0 : timeZone.hashCode());
+		result = prime * result + ((zipCode == null) ? 0 : zipCode.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LocationRecord other = (LocationRecord) obj;
+		return equal(cityName, other.cityName)
+				&& equal(countryCode, other.countryCode)
+				&& equal(countryName, other.countryName)
+				&& Double.doubleToLongBits(latitude) == Double
+						.doubleToLongBits(other.latitude)
+				&& Double.doubleToLongBits(longitude) == Double
+						.doubleToLongBits(other.longitude)
+				&& equal(regionName, other.regionName)
+				&& equal(timeZone, other.timeZone)
+				&& equal(zipCode, other.zipCode);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
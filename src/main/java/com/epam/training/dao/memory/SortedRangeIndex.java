@@ -0,0 +1,217 @@
+package com.epam.training.dao.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.epam.training.domain.LocationEntity;
+
+/**
+ * Immutable lookup structure for DB11 ip ranges. Ranges are kept sorted in
+ * primitive parallel arrays and searched with binary search.
+ *
+ * Unsigned 32 bit addresses are stored biased by Integer.MIN_VALUE, so plain
+ * signed int comparison gives the unsigned order. Each distinct location is
+ * stored once, ranges refer to it through rowRef.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class SortedRangeIndex {
+
+	public static final long MAX_IP4_ADDRESS = 0xFFFFFFFFL;
+
+	private final int[] ipFrom;
+	private final int[] ipTo;
+	private final int[] rowRef;
+	private final LocationRecord[] records;
+	private final long estimatedHeapBytes;
+
+	private SortedRangeIndex(int[] ipFrom, int[] ipTo, int[] rowRef,
+			LocationRecord[] records, long estimatedHeapBytes) {
+		this.ipFrom = ipFrom;
+		this.ipTo = ipTo;
+		this.rowRef = rowRef;
+		this.records = records;
+		this.estimatedHeapBytes = estimatedHeapBytes;
+	}
+
+	/**
+	 * Searches the range containing the given address
+	 *
+	 * @param long
+	 *            ip address as unsigned 32 bit value
+	 * @return int position of the matching range or -1 if no range contains
+	 *         the address
+	 */
+	public int indexOf(long ip4Address) {
+		return indexOf(ip4Address, 0);
+	}
+
+	/**
+	 * Searches the range containing the given address among the ranges
+	 * starting at the given position. Used by sweeps over sorted addresses.
+	 *
+	 * @param long
+	 *            ip address as unsigned 32 bit value
+	 * @param int
+	 *            first position to search
+	 * @return int position of the matching range or -1 if no range contains
+	 *         the address
+	 */
+	public int indexOf(long ip4Address, int fromPosition) {
+		if (ip4Address < 0 || ip4Address > MAX_IP4_ADDRESS) {
+			return -1;
+		}
+		int key = toKey(ip4Address);
+
+		// last range starting at or before the key
+		int low = fromPosition;
+		int high = ipFrom.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ipFrom[mid] <= key) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return (high >= fromPosition && key <= ipTo[high]) ? high : -1;
+	}
+
+	/**
+	 * Finds location for the given address
+	 *
+	 * @param long
+	 *            ip address as unsigned 32 bit value
+	 * @return LocationEntity new entity or null if no range contains the
+	 *         address
+	 */
+	public LocationEntity find(long ip4Address) {
+		int position = indexOf(ip4Address);
+		return position < 0 ? null : getRecord(position).toLocationEntity();
+	}
+
+	public LocationRecord getRecord(int position) {
+		return records[rowRef[position]];
+	}
+
+	public long getIpFrom(int position) {
+		return fromKey(ipFrom[position]);
+	}
+
+	public long getIpTo(int position) {
+		return fromKey(ipTo[position]);
+	}
+
+	/**
+	 * @return number of ranges
+	 */
+	public int size() {
+		return ipFrom.length;
+	}
+
+	/**
+	 * @return number of distinct locations
+	 */
+	public int getLocationCount() {
+		return records.length;
+	}
+
+	/**
+	 * Approximate heap footprint of the index (64 bit JVM, compressed oops)
+	 *
+	 * @return long estimated size in bytes
+	 */
+	public long getEstimatedHeapBytes() {
+		return estimatedHeapBytes;
+	}
+
+	private static int toKey(long ip4Address) {
+		return (int) (ip4Address + Integer.MIN_VALUE);
+	}
+
+	private static long fromKey(int key) {
+		return (long) key - Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Collects ranges in ascending order and creates the immutable index.
+	 * Equal location records and equal strings are deduplicated.
+	 *
+	 */
+	public static class Builder {
+		private static final int RECORD_BYTES = 56;
+		private static final int STRING_BYTES = 40;
+
+		private int[] ipFrom = new int[1024];
+		private int[] ipTo = new int[1024];
+		private int[] rowRef = new int[1024];
+		private List<LocationRecord> records = new ArrayList<>();
+		private Map<LocationRecord, Integer> recordRefs = new HashMap<>();
+		private Map<String, String> strings = new HashMap<>();
+		private int size = 0;
+
+		/**
+		 * Appends a range. Ranges must be added in ascending order and must
+		 * not overlap.
+		 *
+		 * @throws IllegalArgumentException
+		 *             on invalid, unordered or overlapping range
+		 */
+		public Builder add(long from, long to, LocationRecord record) {
+			if (from < 0 || to > MAX_IP4_ADDRESS || from > to) {
+				throw new IllegalArgumentException(String.format(
+						"invalid range: from=%d to=%d", from, to));
+			}
+			if (size > 0 && toKey(from) <= ipTo[size - 1]) {
+				throw new IllegalArgumentException(String.format(
+						"range is unordered or overlapping: from=%d to=%d",
+						from, to));
+			}
+			if (size == ipFrom.length) {
+				int capacity = size + (size >> 1);
+				ipFrom = Arrays.copyOf(ipFrom, capacity);
+				ipTo = Arrays.copyOf(ipTo, capacity);
+				rowRef = Arrays.copyOf(rowRef, capacity);
+			}
+
+			Integer ref = recordRefs.get(record);
+			if (ref == null) {
+				ref = records.size();
+				LocationRecord interned = record.intern(strings);
+				records.add(interned);
+				recordRefs.put(interned, ref);
+			}
+
+			ipFrom[size] = toKey(from);
+			ipTo[size] = toKey(to);
+			rowRef[size] = ref;
+			size++;
+
+			return this;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public SortedRangeIndex build() {
+			return new SortedRangeIndex(Arrays.copyOf(ipFrom, size),
+					Arrays.copyOf(ipTo, size), Arrays.copyOf(rowRef, size),
+					records.toArray(new LocationRecord[records.size()]),
+					estimateHeapBytes());
+		}
+
+		private long estimateHeapBytes() {
+			long bytes = 3L * 4 * size + (4L + RECORD_BYTES) * records.size();
+			for (String value : strings.keySet()) {
+				bytes += STRING_BYTES + ((2L * value.length() + 7) & ~7L);
+			}
+			return bytes;
+		}
+	}
+}
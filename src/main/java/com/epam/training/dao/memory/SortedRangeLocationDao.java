@@ -0,0 +1,249 @@
+package com.epam.training.dao.memory;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.epam.training.dao.AbstractLocationDao;
+import com.epam.training.dao.ReloadableLocationDao;
+import com.epam.training.dao.csv.Db11CsvReader;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
+import com.epam.training.exception.ErrorInfoFactory;
+
+/**
+ * In-memory Dao implementation for LocationEntity classes. Loads the DB11
+ * table once into a SortedRangeIndex and answers lookups with binary search.
+ * The index can be replaced at runtime from a DB11 csv file.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@Repository
+public class SortedRangeLocationDao extends AbstractLocationDao implements
+		ReloadableLocationDao {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(SortedRangeLocationDao.class);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private volatile SortedRangeIndex index;
+
+	/**
+	 * DAO find method for single LocationEntity
+	 *
+	 * @param long converted ip4Address
+	 * @exception AppException
+	 *                on load error or if address is not covered by any range
+	 * @see AppException
+	 */
+	public LocationEntity find(long convertedIp4Address) throws AppException {
+		SortedRangeIndex sortedRangeIndex = getIndex();
+		int position = findPosition(sortedRangeIndex, convertedIp4Address);
+		return sortedRangeIndex.getRecord(position).toLocationEntity();
+	}
+
+	/**
+	 * DAO find method for the range containing the address
+	 *
+	 * @param long converted ip4Address
+	 * @return LocationRange bounds and location of the matching range
+	 * @exception AppException
+	 *                on load error or if address is not covered by any range
+	 * @see AppException
+	 */
+	public LocationRange findRange(long convertedIp4Address)
+			throws AppException {
+		SortedRangeIndex sortedRangeIndex = getIndex();
+		int position = findPosition(sortedRangeIndex, convertedIp4Address);
+		return new LocationRange(sortedRangeIndex.getIpFrom(position),
+				sortedRangeIndex.getIpTo(position), sortedRangeIndex
+						.getRecord(position).toLocationEntity());
+	}
+
+	/**
+	 * DAO batch find method, a single sweep over the ranges where every
+	 * search starts at the range found for the previous address
+	 *
+	 * @param long[] converted ip4Addresses sorted in ascending order
+	 * @return LocationEntity[] locations in the order of the addresses, null
+	 *         for addresses not covered by any range
+	 * @exception AppException
+	 *                on load error
+	 * @see AppException
+	 */
+	public LocationEntity[] findAll(long[] sortedConvertedIp4Addresses)
+			throws AppException {
+		SortedRangeIndex sortedRangeIndex = getIndex();
+		LocationEntity[] locationEntities = new LocationEntity[sortedConvertedIp4Addresses.length];
+
+		int fromPosition = 0;
+		for (int i = 0; i < sortedConvertedIp4Addresses.length; i++) {
+			int position = sortedRangeIndex.indexOf(
+					sortedConvertedIp4Addresses[i], fromPosition);
+			if (position >= 0) {
+				locationEntities[i] = sortedRangeIndex.getRecord(position)
+						.toLocationEntity();
+				fromPosition = position;
+			}
+		}
+
+		return locationEntities;
+	}
+
+	@Override
+	public int getRangeCount() {
+		SortedRangeIndex sortedRangeIndex = index;
+		return sortedRangeIndex == null ? 0 : sortedRangeIndex.size();
+	}
+
+	/**
+	 * Builds a new index from a DB11 csv file and swaps it in, the current
+	 * index keeps serving lookups until then
+	 *
+	 * @param File
+	 *            DB11 csv file, rows sorted by ip_from
+	 * @return int number of ranges of the replaced index
+	 * @exception AppException
+	 *                on IO error, corrupted file or failed validation, the
+	 *                current index stays in place
+	 * @see AppException
+	 */
+	@Override
+	public synchronized int reload(File csvFile) throws AppException {
+		LOG.info("Loading location file {} into memory...", csvFile);
+		long start = System.currentTimeMillis();
+
+		// unordered or overlapping ranges are reported as corrupted lines
+		final SortedRangeIndex.Builder builder = new SortedRangeIndex.Builder();
+		new Db11CsvReader().read(csvFile, new Db11CsvReader.RowHandler() {
+			public void handle(long ipFrom, long ipTo, LocationRecord record) {
+				builder.add(ipFrom, ipTo, record);
+			}
+		});
+		SortedRangeIndex sortedRangeIndex = builder.build();
+
+		int oldRangeCount = getRangeCount();
+		validateReload("SortedRangeLocationDao", oldRangeCount,
+				sortedRangeIndex.size());
+		index = sortedRangeIndex;
+
+		LOG.info("Swapped {} ranges for {} ranges in {} ms", new Object[] {
+				oldRangeCount, sortedRangeIndex.size(),
+				System.currentTimeMillis() - start });
+		return oldRangeCount;
+	}
+
+	/**
+	 * Position of the range containing the address
+	 *
+	 * @exception AppException
+	 *                if address is not covered by any range
+	 * @see AppException
+	 */
+	private static int findPosition(SortedRangeIndex sortedRangeIndex,
+			long convertedIp4Address) throws AppException {
+		int position = sortedRangeIndex.indexOf(convertedIp4Address);
+		if (position < 0) {
+			AppException ae = new ClientErrorException();
+			ae.addInfo(ErrorInfoFactory.getIllegalReturnErrorInfo(
+					"SortedRangeLocationDao",
+					"ip address is not covered by any range",
+					"IP address was not found - maybe local or sensitive",
+					"convertedIp4Address", convertedIp4Address));
+			throw ae;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Returns the loaded index, loads it on first call
+	 *
+	 * @exception AppException
+	 *                on data access error or corrupted table
+	 * @see AppException
+	 */
+	SortedRangeIndex getIndex() throws AppException {
+		SortedRangeIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					result = load();
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the whole location table ordered by range start
+	 *
+	 * @exception AppException
+	 *                on data access error or corrupted table
+	 * @see AppException
+	 */
+	private SortedRangeIndex load() throws AppException {
+		LOG.info("Loading location table into memory...");
+		long start = System.currentTimeMillis();
+
+		final SortedRangeIndex.Builder builder = new SortedRangeIndex.Builder();
+		try {
+			jdbcTemplate.query(
+					"SELECT ip_from, ip_to, country_code, country_name, region_name, city_name, "
+							+ "latitude, longitude, zip_code, time_zone "
+							+ "FROM GEOLOCATION.IPLOCATION ORDER BY ip_from",
+					new RowCallbackHandler() {
+						public void processRow(ResultSet rs)
+								throws SQLException {
+							builder.add(rs.getLong("ip_from"),
+									rs.getLong("ip_to"),
+									new LocationRecord(rs
+											.getString("country_code"), rs
+											.getString("country_name"), rs
+											.getString("region_name"), rs
+											.getString("city_name"), rs
+											.getDouble("latitude"), rs
+											.getDouble("longitude"), rs
+											.getString("zip_code"), rs
+											.getString("time_zone")));
+						}
+					});
+		} catch (DataAccessException dae) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
+					"SortedRangeLocationDao",
+					"could not load location table - maybe not operational",
+					dae));
+			throw ae;
+		} catch (IllegalArgumentException iae) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getInitializaionErrorInfo(
+					"SortedRangeLocationDao", iae.getMessage(), "loadedRows",
+					builder.size()));
+			throw ae;
+		}
+
+		SortedRangeIndex sortedRangeIndex = builder.build();
+		LOG.info("Loaded {} ranges in {} ms", sortedRangeIndex.size(),
+				System.currentTimeMillis() - start);
+		LOG.info("{} distinct locations, about {} bytes per range",
+				sortedRangeIndex.getLocationCount(),
+				sortedRangeIndex.size() == 0 ? 0 : sortedRangeIndex
+						.getEstimatedHeapBytes() / sortedRangeIndex.size());
+		return sortedRangeIndex;
+	}
+}
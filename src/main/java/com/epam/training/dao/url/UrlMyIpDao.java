@@ -5,7 +5,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Repository;
 
 import com.epam.training.dao.MyIpDao;
@@ -14,45 +26,212 @@ import com.epam.training.exception.ErrorInfoFactory;
 
 /**
  * URL Dao implementation for getting wan ip address
- * 
+ *
+ * The address is cached. Once it is older than the time to live it is still
+ * returned while a background thread fetches it again, so only the very first
+ * lookup waits for the remote service, and that wait is bounded by the
+ * connect and read timeouts. After a number of consecutive failures the
+ * remote service is not called for a while, the last known address is
+ * returned in the meantime.
+ *
  * @author Ferenc Kis
  * @version 1.1
  */
 @Repository
+@ManagedResource(description = "Wan ip address discovery")
 public class UrlMyIpDao implements MyIpDao {
-	private static final String URL = "http://freegeoip.net/csv";
+	private static final Logger LOG = LoggerFactory.getLogger(UrlMyIpDao.class);
+
 	private static final int HTTP_OK = 200;
 
+	@Value("${myip.url}")
+	private String url = "http://freegeoip.net/csv";
+
+	@Value("${myip.connectTimeoutMillis}")
+	private int connectTimeoutMillis = 1000;
+
+	@Value("${myip.readTimeoutMillis}")
+	private int readTimeoutMillis = 2000;
+
+	@Value("${myip.timeToLiveSeconds}")
+	private long timeToLiveSeconds = 600;
+
+	@Value("${myip.failureThreshold}")
+	private int failureThreshold = 3;
+
+	@Value("${myip.openSeconds}")
+	private long openSeconds = 60;
+
+	private final ExecutorService executor = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "myip-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+
+	/** Last known address and the time it was fetched */
+	private volatile CachedIp cachedIp;
+
+	private volatile int consecutiveFailures;
+	private volatile long openUntil;
+	private volatile long failureCount;
+
+	/**
+	 * Fetched address with its fetch time
+	 *
+	 */
+	private static final class CachedIp {
+		final String ipAddress;
+		final long fetchedAt;
+
+		CachedIp(String ipAddress, long fetchedAt) {
+			this.ipAddress = ipAddress;
+			this.fetchedAt = fetchedAt;
+		}
+	}
+
 	/**
 	 * DAO find method for wan ip address
-	 * 
+	 *
 	 * @exception AppException
-	 *                on internal error
+	 *                on internal error, only if no address was fetched yet
 	 * @see AppException
 	 */
 	public String find() throws AppException {
-		return process(retrieve());
+		CachedIp current = cachedIp;
+		if (current == null) {
+			return load();
+		}
+		if (now() - current.fetchedAt >= TimeUnit.SECONDS
+				.toNanos(timeToLiveSeconds)) {
+			refreshLater();
+		}
+		return current.ipAddress;
+	}
+
+	/**
+	 * Fetches the first address on the calling thread, concurrent callers wait
+	 * for the same fetch
+	 */
+	private synchronized String load() throws AppException {
+		CachedIp current = cachedIp;
+		if (current != null) {
+			return current.ipAddress;
+		}
+		if (isOpen()) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getUrlDaoErrorInfo("UrlMyIpDao",
+					"remote service failed repeatedly, not called for now",
+					null).setParameter("consecutiveFailures",
+					consecutiveFailures));
+			throw ae;
+		}
+		return refresh();
+	}
+
+	/**
+	 * Starts a background fetch unless one is running or the remote service
+	 * is not called for now
+	 */
+	private void refreshLater() {
+		if (isOpen() || !refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					refresh();
+				} catch (AppException ae) {
+					// counted by refresh, the last known address stays
+				} finally {
+					refreshing.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fetches the address and caches it, counts the failures
+	 */
+	private String refresh() throws AppException {
+		try {
+			String myIpAddress = process(retrieve());
+			cachedIp = new CachedIp(myIpAddress, now());
+			consecutiveFailures = 0;
+			return myIpAddress;
+		} catch (AppException ae) {
+			failureCount++;
+			if (++consecutiveFailures >= failureThreshold) {
+				openUntil = now() + TimeUnit.SECONDS.toNanos(openSeconds);
+				LOG.warn("{} consecutive failures of {}, not called for {} s",
+						new Object[] { consecutiveFailures, url, openSeconds });
+			}
+			throw ae;
+		}
+	}
+
+	private boolean isOpen() {
+		return consecutiveFailures >= failureThreshold && now() < openUntil;
+	}
+
+	/**
+	 * Time source for expiration, nanoseconds
+	 */
+	protected long now() {
+		return System.nanoTime();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@ManagedAttribute(description = "Remote service returning the wan ip address")
+	public String getUrl() {
+		return url;
+	}
+
+	@ManagedAttribute(description = "Last known wan ip address, empty if none")
+	public String getIpAddress() {
+		CachedIp current = cachedIp;
+		return current == null ? "" : current.ipAddress;
+	}
+
+	@ManagedAttribute(description = "Whether the remote service is not called for now")
+	public boolean isCircuitOpen() {
+		return isOpen();
+	}
+
+	@ManagedAttribute(description = "Number of failed calls to the remote service")
+	public long getFailureCount() {
+		return failureCount;
 	}
 
 	/**
 	 * Communication method Retrieves client IP address from remote service
-	 * 
+	 *
 	 * @return String retrieved data structure containing client IP address
-	 * 
+	 *
 	 * @exception AppException
-	 *                on IO error
+	 *                on IO error or timeout
 	 * @see AppException
 	 */
 	private String retrieve() throws AppException {
 
-		URL url = null;
 		HttpURLConnection httpURLConnection = null;
 		String inputline = null;
 		StringBuilder csvResult = new StringBuilder();
 
 		try {
-			url = new URL(URL);
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = (HttpURLConnection) new URL(url)
+					.openConnection();
+			httpURLConnection.setConnectTimeout(connectTimeoutMillis);
+			httpURLConnection.setReadTimeout(readTimeoutMillis);
+			httpURLConnection.setUseCaches(false);
 			if (httpURLConnection.getResponseCode() == HTTP_OK) {
 				try (BufferedReader br = new BufferedReader(
 						new InputStreamReader(
@@ -74,7 +253,7 @@ public class UrlMyIpDao implements MyIpDao {
 			AppException ae = new AppException();
 			ae.addInfo(ErrorInfoFactory.getUrlDaoErrorInfo("UrlMyIpDao",
 					"could not access remote service - maybe not operational",
-					ioe));
+					ioe).setParameter("url", url));
 			throw ae;
 		} finally {
 			if (httpURLConnection != null) {
@@ -87,12 +266,12 @@ public class UrlMyIpDao implements MyIpDao {
 
 	/**
 	 * Communication method Retrieves client IP address from remote service
-	 * 
+	 *
 	 * @param String
 	 *            string containing client wan properties in csv format
-	 * 
+	 *
 	 * @return String client IP address
-	 * 
+	 *
 	 * @exception AppException
 	 *                on parse error
 	 * @see AppException
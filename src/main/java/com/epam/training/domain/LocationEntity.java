@@ -23,6 +23,28 @@ public class LocationEntity {
 
 	private boolean defaultAddress = true;
 
+	public LocationEntity() {
+	}
+
+	/**
+	 * Copy constructor
+	 * 
+	 * @param LocationEntity
+	 *            entity to copy
+	 */
+	public LocationEntity(LocationEntity other) {
+		this.countryCode = other.countryCode;
+		this.countryName = other.countryName;
+		this.regionName = other.regionName;
+		this.cityName = other.cityName;
+		this.latitude = other.latitude;
+		this.longitude = other.longitude;
+		this.zipCode = other.zipCode;
+		this.timeZone = other.timeZone;
+		this.ip4Address = other.ip4Address;
+		this.defaultAddress = other.defaultAddress;
+	}
+
 	@Override
 	public String toString() {
 		return isUnknownLocation() ? "Unknown"
@@ -0,0 +1,47 @@
+package com.epam.training.domain;
+
+/**
+ * Class representing an ip range and the Location all of its addresses are
+ * connected with
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LocationRange {
+
+	private final long ipFrom;
+	private final long ipTo;
+	private final LocationEntity locationEntity;
+
+	/**
+	 * @param long first converted ip4 address of the range
+	 * @param long last converted ip4 address of the range, inclusive
+	 * @param LocationEntity location of the range
+	 */
+	public LocationRange(long ipFrom, long ipTo, LocationEntity locationEntity) {
+		this.ipFrom = ipFrom;
+		this.ipTo = ipTo;
+		this.locationEntity = locationEntity;
+	}
+
+	public boolean contains(long convertedIp4Address) {
+		return ipFrom <= convertedIp4Address && convertedIp4Address <= ipTo;
+	}
+
+	public long getIpFrom() {
+		return ipFrom;
+	}
+
+	public long getIpTo() {
+		return ipTo;
+	}
+
+	public LocationEntity getLocationEntity() {
+		return locationEntity;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%d, %d] %s", ipFrom, ipTo, locationEntity);
+	}
+}
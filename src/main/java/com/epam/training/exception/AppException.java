@@ -19,6 +19,15 @@ public class AppException extends Exception {
 	public AppException() {
 	}
 
+	/**
+	 * @param boolean
+	 *            false for errors that are expected and never need a stack
+	 *            trace, filling it in is the most expensive part of a throw
+	 */
+	protected AppException(boolean writableStackTrace) {
+		super(null, null, false, writableStackTrace);
+	}
+
 	public ErrorInfo addInfo(ErrorInfo info) {
 		this.errorInfoList.add(info);
 		return info;
@@ -40,15 +49,35 @@ public class AppException extends Exception {
 		return sb.toString();
 	}
 
+	/**
+	 * @return boolean true if all errors are caused by the client, e.g. an
+	 *         invalid or unknown address, which are routine and need no
+	 *         development log
+	 */
+	public boolean isClientError() {
+		for (ErrorInfo ei : errorInfoList) {
+			if (ei.getErrorType() != ErrorInfo.ErrorType.CLIENT_ERROR) {
+				return false;
+			}
+		}
+		return !errorInfoList.isEmpty();
+	}
+
+	/**
+	 * Built on every call, loggers call it through toString only if the
+	 * message is actually logged
+	 */
 	public String getDevLog() {
-		StringBuilder sb = new StringBuilder();
+		String n = System.lineSeparator();
+		StringBuilder sb = new StringBuilder(256);
 		sb.append("DEVELOPMENT LOG");
 		int i = 0;
 		for (ErrorInfo ei : errorInfoList) {
-			sb.append(String.format("%n------------ %d. ---------------%n", i));
-			sb.append(String.format("%s%n", ei.getDevLogString()));
+			sb.append(n).append("------------ ").append(i)
+					.append(". ---------------").append(n);
+			sb.append(ei.getDevLogString()).append(n);
 		}
-		sb.append(String.format("------------ STACKTRACE ------------%n"));
+		sb.append("------------ STACKTRACE ------------").append(n);
 		return sb.toString();
 	}
 
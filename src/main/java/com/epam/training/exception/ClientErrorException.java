@@ -0,0 +1,17 @@
+package com.epam.training.exception;
+
+/**
+ * AppException for expected client errors, such as invalid or unknown
+ * addresses These are routine, so no stack trace is filled in.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class ClientErrorException extends AppException {
+	private static final long serialVersionUID = -2739183702315569417L;
+
+	public ClientErrorException() {
+		super(false);
+	}
+
+}
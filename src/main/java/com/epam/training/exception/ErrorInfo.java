@@ -33,44 +33,46 @@ public class ErrorInfo {
 	protected Map<String, Object> parameters = new HashMap<>();
 
 	public String getDevLogString() {
-		StringBuilder sb = new StringBuilder();
+		String n = System.lineSeparator();
+		StringBuilder sb = new StringBuilder(256);
 
 		if (cause != null) {
-			sb.append(String.format("1. Cause:    %n"));
-			sb.append(String.format("	class:    %s%n", cause.getClass()
-					.getName()));
-			sb.append(String.format("	message:  %s%n", cause.getMessage()));
+			sb.append("1. Cause:    ").append(n);
+			sb.append("	class:    ").append(cause.getClass().getName())
+					.append(n);
+			sb.append("	message:  ").append(cause.getMessage()).append(n);
 		}
 		if (errorId != null) {
-			sb.append(String.format("2. ErrorId:   %s%n", errorId));
+			sb.append("2. ErrorId:   ").append(errorId).append(n);
 		}
 		if (contextId != null) {
-			sb.append(String.format("3. ContextId: %s%n", contextId));
+			sb.append("3. ContextId: ").append(contextId).append(n);
 		}
 		if (errorType != null) {
-			sb.append(String.format("4. ErrorType: %s%n", errorType.name()));
+			sb.append("4. ErrorType: ").append(errorType.name()).append(n);
 		}
 		if (severity != null) {
-			sb.append(String.format("5. Severity:  %s%n", severity.name()));
+			sb.append("5. Severity:  ").append(severity.name()).append(n);
 		}
 
 		if (userErrorDescription != null) {
-			sb.append(String.format("6. UserErrorDescription:  %s%n",
-					userErrorDescription));
+			sb.append("6. UserErrorDescription:  ")
+					.append(userErrorDescription).append(n);
 		}
 		if (errorDescription != null) {
-			sb.append(String.format("7. ErrorDescription:      %s%n",
-					errorDescription));
+			sb.append("7. ErrorDescription:      ").append(errorDescription)
+					.append(n);
 		}
 		if (errorCorrection != null) {
-			sb.append(String.format("8. ErrorCorrection:       %s%n",
-					errorCorrection));
+			sb.append("8. ErrorCorrection:       ").append(errorCorrection)
+					.append(n);
 		}
 		if (!parameters.isEmpty()) {
-			sb.append(String.format("9. Parameters:%n"));
-			for (String s : parameters.keySet()) {
-				String v = parameters.get(s).toString();
-				sb.append(String.format("    name=%s value=%s%n", s, v));
+			sb.append("9. Parameters:").append(n);
+			for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+				sb.append("    name=").append(parameter.getKey())
+						.append(" value=").append(parameter.getValue())
+						.append(n);
 			}
 		}
 
@@ -97,6 +97,27 @@ public class ErrorInfoFactory {
 		return info;
 	}
 
+	/**
+	 * For file resource access error handling 
+	 * 
+	 */
+	public static final ErrorInfo getFileDaoErrorInfo(
+			String context, String errorDescription, Exception e) {
+		
+		ErrorInfo info = new ErrorInfo();
+		
+		info.setErrorId("FileDaoError");
+		info.setContextId(context);
+		
+		info.setErrorType(ErrorType.SERVICE_ERROR);
+		info.setSeverity(Severity.ERROR);
+		
+		info.setErrorDescription(errorDescription);
+		info.setCause(e);
+		
+		return info;
+	}
+
 	/**
 	 * For unexpected return value handling
 	 * 
@@ -119,4 +140,48 @@ public class ErrorInfoFactory {
 		
 		return info;
 	}
+
+	/**
+	 * For requests rejected or timed out under overload 
+	 * 
+	 */
+	public static final ErrorInfo getServiceBusyErrorInfo(
+			String context, String errorDescription, String userErrorDescription, String parameterName, Object parameterValue) {
+		
+		ErrorInfo info = new ErrorInfo();
+		
+		info.setErrorId("ServiceBusyError");
+		info.setContextId(context);
+		
+		info.setErrorType(ErrorType.SERVICE_ERROR);
+		info.setSeverity(Severity.WARNING);
+		
+		info.setErrorDescription(errorDescription);
+		info.setUserErrorDescription(userErrorDescription);
+		
+		info.setParameter(parameterName, parameterValue);
+		
+		return info;
+	}
+
+	/**
+	 * For unexpected runtime error handling 
+	 * 
+	 */
+	public static final ErrorInfo getUnexpectedErrorInfo(
+			String context, String errorDescription, Exception e) {
+		
+		ErrorInfo info = new ErrorInfo();
+		
+		info.setErrorId("UnexpectedError");
+		info.setContextId(context);
+		
+		info.setErrorType(ErrorType.INTERNAL_ERROR);
+		info.setSeverity(Severity.ERROR);
+		
+		info.setErrorDescription(errorDescription);
+		info.setCause(e);
+		
+		return info;
+	}
 }
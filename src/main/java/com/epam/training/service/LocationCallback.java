@@ -0,0 +1,19 @@
+package com.epam.training.service;
+
+import com.epam.training.exception.AppException;
+
+/**
+ * Completion callback of asynchronous LocationService calls Exactly one of
+ * the methods is called once, on a lookup thread or, if the lookup could not
+ * be started, on the calling thread.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public interface LocationCallback<T> {
+
+	void onSuccess(T result);
+
+	void onFailure(AppException ae);
+
+}
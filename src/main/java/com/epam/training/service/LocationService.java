@@ -1,21 +1,33 @@
 package com.epam.training.service;
 
-import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
 
 import com.epam.training.domain.LocationEntity;
 import com.epam.training.exception.AppException;
 
 /**
- * Interface for LocationService implementations
+ * Interface for LocationService implementations Not transactional, lookups
+ * are single idempotent reads and the in-memory daos need no connection at
+ * all. Daos declare transactions where they need them.
+ *
+ * The async methods run the lookup on a bounded executor and report the
+ * outcome to the callback, the caller thread is not blocked.
  * 
  * @author Ferenc Kis
  * @version 1.1
  */
-@Transactional(readOnly=true)
 public interface LocationService {
 	
 	LocationEntity getLocation(String ip4Address) throws AppException;
 	
+	List<LocationEntity> getLocations(Collection<String> ip4Addresses) throws AppException;
+	
 	String getMyIpAddress() throws AppException;
+
+	void getLocationAsync(String ip4Address,
+			LocationCallback<LocationEntity> callback);
+
+	void getMyIpAddressAsync(LocationCallback<String> callback);
 	
 }
@@ -0,0 +1,115 @@
+package com.epam.training.service.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+
+/**
+ * Base class of the size bounded LocationCaches with time to live Holds the
+ * settings and the statistics exported over JMX
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public abstract class AbstractLocationCache implements LocationCache {
+
+	private final int maxEntries;
+	private final long timeToLiveNanos;
+
+	protected final AtomicLong hitCount = new AtomicLong();
+	protected final AtomicLong missCount = new AtomicLong();
+	protected final AtomicLong evictionCount = new AtomicLong();
+	protected final AtomicLong expirationCount = new AtomicLong();
+
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * @param int maximum number of cached entries
+	 * @param long time to live of an entry in seconds
+	 */
+	protected AbstractLocationCache(int maxEntries, long timeToLiveSeconds) {
+		if (maxEntries < 1 || timeToLiveSeconds < 1) {
+			throw new IllegalArgumentException(String.format(
+					"invalid cache settings: maxEntries=%d timeToLiveSeconds=%d",
+					maxEntries, timeToLiveSeconds));
+		}
+		this.maxEntries = maxEntries;
+		this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+	}
+
+	/**
+	 * Time source for expiration, nanoseconds
+	 */
+	protected long now() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return long expiration time of an entry put now
+	 */
+	protected long expiresAt() {
+		return now() + timeToLiveNanos;
+	}
+
+	@Override
+	@ManagedAttribute(description = "Number of times the cache was cleared")
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Starts a new generation, called by clear() before removing the entries
+	 */
+	protected void nextGeneration() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * @param long generation taken before the lookup of the entry to put
+	 * @return boolean false if the cache has been cleared since
+	 */
+	protected boolean isCurrent(long generation) {
+		return this.generation.get() == generation;
+	}
+
+	@ManagedAttribute(description = "Maximum number of entries")
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	@ManagedAttribute(description = "Time to live of entries in seconds")
+	public long getTimeToLiveSeconds() {
+		return TimeUnit.NANOSECONDS.toSeconds(timeToLiveNanos);
+	}
+
+	@ManagedAttribute(description = "Current number of entries")
+	public abstract int getSize();
+
+	@ManagedAttribute(description = "Number of lookups served from cache")
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	@ManagedAttribute(description = "Number of lookups not found in cache")
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@ManagedAttribute(description = "Number of entries evicted by size")
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@ManagedAttribute(description = "Number of entries dropped by time to live")
+	public long getExpirationCount() {
+		return expirationCount.get();
+	}
+
+	@ManagedAttribute(description = "Ratio of lookups served from cache")
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+}
@@ -0,0 +1,81 @@
+package com.epam.training.service.cache;
+
+/**
+ * Count-min sketch estimating how often keys were seen recently. Counters are
+ * 4 bits wide (saturating at 15) and are halved periodically, so the estimate
+ * ages out old popularity. Not thread safe, callers must synchronize.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+class FrequencySketch {
+
+	private static final int MAX_COUNT = 15;
+	private static final int DEPTH = 4;
+	private static final int COUNTERS_PER_ENTRY = 8;
+	private static final long[] SEEDS = { 0x97CB3127L, 0xB492B66FL,
+			0x9AE16A3BL, 0xCBF29CE4L };
+
+	private final byte[] table;
+	private final int mask;
+	private final int sampleSize;
+	private int additions = 0;
+
+	/**
+	 * @param int number of entries the sketch has to distinguish
+	 */
+	FrequencySketch(int capacity) {
+		int size = Integer.highestOneBit(
+				Math.max(16, capacity) * COUNTERS_PER_ENTRY - 1) << 1;
+		this.table = new byte[size];
+		this.mask = size - 1;
+		this.sampleSize = 10 * Math.max(16, capacity);
+	}
+
+	/**
+	 * Records an access of the key
+	 */
+	void increment(long key) {
+		int frequency = frequency(key);
+		if (frequency == MAX_COUNT) {
+			return;
+		}
+
+		// conservative update, only the smallest counters grow
+		for (int i = 0; i < DEPTH; i++) {
+			int index = indexOf(key, i);
+			if (table[index] == frequency) {
+				table[index]++;
+			}
+		}
+
+		if (++additions == sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * @return int estimated number of recent accesses of the key
+	 */
+	int frequency(long key) {
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < DEPTH; i++) {
+			frequency = Math.min(frequency, table[indexOf(key, i)]);
+		}
+		return frequency;
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (byte) (table[i] >>> 1);
+		}
+		additions /= 2;
+	}
+
+	private int indexOf(long key, int i) {
+		long hash = (key + SEEDS[i]) * SEEDS[i];
+		hash ^= hash >>> 32;
+		hash ^= hash >>> 17;
+		return (int) hash & mask;
+	}
+}
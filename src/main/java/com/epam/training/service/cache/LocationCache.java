@@ -0,0 +1,31 @@
+package com.epam.training.service.cache;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+
+/**
+ * Interface for LocationEntity caches keyed on converted ip4 addresses
+ * Implementations store and return copies, callers may modify the entities.
+ * Ranges are put together with the requested address, implementations may
+ * cache either of them.
+ *
+ * Clearing starts a new generation. Callers take the generation before they
+ * look up the range to put, puts of an older generation are dropped, so a
+ * lookup of the data replaced by a reload can not refill the cache after it
+ * has been cleared.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public interface LocationCache {
+
+	LocationEntity get(long convertedIp4Address);
+
+	long getGeneration();
+
+	void put(long convertedIp4Address, LocationRange locationRange,
+			long generation);
+
+	void clear();
+
+}
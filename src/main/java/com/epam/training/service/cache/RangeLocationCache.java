@@ -0,0 +1,168 @@
+package com.epam.training.service.cache;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+
+/**
+ * Size bounded LocationCache storing whole ip ranges with time to live
+ *
+ * Ranges are kept in a skip list keyed on their first address, a lookup
+ * takes the closest range starting at or below the address. A single miss
+ * therefore covers every address of the range, and one entry is kept per
+ * range instead of one per address.
+ *
+ * Eviction is a CLOCK approximation of LRU: ranges are queued in insertion
+ * order, ranges hit since they were last passed get a second chance.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@ManagedResource(description = "Location range cache statistics")
+public class RangeLocationCache extends AbstractLocationCache {
+
+	private final ConcurrentSkipListMap<Long, Entry> ranges = new ConcurrentSkipListMap<>();
+	private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger queued = new AtomicInteger();
+
+	/**
+	 * @param int maximum number of cached ranges
+	 * @param long time to live of an entry in seconds
+	 */
+	@ConstructorProperties({ "maxEntries", "timeToLiveSeconds" })
+	public RangeLocationCache(int maxEntries, long timeToLiveSeconds) {
+		super(maxEntries, timeToLiveSeconds);
+	}
+
+	@Override
+	public LocationEntity get(long convertedIp4Address) {
+		Map.Entry<Long, Entry> floor = ranges.floorEntry(convertedIp4Address);
+		Entry entry = floor == null ? null : floor.getValue();
+		if (entry == null || convertedIp4Address > entry.ipTo) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		if (entry.expiresAt - now() <= 0) {
+			if (remove(entry)) {
+				expirationCount.incrementAndGet();
+			}
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		entry.referenced = true;
+		hitCount.incrementAndGet();
+		return new LocationEntity(entry.locationEntity);
+	}
+
+	@Override
+	public void put(long convertedIp4Address, LocationRange locationRange,
+			long generation) {
+		if (!isCurrent(generation)) {
+			return;
+		}
+		Entry entry = new Entry(locationRange.getIpFrom(),
+				locationRange.getIpTo(), new LocationEntity(
+						locationRange.getLocationEntity()), expiresAt());
+		if (ranges.put(entry.ipFrom, entry) == null) {
+			size.incrementAndGet();
+		}
+		enqueue(entry);
+
+		// a clear may have passed the key before the entry was put
+		if (!isCurrent(generation)) {
+			remove(entry);
+			return;
+		}
+
+		// replaced and expired entries leave stale queue elements behind
+		while (size.get() > getMaxEntries()
+				|| queued.get() > 2 * getMaxEntries()) {
+			if (!advanceClock()) {
+				break;
+			}
+		}
+	}
+
+	@Override
+	@ManagedOperation(description = "Removes all entries")
+	public void clear() {
+		nextGeneration();
+		for (Entry entry : ranges.values()) {
+			remove(entry);
+		}
+	}
+
+	@Override
+	public int getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Takes the next entry of the clock, evicts it unless it was hit since
+	 * last passed
+	 *
+	 * @return boolean false if the clock is empty
+	 */
+	private boolean advanceClock() {
+		Entry entry = clock.poll();
+		if (entry == null) {
+			return false;
+		}
+		queued.decrementAndGet();
+
+		if (ranges.get(entry.ipFrom) != entry) {
+			return true;
+		}
+		if (entry.referenced) {
+			entry.referenced = false;
+			enqueue(entry);
+		} else if (remove(entry)) {
+			evictionCount.incrementAndGet();
+		}
+		return true;
+	}
+
+	private void enqueue(Entry entry) {
+		clock.offer(entry);
+		queued.incrementAndGet();
+	}
+
+	private boolean remove(Entry entry) {
+		if (ranges.remove(entry.ipFrom, entry)) {
+			size.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Cached range
+	 */
+	private static final class Entry {
+		final long ipFrom;
+		final long ipTo;
+		final LocationEntity locationEntity;
+		final long expiresAt;
+
+		volatile boolean referenced = false;
+
+		Entry(long ipFrom, long ipTo, LocationEntity locationEntity,
+				long expiresAt) {
+			this.ipFrom = ipFrom;
+			this.ipTo = ipTo;
+			this.locationEntity = locationEntity;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package com.epam.training.service.cache;
+
+import java.beans.ConstructorProperties;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+
+/**
+ * Size bounded LocationCache with W-TinyLFU eviction and time to live
+ *
+ * New entries enter a small LRU window. Entries leaving the window compete
+ * with the least recently used entry of the main area, the one accessed more
+ * often according to a FrequencySketch stays. The main area is a segmented
+ * LRU, entries hit again are promoted from probation to protected. One-hit
+ * wonders therefore cannot flush out frequently requested addresses.
+ *
+ * Keys are spread over independently locked segments, each running its own
+ * policy on its share of the entries.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@ManagedResource(description = "Location cache statistics")
+public class TinyLfuLocationCache extends AbstractLocationCache {
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int WINDOW_PERCENT = 1;
+	private static final int PROTECTED_PERCENT = 80;
+
+	private final Segment[] segments;
+	private final int segmentMask;
+
+	/**
+	 * @param int maximum number of cached addresses
+	 * @param long time to live of an entry in seconds
+	 */
+	@ConstructorProperties({ "maxEntries", "timeToLiveSeconds" })
+	public TinyLfuLocationCache(int maxEntries, long timeToLiveSeconds) {
+		super(maxEntries, timeToLiveSeconds);
+
+		int segmentCount = Math.min(MAX_SEGMENTS,
+				Integer.highestOneBit(maxEntries));
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			int remainder = (i < maxEntries % segmentCount) ? 1 : 0;
+			segments[i] = new Segment(maxEntries / segmentCount + remainder);
+		}
+		this.segmentMask = segmentCount - 1;
+	}
+
+	@Override
+	public LocationEntity get(long convertedIp4Address) {
+		LocationEntity locationEntity = segmentFor(convertedIp4Address).get(
+				convertedIp4Address, now());
+		if (locationEntity == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return new LocationEntity(locationEntity);
+	}
+
+	@Override
+	public void put(long convertedIp4Address, LocationRange locationRange,
+			long generation) {
+		segmentFor(convertedIp4Address).put(convertedIp4Address,
+				new LocationEntity(locationRange.getLocationEntity()),
+				expiresAt(), generation);
+	}
+
+	@Override
+	@ManagedOperation(description = "Removes all entries")
+	public void clear() {
+		nextGeneration();
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	private Segment segmentFor(long key) {
+		int hash = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+		return segments[hash & segmentMask];
+	}
+
+	@Override
+	public int getSize() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Cache entry, linked into the queue of its area
+	 */
+	private static final class Node {
+		final long key;
+		LocationEntity value;
+		long expiresAt;
+		Queue queue;
+
+		Node previous;
+		Node next;
+
+		Node(long key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Doubly linked LRU queue, most recently used entries first
+	 */
+	private static final class Queue {
+		final Node sentinel = new Node(0);
+		int size = 0;
+
+		Queue() {
+			sentinel.previous = sentinel;
+			sentinel.next = sentinel;
+		}
+
+		void addFirst(Node node) {
+			node.queue = this;
+			node.previous = sentinel;
+			node.next = sentinel.next;
+			sentinel.next.previous = node;
+			sentinel.next = node;
+			size++;
+		}
+
+		void remove(Node node) {
+			node.previous.next = node.next;
+			node.next.previous = node.previous;
+			node.previous = null;
+			node.next = null;
+			node.queue = null;
+			size--;
+		}
+
+		Node last() {
+			return sentinel.previous == sentinel ? null : sentinel.previous;
+		}
+
+		void clear() {
+			sentinel.previous = sentinel;
+			sentinel.next = sentinel;
+			size = 0;
+		}
+	}
+
+	/**
+	 * Independently locked part of the cache with its own W-TinyLFU policy
+	 */
+	private final class Segment {
+		private final Map<Long, Node> nodes = new HashMap<>();
+		private final FrequencySketch sketch;
+
+		private final Queue window = new Queue();
+		private final Queue probation = new Queue();
+		private final Queue protectedQueue = new Queue();
+
+		private final int windowMax;
+		private final int mainMax;
+		private final int protectedMax;
+
+		Segment(int capacity) {
+			this.windowMax = Math.max(1, capacity * WINDOW_PERCENT / 100);
+			this.mainMax = capacity - windowMax;
+			this.protectedMax = mainMax * PROTECTED_PERCENT / 100;
+			this.sketch = new FrequencySketch(capacity);
+		}
+
+		synchronized LocationEntity get(long key, long now) {
+			sketch.increment(key);
+
+			Node node = nodes.get(key);
+			if (node == null) {
+				return null;
+			}
+			if (node.expiresAt - now <= 0) {
+				remove(node);
+				expirationCount.incrementAndGet();
+				return null;
+			}
+
+			onHit(node);
+			return node.value;
+		}
+
+		/**
+		 * The generation is checked under the segment lock, a clear started
+		 * later waits for the put and removes the entry
+		 */
+		synchronized void put(long key, LocationEntity value, long expiresAt,
+				long generation) {
+			if (!isCurrent(generation)) {
+				return;
+			}
+			Node node = nodes.get(key);
+			if (node != null) {
+				node.value = value;
+				node.expiresAt = expiresAt;
+				return;
+			}
+
+			node = new Node(key);
+			node.value = value;
+			node.expiresAt = expiresAt;
+			nodes.put(key, node);
+			window.addFirst(node);
+
+			if (window.size > windowMax) {
+				evictFromWindow();
+			}
+		}
+
+		synchronized void clear() {
+			nodes.clear();
+			window.clear();
+			probation.clear();
+			protectedQueue.clear();
+		}
+
+		synchronized int size() {
+			return nodes.size();
+		}
+
+		private void onHit(Node node) {
+			Queue queue = node.queue;
+			queue.remove(node);
+			if (queue == probation) {
+				protectedQueue.addFirst(node);
+				if (protectedQueue.size > protectedMax) {
+					Node demoted = protectedQueue.last();
+					protectedQueue.remove(demoted);
+					probation.addFirst(demoted);
+				}
+			} else {
+				queue.addFirst(node);
+			}
+		}
+
+		/**
+		 * Moves the window's least recently used entry to the main area if
+		 * it is accessed more often than the main area's victim
+		 */
+		private void evictFromWindow() {
+			Node candidate = window.last();
+			window.remove(candidate);
+
+			if (probation.size + protectedQueue.size < mainMax) {
+				probation.addFirst(candidate);
+				return;
+			}
+
+			Node victim = probation.last();
+			if (victim == null) {
+				victim = protectedQueue.last();
+			}
+			if (victim != null
+					&& sketch.frequency(candidate.key) > sketch
+							.frequency(victim.key)) {
+				remove(victim);
+				probation.addFirst(candidate);
+			} else {
+				nodes.remove(candidate.key);
+			}
+			evictionCount.incrementAndGet();
+		}
+
+		private void remove(Node node) {
+			node.queue.remove(node);
+			nodes.remove(node.key);
+		}
+	}
+}
@@ -1,17 +1,32 @@
 package com.epam.training.service.impl;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.epam.training.dao.Ip6LocationDao;
 import com.epam.training.dao.LocationDao;
 import com.epam.training.dao.url.UrlMyIpDao;
 import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
 import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
 import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
 import com.epam.training.service.LocationService;
+import com.epam.training.service.cache.LocationCache;
 import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.Ip6Parser;
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.LookupMetrics.Outcome;
+import com.epam.training.utils.LookupMetrics.Stage;
 import com.epam.training.utils.Validator;
 
 /**
@@ -25,9 +40,15 @@ public class LocationServiceImpl implements LocationService {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(LocationServiceImpl.class);
 
+	private static final int INDEX_BITS = 31;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
 	@Autowired
 	private LocationDao locationDao;
 
+	@Autowired
+	private Ip6LocationDao ip6LocationDao;
+
 	@Autowired
 	private UrlMyIpDao urlMyIpDao;
 
@@ -37,12 +58,22 @@ public class LocationServiceImpl implements LocationService {
 	@Autowired
 	private Validator ipValidator;
 
+	@Autowired(required = false)
+	private LocationCache locationCache;
+
+	/** Bounded executor of the async lookups, see lookupExecutor */
+	@Autowired
+	private Executor lookupExecutor;
+
+	@Autowired
+	private LookupMetrics lookupMetrics;
+
 	/**
 	 * Service entry point for getting LocationEntity Validates and converts ip
-	 * address
+	 * address Ip4-mapped ip6 addresses are looked up as ip4 addresses
 	 * 
 	 * @param String
-	 *            ip4 address in canonical format
+	 *            ip4 address in canonical format or ip6 address
 	 * @return LocationEntity location related to ip address
 	 * 
 	 * @exception AppException
@@ -52,8 +83,24 @@ public class LocationServiceImpl implements LocationService {
 	@Override
 	public LocationEntity getLocation(String ip4Address) throws AppException {
 
-		if (!ipValidator.validateIp4String(ip4Address)) {
-			AppException ae = new AppException();
+		long startNanos = System.nanoTime();
+		if (ipValidator.validateIp4String(ip4Address)) {
+			long validatedNanos = lookupMetrics.record(Stage.VALIDATION,
+					startNanos);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("{} is a valid IP4 address", ip4Address);
+			}
+			long convertedIp4Address = ipConverter
+					.convertFromStringToLong(ip4Address);
+			return getIp4Location(convertedIp4Address, ip4Address,
+					lookupMetrics.record(Stage.CONVERSION, validatedNanos));
+		}
+
+		long[] ip6Address = new long[2];
+		if (!Ip6Parser.parse(ip4Address, ip6Address)) {
+			lookupMetrics.record(Stage.VALIDATION, startNanos);
+			lookupMetrics.count(Outcome.INVALID_INPUT);
+			AppException ae = new ClientErrorException();
 			ae.addInfo(ErrorInfoFactory
 					.getIllegalClientParameterErrorInfo(
 							"LocationServiceImpl",
@@ -62,13 +109,193 @@ public class LocationServiceImpl implements LocationService {
 							ip4Address, ip4Address));
 			throw ae;
 		}
-		LOG.info("{} is a valid IP4 address", ip4Address);
+		long validatedNanos = lookupMetrics.record(Stage.VALIDATION,
+				startNanos);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("{} is a valid IP6 address", ip4Address);
+		}
+
+		long high = ip6Address[Ip6Parser.HIGH];
+		long low = ip6Address[Ip6Parser.LOW];
+		if (Ip6Parser.isIp4Mapped(high, low)) {
+			return getIp4Location(Ip6Parser.toIp4Address(low), ip4Address,
+					validatedNanos);
+		}
+		try {
+			return recordLookup(ip6LocationDao.find(high, low),
+					validatedNanos).setIp4Address(ip4Address);
+		} catch (AppException ae) {
+			throw recordLookup(ae, validatedNanos);
+		}
+	}
+
+	/**
+	 * Looks up a converted ip4 address through the cache if there is one
+	 */
+	private LocationEntity getIp4Location(long convertedIp4Address,
+			String ipAddress, long startNanos) throws AppException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("converted ip address is {}", convertedIp4Address);
+		}
+
+		try {
+			if (locationCache == null) {
+				return recordLookup(locationDao.find(convertedIp4Address),
+						startNanos).setIp4Address(ipAddress);
+			}
+
+			LocationEntity locationEntity = locationCache
+					.get(convertedIp4Address);
+			if (locationEntity == null) {
+				long generation = locationCache.getGeneration();
+				LocationRange locationRange = locationDao
+						.findRange(convertedIp4Address);
+				locationCache.put(convertedIp4Address, locationRange,
+						generation);
+				locationEntity = locationRange.getLocationEntity();
+			}
+			return recordLookup(locationEntity, startNanos).setIp4Address(
+					ipAddress);
+		} catch (AppException ae) {
+			throw recordLookup(ae, startNanos);
+		}
+	}
 
-		double convertedIp4Address = ipConverter
-				.convertFromStringToDouble(ip4Address);
-		LOG.info("double converted ip address is {}", convertedIp4Address);
+	/**
+	 * Records the dao lookup of a found location and counts its outcome
+	 */
+	private LocationEntity recordLookup(LocationEntity locationEntity,
+			long startNanos) {
+		lookupMetrics.record(Stage.DAO_LOOKUP, startNanos);
+		lookupMetrics
+				.count(locationEntity.isUnknownLocation() ? Outcome.UNKNOWN_LOCATION
+						: Outcome.HIT);
+		return locationEntity;
+	}
 
-		return locationDao.find(convertedIp4Address).setIp4Address(ip4Address);
+	/**
+	 * Records a failed dao lookup and counts its outcome, addresses not
+	 * covered by any range are client errors
+	 */
+	private AppException recordLookup(AppException ae, long startNanos) {
+		lookupMetrics.record(Stage.DAO_LOOKUP, startNanos);
+		lookupMetrics.count(ae.isClientError() ? Outcome.UNKNOWN_LOCATION
+				: Outcome.UPSTREAM_ERROR);
+		return ae;
+	}
+
+	/**
+	 * Service entry point for getting LocationEntities of many addresses
+	 * Converted addresses are sorted and resolved with a single dao call, ip6
+	 * addresses with a single ip6 dao call
+	 * 
+	 * @param Collection
+	 *            ip4 addresses in canonical format or ip6 addresses
+	 * @return List locations in the order of the addresses, null for invalid
+	 *         addresses and addresses not found in database
+	 * 
+	 * @exception AppException
+	 *                on dao error
+	 * @see AppException
+	 */
+	@Override
+	public List<LocationEntity> getLocations(Collection<String> ip4Addresses)
+			throws AppException {
+		String[] addresses = ip4Addresses.toArray(new String[ip4Addresses
+				.size()]);
+
+		// converted address in the high bits, input position in the low bits
+		long[] sortKeys = new long[addresses.length];
+		int validCount = 0;
+
+		// native ip6 addresses and their input positions
+		long[] ip6Address = new long[2];
+		long[] ip6Highs = null;
+		long[] ip6Lows = null;
+		int[] ip6Positions = null;
+		int ip6Count = 0;
+
+		for (int i = 0; i < addresses.length; i++) {
+			long convertedIp4Address;
+			if (ipValidator.validateIp4String(addresses[i])) {
+				convertedIp4Address = ipConverter
+						.convertFromStringToLong(addresses[i]);
+			} else if (Ip6Parser.parse(addresses[i], ip6Address)) {
+				long high = ip6Address[Ip6Parser.HIGH];
+				long low = ip6Address[Ip6Parser.LOW];
+				if (Ip6Parser.isIp4Mapped(high, low)) {
+					convertedIp4Address = Ip6Parser.toIp4Address(low);
+				} else {
+					if (ip6Positions == null) {
+						ip6Highs = new long[addresses.length - i];
+						ip6Lows = new long[addresses.length - i];
+						ip6Positions = new int[addresses.length - i];
+					}
+					ip6Highs[ip6Count] = high;
+					ip6Lows[ip6Count] = low;
+					ip6Positions[ip6Count++] = i;
+					continue;
+				}
+			} else {
+				continue;
+			}
+			sortKeys[validCount++] = (convertedIp4Address << INDEX_BITS) | i;
+		}
+		Arrays.sort(sortKeys, 0, validCount);
+
+		long[] sortedConvertedIp4Addresses = new long[validCount];
+		for (int i = 0; i < validCount; i++) {
+			sortedConvertedIp4Addresses[i] = sortKeys[i] >>> INDEX_BITS;
+		}
+		LocationEntity[] locationEntities = new LocationEntity[addresses.length];
+		int foundCount = 0;
+		int unknownCount = 0;
+		try {
+			LocationEntity[] foundEntities = locationDao
+					.findAll(sortedConvertedIp4Addresses);
+			for (int i = 0; i < validCount; i++) {
+				int position = (int) (sortKeys[i] & INDEX_MASK);
+				if (foundEntities[i] != null) {
+					locationEntities[position] = foundEntities[i]
+							.setIp4Address(addresses[position]);
+					foundCount++;
+					if (foundEntities[i].isUnknownLocation()) {
+						unknownCount++;
+					}
+				}
+			}
+
+			if (ip6Count > 0) {
+				LocationEntity[] foundIp6Entities = ip6LocationDao.findAll(
+						Arrays.copyOf(ip6Highs, ip6Count),
+						Arrays.copyOf(ip6Lows, ip6Count));
+				for (int i = 0; i < ip6Count; i++) {
+					int position = ip6Positions[i];
+					if (foundIp6Entities[i] != null) {
+						locationEntities[position] = foundIp6Entities[i]
+								.setIp4Address(addresses[position]);
+						foundCount++;
+						if (foundIp6Entities[i].isUnknownLocation()) {
+							unknownCount++;
+						}
+					}
+				}
+			}
+		} catch (AppException ae) {
+			lookupMetrics.count(Outcome.UPSTREAM_ERROR, validCount + ip6Count);
+			throw ae;
+		}
+		LOG.info("{} addresses, {} valid, {} found", new Object[] {
+				addresses.length, validCount + ip6Count, foundCount });
+
+		int hitCount = foundCount - unknownCount;
+		lookupMetrics.count(Outcome.HIT, hitCount);
+		lookupMetrics.count(Outcome.UNKNOWN_LOCATION, validCount + ip6Count
+				- hitCount);
+		lookupMetrics.count(Outcome.INVALID_INPUT, addresses.length
+				- validCount - ip6Count);
+
+		return Arrays.asList(locationEntities);
 	}
 
 	/**
@@ -81,9 +308,100 @@ public class LocationServiceImpl implements LocationService {
 	 */
 	@Override
 	public String getMyIpAddress() throws AppException {
-		String myIpAddress = urlMyIpDao.find();
-		LOG.info("my wan ip address is {}", myIpAddress);
+		long startNanos = System.nanoTime();
+		String myIpAddress;
+		try {
+			myIpAddress = urlMyIpDao.find();
+		} catch (AppException ae) {
+			lookupMetrics.record(Stage.MYIP_FETCH, startNanos);
+			lookupMetrics.count(Outcome.UPSTREAM_ERROR);
+			throw ae;
+		}
+		lookupMetrics.record(Stage.MYIP_FETCH, startNanos);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("my wan ip address is {}", myIpAddress);
+		}
 		return myIpAddress;
 	}
 
+	/**
+	 * Async variant of getLocation
+	 * 
+	 * @param String
+	 *            ip4 address in canonical format or ip6 address
+	 * @param LocationCallback
+	 *            receives the location or the AppException of getLocation,
+	 *            or a service busy error if the executor is saturated
+	 */
+	@Override
+	public void getLocationAsync(final String ip4Address,
+			LocationCallback<LocationEntity> callback) {
+		execute(new Lookup<LocationEntity>(callback) {
+			LocationEntity call() throws AppException {
+				return getLocation(ip4Address);
+			}
+		});
+	}
+
+	/**
+	 * Async variant of getMyIpAddress
+	 * 
+	 * @param LocationCallback
+	 *            receives the address or the AppException of getMyIpAddress,
+	 *            or a service busy error if the executor is saturated
+	 */
+	@Override
+	public void getMyIpAddressAsync(LocationCallback<String> callback) {
+		execute(new Lookup<String>(callback) {
+			String call() throws AppException {
+				return getMyIpAddress();
+			}
+		});
+	}
+
+	/**
+	 * Lookup run on the executor, its outcome is passed to the callback
+	 * Unexpected runtime errors are reported as AppException too.
+	 */
+	private abstract static class Lookup<T> implements Runnable {
+		final LocationCallback<T> callback;
+
+		Lookup(LocationCallback<T> callback) {
+			this.callback = callback;
+		}
+
+		abstract T call() throws AppException;
+
+		public void run() {
+			T result;
+			try {
+				result = call();
+			} catch (AppException ae) {
+				callback.onFailure(ae);
+				return;
+			} catch (RuntimeException re) {
+				AppException ae = new AppException();
+				ae.addInfo(ErrorInfoFactory.getUnexpectedErrorInfo(
+						"LocationServiceImpl", "lookup failed", re));
+				callback.onFailure(ae);
+				return;
+			}
+			callback.onSuccess(result);
+		}
+	}
+
+	private void execute(Lookup<?> lookup) {
+		try {
+			lookupExecutor.execute(lookup);
+		} catch (RejectedExecutionException ree) {
+			lookupMetrics.count(Outcome.BUSY);
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getServiceBusyErrorInfo(
+					"LocationServiceImpl", "lookup executor is saturated",
+					"Server is busy, please try again later", "lookupExecutor",
+					lookupExecutor));
+			lookup.callback.onFailure(ae);
+		}
+	}
+
 }
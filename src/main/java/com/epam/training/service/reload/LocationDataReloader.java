@@ -0,0 +1,193 @@
+package com.epam.training.service.reload;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.epam.training.dao.LocationDao;
+import com.epam.training.dao.ReloadableLocationDao;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.cache.LocationCache;
+
+/**
+ * Replaces the location dataset of the running application Reloads run on a
+ * background thread, lookups keep being served from the current snapshot
+ * until the new one is built, validated and swapped in. The location cache is
+ * cleared after a successful swap.
+ *
+ * Started over JMX, duration and range counts of the last reload are
+ * exported there too.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ * @see ReloadableLocationDao
+ */
+@Component
+@ManagedResource(description = "Location dataset reload")
+public class LocationDataReloader {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(LocationDataReloader.class);
+
+	@Autowired
+	private LocationDao locationDao;
+
+	@Autowired(required = false)
+	private LocationCache locationCache;
+
+	private final ExecutorService executor = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "location-reload");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private volatile long reloadCount;
+	private volatile long failedReloadCount;
+	private volatile long lastReloadMillis;
+	private volatile int lastOldRangeCount;
+	private volatile int lastNewRangeCount;
+	private volatile String lastError = "";
+
+	/**
+	 * Starts a reload on the background thread
+	 *
+	 * @param String
+	 *            dataset file in the format of the location dao
+	 * @return String outcome of the request, the reload itself is logged
+	 */
+	@ManagedOperation(description = "Reloads the location dataset in the background")
+	@ManagedOperationParameters({ @ManagedOperationParameter(name = "fileName", description = "DB11 csv file for sortedRangeLocationDao, binary location database for mappedLocationDao") })
+	public String startReload(final String fileName) {
+		if (!(locationDao instanceof ReloadableLocationDao)) {
+			return "location dao does not support reload";
+		}
+		if (!running.compareAndSet(false, true)) {
+			return "reload is already running";
+		}
+
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					reload(new File(fileName));
+				} catch (AppException ae) {
+					// logged and counted by reload
+				} finally {
+					running.set(false);
+				}
+			}
+		});
+		return "reload started";
+	}
+
+	/**
+	 * Reloads the dataset on the calling thread
+	 *
+	 * @param File
+	 *            dataset file in the format of the location dao
+	 * @exception AppException
+	 *                if the dao does not support reload or the new dataset
+	 *                could not be loaded, the current one stays in place
+	 * @see AppException
+	 */
+	public synchronized void reload(File file) throws AppException {
+		if (!(locationDao instanceof ReloadableLocationDao)) {
+			AppException ae = new AppException();
+			ae.addInfo(ErrorInfoFactory.getInitializaionErrorInfo(
+					"LocationDataReloader",
+					"location dao does not support reload", "locationDao",
+					locationDao.getClass().getSimpleName()));
+			throw ae;
+		}
+		ReloadableLocationDao reloadableLocationDao = (ReloadableLocationDao) locationDao;
+
+		LOG.info("Reloading location dataset from {}", file);
+		long start = System.currentTimeMillis();
+		try {
+			lastOldRangeCount = reloadableLocationDao.reload(file);
+		} catch (AppException ae) {
+			failedReloadCount++;
+			lastError = ae.getErrorInfoList().isEmpty() ? "" : ae
+					.getErrorInfoList().get(0).getErrorDescription();
+			LOG.error("Location dataset reload from {} failed: {}", file,
+					lastError);
+			throw ae;
+		}
+		lastNewRangeCount = reloadableLocationDao.getRangeCount();
+		lastReloadMillis = System.currentTimeMillis() - start;
+		lastError = "";
+		reloadCount++;
+
+		// lookups of the old dataset still running can not put after this
+		if (locationCache != null) {
+			locationCache.clear();
+		}
+		LOG.info("Reloaded location dataset in {} ms, {} ranges before, {} after",
+				new Object[] { lastReloadMillis, lastOldRangeCount,
+						lastNewRangeCount });
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@ManagedAttribute(description = "Whether a reload is running")
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	@ManagedAttribute(description = "Number of successful reloads")
+	public long getReloadCount() {
+		return reloadCount;
+	}
+
+	@ManagedAttribute(description = "Number of failed reloads")
+	public long getFailedReloadCount() {
+		return failedReloadCount;
+	}
+
+	@ManagedAttribute(description = "Duration of the last successful reload in milliseconds")
+	public long getLastReloadMillis() {
+		return lastReloadMillis;
+	}
+
+	@ManagedAttribute(description = "Number of ranges before the last successful reload")
+	public int getLastOldRangeCount() {
+		return lastOldRangeCount;
+	}
+
+	@ManagedAttribute(description = "Number of ranges after the last successful reload")
+	public int getLastNewRangeCount() {
+		return lastNewRangeCount;
+	}
+
+	@ManagedAttribute(description = "Error of the last failed reload, empty after a successful one")
+	public String getLastError() {
+		return lastError;
+	}
+
+	@ManagedAttribute(description = "Number of ranges of the current dataset, 0 if not loaded or not reloadable")
+	public int getRangeCount() {
+		return locationDao instanceof ReloadableLocationDao ? ((ReloadableLocationDao) locationDao)
+				.getRangeCount() : 0;
+	}
+}
@@ -0,0 +1,92 @@
+package com.epam.training.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfo;
+
+/**
+ * Access log of the lookups, one key=value line per request
+ *
+ * Only a sample of the requests is logged, except the ones failed on a
+ * service or internal error, those are always logged. Lines go to the
+ * com.epam.training.access logger, log4j.xml writes it through an async
+ * appender, so request threads do not wait for the disk.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class AccessLog {
+	private static final Logger LOG = LoggerFactory
+			.getLogger("com.epam.training.access");
+
+	private final double sampleRate;
+
+	/**
+	 * @param double
+	 *            fraction of the requests logged, 0 for none, 1 for all
+	 */
+	public AccessLog(double sampleRate) {
+		if (sampleRate < 0 || sampleRate > 1) {
+			throw new IllegalArgumentException(String.format(
+					"sample rate must be between 0 and 1: %s", sampleRate));
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Logs a completed lookup if it is sampled
+	 *
+	 * @param String
+	 *            handler of the request, api or page
+	 * @param String
+	 *            looked up address
+	 * @param LocationEntity
+	 *            found location, null on error
+	 * @param AppException
+	 *            error of the lookup, null on success
+	 * @param long System.nanoTime() at the start of the request
+	 */
+	public void log(String handler, String ipAddress,
+			LocationEntity locationEntity, AppException ae, long startNanos) {
+		if (!LOG.isInfoEnabled() || !isSampled(ae)) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder(128);
+		sb.append("handler=").append(handler);
+		sb.append(" ip=").append(ipAddress);
+		sb.append(" result=").append(getResult(ae));
+		if (locationEntity != null && !locationEntity.isUnknownLocation()) {
+			sb.append(" country=").append(locationEntity.getCountryCode());
+		}
+		sb.append(" micros=").append(
+				TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+		LOG.info(sb.toString());
+	}
+
+	private boolean isSampled(AppException ae) {
+		return sampleRate >= 1 || (ae != null && !ae.isClientError())
+				|| ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+
+	/**
+	 * OK, or the error id of the first error
+	 */
+	private static String getResult(AppException ae) {
+		if (ae == null) {
+			return "OK";
+		}
+		for (ErrorInfo errorInfo : ae.getErrorInfoList()) {
+			if (errorInfo.getErrorId() != null) {
+				return errorInfo.getErrorId();
+			}
+		}
+		return "Error";
+	}
+}
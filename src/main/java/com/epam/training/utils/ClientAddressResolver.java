@@ -0,0 +1,246 @@
+package com.epam.training.utils;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Determines the ip address of the client of a request
+ *
+ * The address of the connection is the client, unless it is one of the
+ * trusted proxies. Then the hops listed in the Forwarded header, or without
+ * it in X-Forwarded-For, are walked from the nearest one and the first hop
+ * that is not a trusted proxy is the client. Entries a client could have
+ * written are never taken without a trusted proxy in front of them.
+ *
+ * Trusted proxies are ip4 or ip6 addresses or networks in CIDR notation.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class ClientAddressResolver {
+
+	static final String FORWARDED = "Forwarded";
+	static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+	/** Loopback, private and link local networks */
+	private static final Network[] PRIVATE_NETWORKS = parseNetworks("127.0.0.0/8, 10.0.0.0/8, 172.16.0.0/12, "
+			+ "192.168.0.0/16, 169.254.0.0/16, ::1/128, fc00::/7, fe80::/10");
+
+	private final Network[] trustedProxies;
+	private final boolean remoteLookupFallback;
+
+	/**
+	 * @param String
+	 *            comma separated addresses and CIDR networks of trusted
+	 *            proxies, empty if there are none
+	 * @param boolean whether the wan address of the server is used for clients
+	 *        on private networks
+	 */
+	public ClientAddressResolver(String trustedProxies,
+			boolean remoteLookupFallback) {
+		this.trustedProxies = parseNetworks(trustedProxies);
+		this.remoteLookupFallback = remoteLookupFallback;
+	}
+
+	/**
+	 * Resolves the client address of the request
+	 *
+	 * @param HttpServletRequest
+	 *            incoming request
+	 * @return String ip4 or ip6 address of the client
+	 */
+	public String resolve(HttpServletRequest request) {
+		String client = strip(request.getRemoteAddr());
+		if (trustedProxies.length == 0 || !isTrustedProxy(client)) {
+			return client;
+		}
+
+		List<String> hops = request.getHeader(FORWARDED) != null ? forwardedHops(request
+				.getHeaders(FORWARDED)) : forwardedForHops(request
+				.getHeaders(X_FORWARDED_FOR));
+		for (int i = hops.size() - 1; i >= 0; i--) {
+			String hop = strip(hops.get(i));
+			if (!isAddress(hop)) {
+				// unknown, obfuscated or garbage, nothing beyond is reliable
+				break;
+			}
+			client = hop;
+			if (!isTrustedProxy(hop)) {
+				break;
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * @param String
+	 *            resolved client address
+	 * @return boolean true if the wan address of the server should be looked
+	 *         up instead, i.e. the fallback is enabled and the client is on a
+	 *         private network
+	 */
+	public boolean isRemoteLookupNeeded(String clientAddress) {
+		return remoteLookupFallback && matches(PRIVATE_NETWORKS, clientAddress);
+	}
+
+	private boolean isTrustedProxy(String address) {
+		return matches(trustedProxies, address);
+	}
+
+	private static boolean matches(Network[] networks, String address) {
+		long[] parsed = new long[2];
+		if (!toIp6(address, parsed)) {
+			return false;
+		}
+		for (Network network : networks) {
+			if (network.contains(parsed[Ip6Parser.HIGH], parsed[Ip6Parser.LOW])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAddress(String address) {
+		return toIp6(address, new long[2]);
+	}
+
+	/**
+	 * Parses an ip4 address into its ip4-mapped ip6 form, or an ip6 address
+	 */
+	private static boolean toIp6(String address, long[] parsed) {
+		long ip4Address = Ip4Parser.parse(address);
+		if (ip4Address != Ip4Parser.INVALID) {
+			parsed[Ip6Parser.HIGH] = 0;
+			parsed[Ip6Parser.LOW] = 0xFFFFL << 32 | ip4Address;
+			return true;
+		}
+		return Ip6Parser.parse(address, parsed);
+	}
+
+	/**
+	 * Removes quotes, brackets, port and zone id around an address
+	 */
+	static String strip(String address) {
+		if (address == null) {
+			return "";
+		}
+		String stripped = address.trim();
+		if (stripped.length() > 1 && stripped.startsWith("\"")
+				&& stripped.endsWith("\"")) {
+			stripped = stripped.substring(1, stripped.length() - 1);
+		}
+		if (stripped.startsWith("[")) {
+			int end = stripped.indexOf(']');
+			stripped = end < 0 ? stripped : stripped.substring(1, end);
+		} else if (stripped.indexOf(':') == stripped.lastIndexOf(':')
+				&& stripped.indexOf(':') > 0) {
+			// ip4 address with port
+			stripped = stripped.substring(0, stripped.indexOf(':'));
+		}
+		int zone = stripped.indexOf('%');
+		return zone < 0 ? stripped : stripped.substring(0, zone);
+	}
+
+	/**
+	 * Hops of X-Forwarded-For headers, client first
+	 */
+	private static List<String> forwardedForHops(Enumeration<?> headers) {
+		List<String> hops = new ArrayList<String>();
+		while (headers != null && headers.hasMoreElements()) {
+			for (String hop : headers.nextElement().toString().split(",")) {
+				hops.add(hop);
+			}
+		}
+		return hops;
+	}
+
+	/**
+	 * For parameters of Forwarded headers (RFC 7239), client first, an
+	 * element without for parameter is kept as an empty hop
+	 */
+	private static List<String> forwardedHops(Enumeration<?> headers) {
+		List<String> hops = new ArrayList<String>();
+		while (headers != null && headers.hasMoreElements()) {
+			for (String element : headers.nextElement().toString().split(",")) {
+				String hop = "";
+				for (String pair : element.split(";")) {
+					int equals = pair.indexOf('=');
+					if (equals > 0
+							&& "for".equalsIgnoreCase(pair.substring(0, equals)
+									.trim())) {
+						hop = pair.substring(equals + 1);
+					}
+				}
+				hops.add(hop);
+			}
+		}
+		return hops;
+	}
+
+	private static Network[] parseNetworks(String networks) {
+		List<Network> parsed = new ArrayList<Network>();
+		if (networks != null) {
+			for (String network : networks.split(",")) {
+				if (network.trim().length() > 0) {
+					parsed.add(Network.parse(network.trim()));
+				}
+			}
+		}
+		return parsed.toArray(new Network[parsed.size()]);
+	}
+
+	/**
+	 * Address block in ip6 form, ip4 blocks are ip4-mapped
+	 *
+	 */
+	private static final class Network {
+		private final long high;
+		private final long low;
+		private final long highMask;
+		private final long lowMask;
+
+		private Network(long high, long low, int prefixLength) {
+			this.highMask = mask(prefixLength);
+			this.lowMask = mask(prefixLength - 64);
+			this.high = high & highMask;
+			this.low = low & lowMask;
+		}
+
+		private static long mask(int prefixLength) {
+			if (prefixLength <= 0) {
+				return 0L;
+			}
+			return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+		}
+
+		static Network parse(String network) {
+			int slash = network.indexOf('/');
+			String address = slash < 0 ? network : network.substring(0, slash);
+			long[] parsed = new long[2];
+			boolean ip4 = Ip4Parser.parse(address) != Ip4Parser.INVALID;
+			int maxLength = ip4 ? 32 : 128;
+			int prefixLength = maxLength;
+			try {
+				if (slash >= 0) {
+					prefixLength = Integer.parseInt(network.substring(slash + 1));
+				}
+			} catch (NumberFormatException nfe) {
+				prefixLength = -1;
+			}
+			if (!toIp6(address, parsed) || prefixLength < 0
+					|| prefixLength > maxLength) {
+				throw new IllegalArgumentException(String.format(
+						"invalid trusted proxy: %s", network));
+			}
+			return new Network(parsed[Ip6Parser.HIGH], parsed[Ip6Parser.LOW],
+					ip4 ? prefixLength + 96 : prefixLength);
+		}
+
+		boolean contains(long otherHigh, long otherLow) {
+			return (otherHigh & highMask) == high && (otherLow & lowMask) == low;
+		}
+	}
+}
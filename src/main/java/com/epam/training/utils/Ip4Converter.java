@@ -3,7 +3,8 @@ package com.epam.training.utils;
 import org.springframework.stereotype.Service;
 
 /**
- * Class for converting string ip4 addresses to double format (DB11 database)
+ * Class for converting string ip4 addresses to the DB11 database format, an
+ * unsigned 32 bit number
  * 
  * @author Ferenc Kis
  * @version 1.1
@@ -16,9 +17,39 @@ public class Ip4Converter {
 	 * 
 	 * @param String
 	 *            ip4Address to convert
+	 * @return long converted ip address, Ip4Parser.INVALID if the address is
+	 *         not valid
+	 * @see Ip4Parser
+	 */
+	public long convertFromStringToLong(String ip4Address) {
+		return Ip4Parser.parse(ip4Address);
+	}
+
+	/**
+	 * Converts ip address to DB11 format Valid addresses are parsed in a
+	 * single pass, anything else is converted leniently as before
+	 * 
+	 * @param String
+	 *            ip4Address to convert
 	 * @return double converted ip address
+	 * @see Ip4Parser
+	 * @deprecated use {@link #convertFromStringToLong(String)}
 	 */
+	@Deprecated
 	public double convertFromStringToDouble(String ip4Address) {
+		long address = Ip4Parser.parse(ip4Address);
+		if (address != Ip4Parser.INVALID) {
+			return address;
+		}
+		return convertLeniently(ip4Address);
+	}
+
+	/**
+	 * Converts each dot separated number modulo 256, 0 if any of them is not a
+	 * number
+	 * 
+	 */
+	private double convertLeniently(String ip4Address) {
 		double num = 0;
 		if (ip4Address == null || ip4Address.equals("")) {
 			num = 0;
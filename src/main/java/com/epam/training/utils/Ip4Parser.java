@@ -0,0 +1,89 @@
+package com.epam.training.utils;
+
+/**
+ * Single pass parser for dotted-quad ip4 addresses Validates and converts in
+ * one scan without allocating. Accepts the same strings as the former
+ * validator regexp: four dot separated decimal octets of 1-3 digits, each at
+ * most 255, leading zeros allowed.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class Ip4Parser {
+
+	/** Returned for strings that are not valid ip4 addresses */
+	public static final long INVALID = -1L;
+
+	private static final int MIN_LENGTH = 7;
+	private static final int MAX_LENGTH = 15;
+
+	private Ip4Parser() {
+	}
+
+	/**
+	 * Parses an ip4 address
+	 * 
+	 * @param CharSequence
+	 *            ip4 address in dotted-quad format
+	 * @return long unsigned 32 bit address or INVALID
+	 */
+	public static long parse(CharSequence ip4Address) {
+		if (ip4Address == null) {
+			return INVALID;
+		}
+		return parse(ip4Address, 0, ip4Address.length());
+	}
+
+	/**
+	 * Parses an ip4 address embedded in a longer sequence
+	 * 
+	 * @param CharSequence
+	 *            sequence containing the address
+	 * @param int index of the first character of the address
+	 * @param int index after the last character of the address
+	 * @return long unsigned 32 bit address or INVALID
+	 */
+	public static long parse(CharSequence sequence, int start, int end) {
+		int length = end - start;
+		if (length < MIN_LENGTH || length > MAX_LENGTH) {
+			return INVALID;
+		}
+
+		long address = 0;
+		int octet = 0;
+		int digits = 0;
+		int dots = 0;
+		for (int i = start; i < end; i++) {
+			char c = sequence.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > 3) {
+					return INVALID;
+				}
+				octet = octet * 10 + (c - '0');
+			} else if (c == '.') {
+				if (digits == 0 || octet > 255 || ++dots > 3) {
+					return INVALID;
+				}
+				address = (address << 8) | octet;
+				octet = 0;
+				digits = 0;
+			} else {
+				return INVALID;
+			}
+		}
+
+		if (digits == 0 || octet > 255 || dots != 3) {
+			return INVALID;
+		}
+		return (address << 8) | octet;
+	}
+
+	/**
+	 * @param CharSequence
+	 *            ip4 address in dotted-quad format
+	 * @return boolean validation result
+	 */
+	public static boolean isValid(CharSequence ip4Address) {
+		return parse(ip4Address) != INVALID;
+	}
+}
@@ -0,0 +1,247 @@
+package com.epam.training.utils;
+
+/**
+ * Single pass parser for ip6 addresses Validates and converts without
+ * allocating. A 128 bit address is carried in two longs, the high and the low
+ * 64 bits, written into a caller supplied long[2].
+ *
+ * Accepted forms: eight groups of 1-4 hex digits, one "::" standing for one
+ * or more zero groups, and a dotted-quad ip4 address in place of the last two
+ * groups (e.g. ::ffff:192.168.0.1). Zone ids and brackets are not accepted.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class Ip6Parser {
+
+	public static final int HIGH = 0;
+	public static final int LOW = 1;
+
+	private static final int GROUPS = 8;
+	private static final int MAX_LENGTH = 45;
+	private static final int MAX_DECIMAL_DIGITS = 39;
+
+	/** Largest high part that can be multiplied by 10 without overflow */
+	private static final long MAX_HIGH_BEFORE_TIMES_TEN = 0x1999999999999999L;
+
+	/** High 96 bits of ip4-mapped addresses are 0:0:0:0:0:ffff */
+	private static final long IP4_MAPPED_LOW_PREFIX = 0xFFFFL << 32;
+
+	private Ip6Parser() {
+	}
+
+	/**
+	 * Parses an ip6 address
+	 *
+	 * @param CharSequence
+	 *            ip6 address in hex group format
+	 * @param long[] receives the high and low 64 bits
+	 * @return boolean false if the address is not valid, address is left
+	 *         undefined
+	 */
+	public static boolean parse(CharSequence ip6Address, long[] address) {
+		if (ip6Address == null) {
+			return false;
+		}
+		int length = ip6Address.length();
+		if (length < 2 || length > MAX_LENGTH) {
+			return false;
+		}
+
+		// groups before "::" collect in head, groups after it in tail
+		long headHigh = 0;
+		long headLow = 0;
+		long tailHigh = 0;
+		long tailLow = 0;
+		int headCount = 0;
+		int tailCount = 0;
+		boolean compressed = false;
+
+		int i = 0;
+		if (ip6Address.charAt(0) == ':') {
+			if (ip6Address.charAt(1) != ':') {
+				return false;
+			}
+			compressed = true;
+			i = 2;
+		}
+
+		while (i < length) {
+			int start = i;
+			int group = 0;
+			int digits = 0;
+			int digit;
+			while (i < length && (digit = hexDigit(ip6Address.charAt(i))) >= 0) {
+				group = (group << 4) | digit;
+				digits++;
+				i++;
+			}
+
+			if (i < length && ip6Address.charAt(i) == '.') {
+				// embedded ip4 address, takes the last two groups
+				long ip4Address = Ip4Parser.parse(ip6Address, start, length);
+				if (ip4Address == Ip4Parser.INVALID
+						|| headCount + tailCount > GROUPS - 2) {
+					return false;
+				}
+				if (compressed) {
+					tailHigh = (tailHigh << 32) | (tailLow >>> 32);
+					tailLow = (tailLow << 32) | ip4Address;
+					tailCount += 2;
+				} else {
+					headHigh = (headHigh << 32) | (headLow >>> 32);
+					headLow = (headLow << 32) | ip4Address;
+					headCount += 2;
+				}
+				break;
+			}
+
+			if (digits == 0 || digits > 4
+					|| headCount + tailCount == GROUPS) {
+				return false;
+			}
+			if (compressed) {
+				tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+				tailLow = (tailLow << 16) | group;
+				tailCount++;
+			} else {
+				headHigh = (headHigh << 16) | (headLow >>> 48);
+				headLow = (headLow << 16) | group;
+				headCount++;
+			}
+
+			if (i == length) {
+				break;
+			}
+			if (ip6Address.charAt(i++) != ':' || i == length) {
+				return false;
+			}
+			if (ip6Address.charAt(i) == ':') {
+				if (compressed) {
+					return false;
+				}
+				compressed = true;
+				i++;
+			}
+		}
+
+		int count = headCount + tailCount;
+		if (compressed ? count > GROUPS - 1 : count != GROUPS) {
+			return false;
+		}
+
+		// head groups are the leading ones, shift them over the zero groups
+		int shift = 16 * (GROUPS - headCount);
+		if (shift == 128) {
+			headHigh = 0;
+			headLow = 0;
+		} else if (shift >= 64) {
+			headHigh = headLow << (shift - 64);
+			headLow = 0;
+		} else if (shift > 0) {
+			headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+			headLow = headLow << shift;
+		}
+
+		address[HIGH] = headHigh | tailHigh;
+		address[LOW] = headLow | tailLow;
+		return true;
+	}
+
+	/**
+	 * Parses an unsigned decimal number of at most 128 bits, the ip6 format
+	 * of the IP2Location csv files
+	 *
+	 * @param CharSequence
+	 *            decimal digits
+	 * @param long[] receives the high and low 64 bits
+	 * @return boolean false if not a number or too large
+	 */
+	public static boolean parseDecimal(CharSequence decimal, long[] address) {
+		int length = decimal.length();
+		if (length == 0 || length > MAX_DECIMAL_DIGITS) {
+			return false;
+		}
+
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < length; i++) {
+			int digit = decimal.charAt(i) - '0';
+			if (digit < 0 || digit > 9
+					|| unsignedGreater(high, MAX_HIGH_BEFORE_TIMES_TEN)) {
+				return false;
+			}
+
+			// times 10 as times 8 plus times 2
+			long low8 = low << 3;
+			long low2 = low << 1;
+			long nextLow = low8 + low2;
+			long nextHigh = ((high << 3) | (low >>> 61))
+					+ ((high << 1) | (low >>> 63))
+					+ (unsignedGreater(low8, nextLow) ? 1 : 0);
+			if (unsignedGreater(high, nextHigh)) {
+				return false;
+			}
+
+			low = nextLow + digit;
+			if (unsignedGreater(nextLow, low)) {
+				nextHigh++;
+				if (nextHigh == 0) {
+					return false;
+				}
+			}
+			high = nextHigh;
+		}
+
+		address[HIGH] = high;
+		address[LOW] = low;
+		return true;
+	}
+
+	/**
+	 * @return boolean true for ::ffff:a.b.c.d addresses
+	 */
+	public static boolean isIp4Mapped(long high, long low) {
+		return high == 0 && (low & ~0xFFFFFFFFL) == IP4_MAPPED_LOW_PREFIX;
+	}
+
+	/**
+	 * @return long the ip4 address of an ip4-mapped address
+	 */
+	public static long toIp4Address(long low) {
+		return low & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Unsigned 128 bit comparison
+	 *
+	 * @return int negative, zero or positive like Comparable
+	 */
+	public static int compare(long high1, long low1, long high2, long low2) {
+		if (high1 != high2) {
+			return (high1 ^ Long.MIN_VALUE) < (high2 ^ Long.MIN_VALUE) ? -1
+					: 1;
+		}
+		if (low1 != low2) {
+			return (low1 ^ Long.MIN_VALUE) < (low2 ^ Long.MIN_VALUE) ? -1 : 1;
+		}
+		return 0;
+	}
+
+	private static boolean unsignedGreater(long a, long b) {
+		return (a ^ Long.MIN_VALUE) > (b ^ Long.MIN_VALUE);
+	}
+
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+}
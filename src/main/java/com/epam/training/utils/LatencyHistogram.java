@@ -0,0 +1,164 @@
+package com.epam.training.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with log-linear buckets
+ *
+ * Values below 32 have a bucket each, above that every power of two is split
+ * into 32 buckets, so a recorded value is known within about 3 percent over
+ * the whole long range, in a fixed 15 KB array. Recording is a bucket index
+ * computation and an atomic increment, no allocation, no lock. Counts are
+ * cumulative since creation or the last reset.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS)
+			* SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration, negative durations are recorded as 0
+	 *
+	 * @param long duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(indexOf(value));
+		sum.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Counts of the buckets at this moment
+	 *
+	 * Concurrent recordings may be partly included, the snapshot is
+	 * consistent with itself.
+	 *
+	 * @return Snapshot
+	 */
+	public Snapshot getSnapshot() {
+		long[] snapshotCounts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshotCounts[i] = counts.get(i);
+			count += snapshotCounts[i];
+		}
+		return new Snapshot(snapshotCounts, count, sum.get(), max.get());
+	}
+
+	/**
+	 * Clears all counts, recordings made during the reset may be lost
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		sum.set(0);
+		max.set(0);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+				- SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS)
+				+ (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+	}
+
+	/**
+	 * Highest value counted in the bucket
+	 */
+	static long highestValueOf(int index) {
+		int group = index >>> SUB_BUCKET_BITS;
+		if (group == 0) {
+			return index;
+		}
+		long lowest = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << (group - 1);
+		return lowest + (1L << (group - 1)) - 1;
+	}
+
+	/**
+	 * Immutable view of the histogram
+	 *
+	 */
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return long sum of the recorded durations in nanoseconds
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return long longest recorded duration in nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return double mean duration in nanoseconds, 0 if empty
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * Duration not exceeded by the given fraction of the recordings,
+		 * rounded up to the end of its bucket and capped by the maximum
+		 *
+		 * @param double
+		 *            quantile between 0 and 1
+		 * @return long duration in nanoseconds, 0 if empty
+		 */
+		public long getValueAt(double quantile) {
+			if (quantile < 0 || quantile > 1) {
+				throw new IllegalArgumentException(String.format(
+						"quantile must be between 0 and 1: %s", quantile));
+			}
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highestValueOf(i), max);
+				}
+			}
+			return max;
+		}
+	}
+}
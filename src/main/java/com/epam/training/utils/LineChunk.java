@@ -0,0 +1,130 @@
+package com.epam.training.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped part of a text file owning the lines starting inside it
+ *
+ * A file is split into chunks of a fixed size, each chunk is mapped with the
+ * byte before it, which tells whether the chunk starts with a line, and with
+ * MAX_LINE_LENGTH bytes after it, where its last line ends. The lines of a
+ * chunk lie between from and to, offsets in the mapped buffer, so the chunks
+ * can be mapped and parsed independently, on any thread.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class LineChunk {
+
+	/** Longest accepted line, also the overlap mapped after each chunk */
+	public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	private final MappedByteBuffer buffer;
+	private final long offset;
+	private final int from;
+	private final int to;
+
+	private LineChunk(MappedByteBuffer buffer, long offset, int from, int to) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Maps the chunk of the file between start and end
+	 *
+	 * @param FileChannel
+	 *            channel of the file
+	 * @param long size of the file
+	 * @param long first byte of the chunk
+	 * @param long byte after the chunk
+	 * @return LineChunk chunk with the lines starting inside it
+	 *
+	 * @exception IOException
+	 *                on IO error, or if the last line of the chunk is longer
+	 *                than MAX_LINE_LENGTH
+	 */
+	public static LineChunk map(FileChannel channel, long size, long start,
+			long end) throws IOException {
+		long mapStart = start == 0 ? 0 : start - 1;
+		long mapEnd = Math.min(size, end + MAX_LINE_LENGTH);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+				mapStart, mapEnd - mapStart);
+
+		int from = (int) (start - mapStart);
+		if (start > 0 && buffer.get(0) != '\n') {
+			// the first line belongs to the previous chunk
+			from = lineEnd(buffer, from) + 1;
+		}
+		int to = (int) (end - mapStart);
+		if (to > from && buffer.get(to - 1) != '\n') {
+			// the last line is completed from the overlap
+			int eol = lineEnd(buffer, to);
+			if (eol == buffer.limit() && mapEnd < size) {
+				throw new IOException(String.format(
+						"line at offset %d is longer than %d bytes", mapStart
+								+ lineStart(buffer, from, to - 1),
+						MAX_LINE_LENGTH));
+			}
+			to = Math.min(buffer.limit(), eol + 1);
+		}
+		return new LineChunk(buffer, mapStart, Math.min(from, to), to);
+	}
+
+	private static int lineStart(MappedByteBuffer buffer, int from, int last) {
+		int pos = last;
+		while (pos > from && buffer.get(pos - 1) != '\n') {
+			pos--;
+		}
+		return pos;
+	}
+
+	private static int lineEnd(MappedByteBuffer buffer, int from) {
+		int pos = from;
+		while (pos < buffer.limit() && buffer.get(pos) != '\n') {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @return MappedByteBuffer mapped bytes, the lines are between getFrom()
+	 *         and getTo()
+	 */
+	public MappedByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return long file offset of the first mapped byte
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return int start of the first line in the buffer
+	 */
+	public int getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return int end of the last line in the buffer, after its line feed
+	 */
+	public int getTo() {
+		return to;
+	}
+
+	/**
+	 * @param int start of a line of the chunk
+	 * @return int position of the line feed ending the line, getTo() if the
+	 *         last line of the file has none
+	 */
+	public int lineEnd(int pos) {
+		return Math.min(to, lineEnd(buffer, pos));
+	}
+}
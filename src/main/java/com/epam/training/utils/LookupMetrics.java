@@ -0,0 +1,222 @@
+package com.epam.training.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Latency of the lookup stages and counts of the lookup outcomes
+ *
+ * Every stage has a LatencyHistogram, every outcome an atomic counter, so
+ * recording costs a System.nanoTime() call and a few atomic updates, without
+ * allocation or locking. Stages are timed back to back: record returns the
+ * end of the stage, which is the start of the next one. Exposed over JMX and
+ * as plain text on /metrics.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@ManagedResource(description = "Lookup latency and outcomes")
+public class LookupMetrics {
+
+	/**
+	 * Timed stages of a lookup
+	 */
+	public enum Stage {
+		/** ip4 validation, and ip6 parsing of addresses that are not ip4 */
+		VALIDATION,
+		/** ip4 string to long conversion */
+		CONVERSION,
+		/** dao lookup, through the location cache if there is one */
+		DAO_LOOKUP,
+		/** wan ip address of the server, cached by UrlMyIpDao */
+		MYIP_FETCH,
+		/** rendering of the geolocation page */
+		VIEW_RENDER
+	}
+
+	/**
+	 * Outcomes of the looked up addresses
+	 */
+	public enum Outcome {
+		/** location found */
+		HIT,
+		/** address not covered or covered by an unknown location */
+		UNKNOWN_LOCATION,
+		/** not an ip4 or ip6 address */
+		INVALID_INPUT,
+		/** dao or remote service error */
+		UPSTREAM_ERROR,
+		/** rejected by the saturated lookup executor */
+		BUSY
+	}
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[Stage
+			.values().length];
+	private final AtomicLongArray outcomes = new AtomicLongArray(
+			Outcome.values().length);
+
+	public LookupMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records the duration of a stage
+	 *
+	 * @param Stage
+	 *            finished stage
+	 * @param long System.nanoTime() at the start of the stage
+	 * @return long System.nanoTime() at the end of the stage
+	 */
+	public long record(Stage stage, long startNanos) {
+		long endNanos = System.nanoTime();
+		histograms[stage.ordinal()].record(endNanos - startNanos);
+		return endNanos;
+	}
+
+	public void count(Outcome outcome) {
+		outcomes.incrementAndGet(outcome.ordinal());
+	}
+
+	public void count(Outcome outcome, int delta) {
+		if (delta > 0) {
+			outcomes.addAndGet(outcome.ordinal(), delta);
+		}
+	}
+
+	public LatencyHistogram.Snapshot getSnapshot(Stage stage) {
+		return histograms[stage.ordinal()].getSnapshot();
+	}
+
+	public long getCount(Outcome outcome) {
+		return outcomes.get(outcome.ordinal());
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text format, durations in seconds
+	 *
+	 * @param Writer
+	 *            destination of the text
+	 * @exception IOException
+	 *                on write error
+	 */
+	public void writeText(Writer writer) throws IOException {
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("# HELP geolocation_stage_seconds Duration of the lookup stages\n");
+		sb.append("# TYPE geolocation_stage_seconds summary\n");
+		for (Stage stage : Stage.values()) {
+			String label = stage.name().toLowerCase(Locale.ROOT);
+			LatencyHistogram.Snapshot snapshot = getSnapshot(stage);
+			for (double quantile : QUANTILES) {
+				sb.append("geolocation_stage_seconds{stage=\"").append(label)
+						.append("\",quantile=\"").append(quantile)
+						.append("\"} ")
+						.append(toSeconds(snapshot.getValueAt(quantile)))
+						.append('\n');
+			}
+			sb.append("geolocation_stage_seconds_sum{stage=\"").append(label)
+					.append("\"} ").append(toSeconds(snapshot.getSum()))
+					.append('\n');
+			sb.append("geolocation_stage_seconds_count{stage=\"")
+					.append(label).append("\"} ").append(snapshot.getCount())
+					.append('\n');
+		}
+		sb.append("# HELP geolocation_stage_max_seconds Longest duration of the lookup stages\n");
+		sb.append("# TYPE geolocation_stage_max_seconds gauge\n");
+		for (Stage stage : Stage.values()) {
+			sb.append("geolocation_stage_max_seconds{stage=\"")
+					.append(stage.name().toLowerCase(Locale.ROOT))
+					.append("\"} ")
+					.append(toSeconds(getSnapshot(stage).getMax()))
+					.append('\n');
+		}
+		sb.append("# HELP geolocation_lookups_total Looked up addresses by outcome\n");
+		sb.append("# TYPE geolocation_lookups_total counter\n");
+		for (Outcome outcome : Outcome.values()) {
+			sb.append("geolocation_lookups_total{outcome=\"")
+					.append(outcome.name().toLowerCase(Locale.ROOT))
+					.append("\"} ")
+					.append(getCount(outcome)).append('\n');
+		}
+		writer.write(sb.toString());
+	}
+
+	private static double toSeconds(long nanos) {
+		return nanos / 1e9;
+	}
+
+	@ManagedAttribute(description = "Number of addresses found")
+	public long getHits() {
+		return getCount(Outcome.HIT);
+	}
+
+	@ManagedAttribute(description = "Number of addresses not covered or covered by an unknown location")
+	public long getUnknownLocations() {
+		return getCount(Outcome.UNKNOWN_LOCATION);
+	}
+
+	@ManagedAttribute(description = "Number of invalid addresses")
+	public long getInvalidInputs() {
+		return getCount(Outcome.INVALID_INPUT);
+	}
+
+	@ManagedAttribute(description = "Number of lookups failed on a dao or remote service error")
+	public long getUpstreamErrors() {
+		return getCount(Outcome.UPSTREAM_ERROR);
+	}
+
+	@ManagedAttribute(description = "Number of lookups rejected by the saturated lookup executor")
+	public long getBusyRejections() {
+		return getCount(Outcome.BUSY);
+	}
+
+	@ManagedAttribute(description = "count, mean, p50, p90, p99, p999 and max of the stages in microseconds")
+	public String[] getStageSummaries() {
+		Stage[] stages = Stage.values();
+		String[] summaries = new String[stages.length];
+		for (int i = 0; i < stages.length; i++) {
+			LatencyHistogram.Snapshot snapshot = getSnapshot(stages[i]);
+			summaries[i] = String.format(Locale.ROOT,
+					"%s count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f",
+					stages[i].name().toLowerCase(Locale.ROOT),
+					snapshot.getCount(),
+					snapshot.getMean() / 1e3,
+					snapshot.getValueAt(0.5) / 1e3,
+					snapshot.getValueAt(0.9) / 1e3,
+					snapshot.getValueAt(0.99) / 1e3,
+					snapshot.getValueAt(0.999) / 1e3,
+					snapshot.getMax() / 1e3);
+		}
+		return summaries;
+	}
+
+	@ManagedOperation(description = "Duration of a stage not exceeded by the given fraction of the recordings, in microseconds")
+	@ManagedOperationParameters({
+			@ManagedOperationParameter(name = "stage", description = "validation, conversion, dao_lookup, myip_fetch or view_render"),
+			@ManagedOperationParameter(name = "quantile", description = "fraction between 0 and 1") })
+	public double getStageLatencyMicros(String stage, double quantile) {
+		return getSnapshot(Stage.valueOf(stage.toUpperCase(Locale.ROOT)))
+				.getValueAt(quantile) / 1e3;
+	}
+
+	@ManagedOperation(description = "Clears all histograms and counters")
+	public void reset() {
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		for (int i = 0; i < outcomes.length(); i++) {
+			outcomes.set(i, 0);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.epam.training.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the tasks of a sequential input on a thread pool, results are taken
+ * in submission order
+ *
+ * At most two tasks per thread are submitted ahead of the caller taking the
+ * results, so the input is read ahead just enough to keep the threads busy,
+ * and only a few results are held in memory. Closing shuts the pool down.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class ReadAheadQueue<T> implements AutoCloseable {
+
+	private final ExecutorService executor;
+	private final int capacity;
+	private final Deque<Future<T>> pending = new ArrayDeque<>();
+
+	/**
+	 * @param int number of threads
+	 */
+	public ReadAheadQueue(int threadCount) {
+		this.executor = Executors.newFixedThreadPool(threadCount);
+		this.capacity = 2 * threadCount;
+	}
+
+	/**
+	 * @return boolean true if no more tasks should be submitted before a
+	 *         result is taken
+	 */
+	public boolean isFull() {
+		return pending.size() >= capacity;
+	}
+
+	public boolean isEmpty() {
+		return pending.isEmpty();
+	}
+
+	public void submit(Callable<T> task) {
+		pending.add(executor.submit(task));
+	}
+
+	/**
+	 * Waits for the result of the earliest submitted task
+	 *
+	 * @return T result of the task
+	 *
+	 * @exception ExecutionException
+	 *                if the task failed
+	 * @exception InterruptedException
+	 *                if the caller is interrupted while waiting
+	 */
+	public T take() throws ExecutionException, InterruptedException {
+		return pending.poll().get();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
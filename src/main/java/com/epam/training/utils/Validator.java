@@ -1,8 +1,5 @@
 package com.epam.training.utils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.springframework.stereotype.Service;
 
 /**
@@ -14,23 +11,15 @@ import org.springframework.stereotype.Service;
 @Service
 public class Validator {
 
-	private static final String IP4_VALIDATOR_REGEXP = "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$";
-
 	/**
 	 * Validates ip addresses against IP4 format
 	 * 
 	 * @param String
 	 *            ip address
 	 * @return boolean validation result
+	 * @see Ip4Parser
 	 */
 	public boolean validateIp4String(String ip4Address) {
-		if (ip4Address == null || ip4Address.equals("")) {
-			return false;
-		}
-
-		Pattern pattern = Pattern.compile(IP4_VALIDATOR_REGEXP);
-		Matcher matcher = pattern.matcher(ip4Address);
-
-		return matcher.matches();
+		return Ip4Parser.isValid(ip4Address);
 	}
 }
@@ -0,0 +1,105 @@
+package com.epam.training.utils.trace;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Timed step of a traced request
+ *
+ * Type, name and detail are kept as given and only joined when the trace is
+ * written, so starting a span costs an allocation and a System.nanoTime()
+ * call. The parent may have been started on another thread, e.g. the request
+ * thread of a lookup run on the lookup executor.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class Span {
+	private final Trace trace;
+	private final Span parent;
+	private final int depth;
+	private final Class<?> type;
+	private final String name;
+	private final String detail;
+	private final String threadName;
+	private final long startNanos;
+	private volatile long endNanos;
+	private volatile String error;
+
+	Span(Trace trace, Span parent, Class<?> type, String name, String detail,
+			long startNanos) {
+		this.trace = trace;
+		this.parent = parent;
+		this.depth = parent == null ? 0 : parent.depth + 1;
+		this.type = type;
+		this.name = name;
+		this.detail = detail;
+		this.threadName = Thread.currentThread().getName();
+		this.startNanos = startNanos;
+	}
+
+	void end(long endNanos, Throwable throwable) {
+		if (throwable != null) {
+			error = throwable.getClass().getSimpleName();
+		}
+		this.endNanos = endNanos;
+	}
+
+	Trace getTrace() {
+		return trace;
+	}
+
+	Span getParent() {
+		return parent;
+	}
+
+	int getDepth() {
+		return depth;
+	}
+
+	String getThreadName() {
+		return threadName;
+	}
+
+	long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * @return long System.nanoTime() at the end of the span, 0 while running
+	 */
+	long getEndNanos() {
+		return endNanos;
+	}
+
+	/**
+	 * @return String simple class name of the error ending the span, null on
+	 *         success
+	 */
+	String getError() {
+		return error;
+	}
+
+	/**
+	 * @return String request id of the trace, null if the request is not
+	 *         sampled
+	 */
+	public String getRequestId() {
+		return trace == null ? null : trace.getRequestId();
+	}
+
+	/**
+	 * Type.name detail, e.g. SortedRangeLocationDao.findRange or GET
+	 * /api/v1/location/81.182.1.2
+	 */
+	public String getDescription() {
+		StringBuilder sb = new StringBuilder(64);
+		if (type != null) {
+			sb.append(ClassUtils.getUserClass(type).getSimpleName()).append('.');
+		}
+		sb.append(name);
+		if (detail != null) {
+			sb.append(' ').append(detail);
+		}
+		return sb.toString();
+	}
+}
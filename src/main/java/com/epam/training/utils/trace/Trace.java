@@ -0,0 +1,94 @@
+package com.epam.training.utils.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spans of a sampled request
+ *
+ * A trace is finished when its root span has ended and every task it handed
+ * to an executor has run, that is when the last reference is released. Spans
+ * beyond MAX_SPANS are timed but not kept.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public final class Trace {
+
+	static final int MAX_SPANS = 256;
+
+	private final String requestId;
+	private final long startMillis;
+	private final List<Span> spans = new ArrayList<Span>();
+	private final AtomicInteger references = new AtomicInteger(1);
+	private int droppedSpans;
+	private volatile long durationNanos;
+
+	Trace(String requestId) {
+		this.requestId = requestId;
+		this.startMillis = System.currentTimeMillis();
+	}
+
+	synchronized void add(Span span) {
+		if (spans.size() < MAX_SPANS) {
+			spans.add(span);
+		} else {
+			droppedSpans++;
+		}
+	}
+
+	void retain() {
+		references.incrementAndGet();
+	}
+
+	/**
+	 * @return boolean true if the last reference is released and the trace is
+	 *         finished
+	 */
+	boolean release() {
+		if (references.decrementAndGet() != 0) {
+			return false;
+		}
+		long endNanos = 0;
+		long startNanos;
+		synchronized (this) {
+			startNanos = spans.get(0).getStartNanos();
+			for (Span span : spans) {
+				endNanos = Math.max(endNanos, span.getEndNanos());
+			}
+		}
+		durationNanos = Math.max(0, endNanos - startNanos);
+		return true;
+	}
+
+	public String getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @return long System.currentTimeMillis() at the start of the trace
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * @return long from the start of the root span to the end of the last
+	 *         span in nanoseconds, set when the trace is finished
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return List copy of the kept spans in start order, the root span first
+	 */
+	public synchronized List<Span> getSpans() {
+		return new ArrayList<Span>(spans);
+	}
+
+	synchronized int getDroppedSpans() {
+		return droppedSpans;
+	}
+}
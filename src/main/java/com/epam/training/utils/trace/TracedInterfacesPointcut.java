@@ -0,0 +1,66 @@
+package com.epam.training.utils.trace;
+
+import java.lang.reflect.Method;
+
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+
+/**
+ * Pointcut matching the methods of the given interfaces on the classes
+ * implementing them
+ *
+ * Other public methods of the implementations, e.g. JMX attributes, are not
+ * matched. Matches are cached per method by Spring AOP, so the lookups below
+ * run once per proxied method.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class TracedInterfacesPointcut extends StaticMethodMatcherPointcut {
+
+	private final Class<?>[] interfaces;
+
+	/**
+	 * @param Class
+	 *            [] traced interfaces
+	 */
+	public TracedInterfacesPointcut(Class<?>[] interfaces) {
+		this.interfaces = interfaces.clone();
+		setClassFilter(new ClassFilter() {
+			@Override
+			public boolean matches(Class<?> clazz) {
+				return implementsTraced(clazz);
+			}
+		});
+	}
+
+	@Override
+	public boolean matches(Method method, Class<?> targetClass) {
+		for (Class<?> tracedInterface : interfaces) {
+			if (tracedInterface.isAssignableFrom(targetClass)
+					&& declares(tracedInterface, method)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean implementsTraced(Class<?> clazz) {
+		for (Class<?> tracedInterface : interfaces) {
+			if (tracedInterface.isAssignableFrom(clazz)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean declares(Class<?> tracedInterface, Method method) {
+		try {
+			tracedInterface.getMethod(method.getName(),
+					method.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException nsme) {
+			return false;
+		}
+	}
+}
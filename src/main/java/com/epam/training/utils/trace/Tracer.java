@@ -0,0 +1,436 @@
+package com.epam.training.utils.trace;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Sampled tracing of requests, keeping the slowest traces in memory
+ *
+ * The sampling decision is made when a span is started on a thread without a
+ * current span: a sampled request gets a Trace, an unsampled one a marker, so
+ * spans of unsampled requests cost a ThreadLocal lookup only. Spans follow
+ * executor tasks wrapped by wrap. Finished traces slower than the fastest
+ * kept one replace it, the slowest slowestCount traces are written as text
+ * on /admin/traces and returned over JMX. No collector, nothing is sent or
+ * written to disk.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@ManagedResource(description = "Slowest sampled request traces")
+public class Tracer {
+
+	/** Current span of the threads of unsampled requests */
+	private static final Span UNSAMPLED = new Span(null, null, null, null,
+			null, 0);
+
+	private static final Comparator<Trace> BY_DURATION = new Comparator<Trace>() {
+		@Override
+		public int compare(Trace t1, Trace t2) {
+			long d1 = t1.getDurationNanos();
+			long d2 = t2.getDurationNanos();
+			return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+		}
+	};
+
+	private final ThreadLocal<Span> currentSpan = new ThreadLocal<Span>();
+	private final String requestIdPrefix = Long.toString(
+			System.currentTimeMillis(), 36) + "-";
+	private final AtomicLong requestIdSequence = new AtomicLong();
+	private final AtomicLong finishedTraces = new AtomicLong();
+	private final int slowestCount;
+	/** Fastest kept trace on top, guarded by itself */
+	private final PriorityQueue<Trace> slowestTraces;
+	/** Duration of the fastest kept trace once slowestCount traces are kept */
+	private volatile long thresholdNanos = -1;
+	private volatile double sampleRate;
+
+	/**
+	 * @param double
+	 *            fraction of the requests traced, 0 for none, 1 for all
+	 * @param int
+	 *            number of slowest traces kept
+	 */
+	public Tracer(double sampleRate, int slowestCount) {
+		setSampleRate(sampleRate);
+		if (slowestCount < 1) {
+			throw new IllegalArgumentException(String.format(
+					"slowest count must be positive: %s", slowestCount));
+		}
+		this.slowestCount = slowestCount;
+		this.slowestTraces = new PriorityQueue<Trace>(slowestCount + 1,
+				BY_DURATION);
+	}
+
+	/**
+	 * Starts the root span of a request, or a child span if the thread is
+	 * already traced
+	 *
+	 * @param String
+	 *            name of the span, e.g. the http method
+	 * @param String
+	 *            detail of the span, e.g. the request uri
+	 * @param String
+	 *            request id of the caller, a new one is generated if null
+	 * @return Span started span, to be ended by endSpan on the same thread
+	 */
+	public Span startTrace(String name, String detail, String requestId) {
+		return start(null, name, detail, requestId);
+	}
+
+	/**
+	 * Starts a child span of the current span, or the root span of a new
+	 * request if the thread is not traced
+	 *
+	 * @param Class
+	 *            class of the called object, null if none
+	 * @param String
+	 *            name of the span, e.g. the called method
+	 * @param String
+	 *            detail of the span, null if none
+	 * @return Span started span, to be ended by endSpan on the same thread,
+	 *         null if the request is not sampled
+	 */
+	public Span startSpan(Class<?> type, String name, String detail) {
+		return start(type, name, detail, null);
+	}
+
+	private Span start(Class<?> type, String name, String detail,
+			String requestId) {
+		Span parent = currentSpan.get();
+		if (parent == UNSAMPLED) {
+			return null;
+		}
+		Span span;
+		if (parent != null) {
+			span = new Span(parent.getTrace(), parent, type, name, detail,
+					System.nanoTime());
+		} else if (isSampled()) {
+			Trace trace = new Trace(requestId != null ? requestId
+					: requestIdPrefix + requestIdSequence.incrementAndGet());
+			span = new Span(trace, null, type, name, detail, System.nanoTime());
+		} else {
+			currentSpan.set(UNSAMPLED);
+			return UNSAMPLED;
+		}
+		span.getTrace().add(span);
+		currentSpan.set(span);
+		return span;
+	}
+
+	private boolean isSampled() {
+		double rate = sampleRate;
+		return rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	/**
+	 * Ends a span started on this thread, its parent becomes the current span
+	 *
+	 * @param Span
+	 *            span returned by startTrace or startSpan, may be null
+	 * @param Throwable
+	 *            error ending the span, null on success
+	 */
+	public void endSpan(Span span, Throwable error) {
+		if (span == null) {
+			return;
+		}
+		if (span == UNSAMPLED) {
+			currentSpan.remove();
+			return;
+		}
+		span.end(System.nanoTime(), error);
+		Span parent = span.getParent();
+		if (parent != null) {
+			currentSpan.set(parent);
+		} else {
+			currentSpan.remove();
+			release(span.getTrace());
+		}
+	}
+
+	/**
+	 * Detaches the current span from this thread, e.g. when a request is
+	 * continued asynchronously on another thread
+	 *
+	 * @return Span current span, null if none
+	 */
+	public Span suspend() {
+		Span span = currentSpan.get();
+		currentSpan.remove();
+		return span;
+	}
+
+	/**
+	 * Makes a span returned by suspend the current span of this thread
+	 *
+	 * @param Span
+	 *            suspended span, may be null
+	 */
+	public void resume(Span span) {
+		if (span != null) {
+			currentSpan.set(span);
+		}
+	}
+
+	/**
+	 * Wraps a task handed to an executor, so that it runs in the request of
+	 * the submitting thread. The time in the queue and the run of a sampled
+	 * task are recorded as spans, and the trace is not finished before the
+	 * task has run or is cancelled.
+	 *
+	 * @param Runnable
+	 *            task
+	 * @param String
+	 *            name of the spans, e.g. the executor bean name
+	 * @return Runnable wrapped task, the task itself if the thread is not in a
+	 *         request
+	 */
+	public Runnable wrap(Runnable task, String name) {
+		Span parent = currentSpan.get();
+		if (parent == null) {
+			return task;
+		}
+		if (parent != UNSAMPLED) {
+			parent.getTrace().retain();
+		}
+		return new TracedTask(task, parent, name);
+	}
+
+	/**
+	 * Releases a wrapped task that is never going to run, e.g. one rejected
+	 * by the executor
+	 *
+	 * @param Runnable
+	 *            task returned by wrap
+	 * @param Throwable
+	 *            reason of the cancellation
+	 */
+	public void cancel(Runnable task, Throwable reason) {
+		if (task instanceof TracedTask) {
+			((TracedTask) task).cancel(reason);
+		}
+	}
+
+	private void release(Trace trace) {
+		if (!trace.release()) {
+			return;
+		}
+		finishedTraces.incrementAndGet();
+		if (trace.getDurationNanos() <= thresholdNanos) {
+			return;
+		}
+		synchronized (slowestTraces) {
+			slowestTraces.add(trace);
+			if (slowestTraces.size() > slowestCount) {
+				slowestTraces.poll();
+			}
+			if (slowestTraces.size() == slowestCount) {
+				thresholdNanos = slowestTraces.peek().getDurationNanos();
+			}
+		}
+	}
+
+	/**
+	 * @return List kept traces, the slowest first
+	 */
+	public List<Trace> getSlowestTraces() {
+		List<Trace> traces;
+		synchronized (slowestTraces) {
+			traces = new ArrayList<Trace>(slowestTraces);
+		}
+		Collections.sort(traces, Collections.reverseOrder(BY_DURATION));
+		return traces;
+	}
+
+	/**
+	 * Writes the kept traces, the slowest first, one line per span indented
+	 * under its parent: start offset and duration in milliseconds, span,
+	 * thread and error
+	 *
+	 * @param Writer
+	 *            destination of the text
+	 * @exception IOException
+	 *                on write error
+	 */
+	public void writeText(Writer writer) throws IOException {
+		List<Trace> traces = getSlowestTraces();
+		SimpleDateFormat dateFormat = new SimpleDateFormat(
+				"yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append(String.format(Locale.ROOT,
+				"# %d slowest of %d traced requests, sample rate %s\n",
+				traces.size(), finishedTraces.get(), sampleRate));
+		for (Trace trace : traces) {
+			sb.append(String.format(Locale.ROOT,
+					"\ntrace %s started %s took %.3f ms\n",
+					trace.getRequestId(),
+					dateFormat.format(new Date(trace.getStartMillis())),
+					trace.getDurationNanos() / 1e6));
+			sb.append("  start ms     took ms  span [thread]\n");
+			appendSpans(sb, trace);
+		}
+		writer.write(sb.toString());
+	}
+
+	private static void appendSpans(StringBuilder sb, Trace trace) {
+		List<Span> spans = trace.getSpans();
+		Map<Span, List<Span>> children = new HashMap<Span, List<Span>>();
+		for (Span span : spans) {
+			List<Span> siblings = children.get(span.getParent());
+			if (siblings == null) {
+				siblings = new ArrayList<Span>();
+				children.put(span.getParent(), siblings);
+			}
+			siblings.add(span);
+		}
+		appendSpans(sb, children, null, spans.get(0).getStartNanos());
+		if (trace.getDroppedSpans() > 0) {
+			sb.append(String.format(Locale.ROOT, "  %d more spans\n",
+					trace.getDroppedSpans()));
+		}
+	}
+
+	private static void appendSpans(StringBuilder sb,
+			Map<Span, List<Span>> children, Span parent, long traceStartNanos) {
+		List<Span> spans = children.get(parent);
+		if (spans == null) {
+			return;
+		}
+		for (Span span : spans) {
+			long endNanos = span.getEndNanos();
+			sb.append(String.format(Locale.ROOT, "%10.3f  %10s  ",
+					(span.getStartNanos() - traceStartNanos) / 1e6,
+					endNanos == 0 ? "running" : String.format(Locale.ROOT,
+							"%.3f", (endNanos - span.getStartNanos()) / 1e6)));
+			for (int i = 0; i < span.getDepth(); i++) {
+				sb.append("  ");
+			}
+			sb.append(span.getDescription());
+			sb.append(" [").append(span.getThreadName()).append(']');
+			if (span.getError() != null) {
+				sb.append(" error=").append(span.getError());
+			}
+			sb.append('\n');
+			appendSpans(sb, children, span, traceStartNanos);
+		}
+	}
+
+	@ManagedAttribute(description = "Fraction of the requests traced, 0 for none, 1 for all")
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	@ManagedAttribute(description = "Fraction of the requests traced, 0 for none, 1 for all")
+	public void setSampleRate(double sampleRate) {
+		if (sampleRate < 0 || sampleRate > 1) {
+			throw new IllegalArgumentException(String.format(
+					"sample rate must be between 0 and 1: %s", sampleRate));
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	@ManagedAttribute(description = "Number of slowest traces kept")
+	public int getSlowestCount() {
+		return slowestCount;
+	}
+
+	@ManagedAttribute(description = "Number of finished traces since start or the last reset")
+	public long getFinishedTraces() {
+		return finishedTraces.get();
+	}
+
+	@ManagedOperation(description = "Kept traces as text, the slowest first")
+	public String dumpTraces() throws IOException {
+		StringWriter writer = new StringWriter();
+		writeText(writer);
+		return writer.toString();
+	}
+
+	@ManagedOperation(description = "Drops the kept traces")
+	public void reset() {
+		synchronized (slowestTraces) {
+			slowestTraces.clear();
+			thresholdNanos = -1;
+		}
+		finishedTraces.set(0);
+	}
+
+	/**
+	 * Task run in the request of the thread that wrapped it
+	 */
+	private final class TracedTask implements Runnable {
+		private final Runnable task;
+		private final Span parent;
+		private final String name;
+		private final long submitNanos = System.nanoTime();
+
+		TracedTask(Runnable task, Span parent, String name) {
+			this.task = task;
+			this.parent = parent;
+			this.name = name;
+		}
+
+		@Override
+		public void run() {
+			Span previous = currentSpan.get();
+			currentSpan.set(parent);
+			Span span = null;
+			if (parent != UNSAMPLED) {
+				endQueueSpan(null);
+				span = startSpan(null, name, "run");
+			}
+			Throwable error = null;
+			try {
+				task.run();
+			} catch (RuntimeException re) {
+				error = re;
+				throw re;
+			} catch (Error e) {
+				error = e;
+				throw e;
+			} finally {
+				if (span != null) {
+					span.end(System.nanoTime(), error);
+					release(parent.getTrace());
+				}
+				if (previous != null) {
+					currentSpan.set(previous);
+				} else {
+					currentSpan.remove();
+				}
+			}
+		}
+
+		void cancel(Throwable reason) {
+			if (parent != UNSAMPLED) {
+				endQueueSpan(reason);
+				release(parent.getTrace());
+			}
+		}
+
+		private void endQueueSpan(Throwable error) {
+			Span queueSpan = new Span(parent.getTrace(), parent, null, name,
+					"queue", submitNanos);
+			queueSpan.end(System.nanoTime(), error);
+			parent.getTrace().add(queueSpan);
+		}
+	}
+}
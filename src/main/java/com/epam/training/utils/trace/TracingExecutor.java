@@ -0,0 +1,51 @@
+package com.epam.training.utils.trace;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor running the tasks in the request of the submitting thread
+ *
+ * Tasks are wrapped by Tracer.wrap, so the wait in the queue and the run are
+ * recorded as spans of a sampled request. Rejections are passed on to the
+ * caller.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class TracingExecutor implements Executor {
+
+	private final Executor executor;
+	private final Tracer tracer;
+	private final String name;
+
+	/**
+	 * @param Executor
+	 *            executor running the tasks
+	 * @param Tracer
+	 *            tracer of the requests
+	 * @param String
+	 *            name of the spans of the tasks
+	 */
+	public TracingExecutor(Executor executor, Tracer tracer, String name) {
+		this.executor = executor;
+		this.tracer = tracer;
+		this.name = name;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		Runnable tracedTask = tracer.wrap(task, name);
+		try {
+			executor.execute(tracedTask);
+		} catch (RejectedExecutionException ree) {
+			tracer.cancel(tracedTask, ree);
+			throw ree;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return executor.toString();
+	}
+}
@@ -0,0 +1,35 @@
+package com.epam.training.utils.trace;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Advice recording the calls of the proxied beans as spans of the current
+ * request, named after the target class and the method
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class TracingMethodInterceptor implements MethodInterceptor {
+
+	private final Tracer tracer;
+
+	public TracingMethodInterceptor(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Span span = tracer.startSpan(invocation.getThis().getClass(),
+				invocation.getMethod().getName(), null);
+		Throwable error = null;
+		try {
+			return invocation.proceed();
+		} catch (Throwable t) {
+			error = t;
+			throw t;
+		} finally {
+			tracer.endSpan(span, error);
+		}
+	}
+}
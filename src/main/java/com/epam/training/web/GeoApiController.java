@@ -0,0 +1,329 @@
+package com.epam.training.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
+import com.epam.training.exception.ErrorInfo;
+import com.epam.training.exception.ErrorInfo.ErrorType;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
+import com.epam.training.service.LocationService;
+import com.epam.training.utils.AccessLog;
+
+/**
+ * Controller class - entry point for JSON clients Serving /api/v1 requests
+ * Responses are streamed with a JsonGenerator, no view is resolved. Single
+ * lookups are asynchronous, the container thread is released while the
+ * location is looked up.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@Controller
+@RequestMapping("/api/v1")
+public class GeoApiController {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(GeoApiController.class);
+
+	private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+	private static final String DEFAULT_ERROR = "Ooops... Something went wrong, please check error log!";
+	private static final String BUSY_ERROR = "Server is busy, please try again later";
+	private static final MediaType JSON_TYPE = MediaType
+			.parseMediaType(CONTENT_TYPE);
+
+	/** Addresses resolved with one service call while streaming */
+	private static final int CHUNK_SIZE = 1000;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/** Answer of the lookups timing out, built once */
+	private static final ResponseEntity<byte[]> BUSY_ENTITY = toErrorEntity(
+			HttpServletResponse.SC_SERVICE_UNAVAILABLE, BUSY_ERROR);
+
+	@Autowired
+	private LocationService locationService;
+
+	@Autowired
+	private AccessLog accessLog;
+
+	/**
+	 * Method for processing GET requests Returns the location of a single ip
+	 * address The lookup runs on the lookup executor, the response is
+	 * written when it completes, or as service busy on timeout.
+	 *
+	 * @param String
+	 *            ip4 address path variable
+	 * @return DeferredResult JSON object response, set by the lookup
+	 * @see AppException
+	 */
+	@RequestMapping(value = "/location/{ip:.+}", method = RequestMethod.GET)
+	public DeferredResult<ResponseEntity<byte[]>> getLocation(
+			@PathVariable("ip") final String address) {
+
+		final long startNanos = System.nanoTime();
+		final DeferredResult<ResponseEntity<byte[]>> deferredResult = new DeferredResult<ResponseEntity<byte[]>>(
+				null, BUSY_ENTITY);
+
+		locationService.getLocationAsync(address,
+				new LocationCallback<LocationEntity>() {
+					public void onSuccess(LocationEntity locationEntity) {
+						if (locationEntity.isUnknownLocation()) {
+							AppException ae = new ClientErrorException();
+							ae.addInfo(ErrorInfoFactory
+									.getIllegalReturnErrorInfo(
+											"GeoApiController",
+											"ip address was not found in database - maybe local or sensitive",
+											"IP address was not found - maybe local or sensitive",
+											"ipAddress", address));
+							onFailure(ae);
+							return;
+						}
+						try {
+							ByteArrayOutputStream json = new ByteArrayOutputStream(
+									256);
+							try (JsonGenerator generator = createGenerator(json)) {
+								writeLocation(generator, locationEntity);
+							}
+							deferredResult.setResult(toEntity(HttpStatus.OK,
+									json.toByteArray()));
+							accessLog.log("api", address, locationEntity, null,
+									startNanos);
+						} catch (IOException ioe) {
+							deferredResult.setResult(toErrorEntity(
+									HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+									DEFAULT_ERROR));
+							LOG.error("{}", ioe);
+						}
+					}
+
+					public void onFailure(AppException ae) {
+						accessLog.log("api", address, null, ae, startNanos);
+						deferredResult.setResult(toErrorEntity(
+								getStatus(ae),
+								"".equals(ae.getUserLog()) ? DEFAULT_ERROR : ae
+										.getUserLog()));
+						if (ae.isClientError()) {
+							LOG.debug("{}", ae);
+						} else {
+							LOG.error("{}", ae);
+						}
+					}
+				});
+
+		return deferredResult;
+	}
+
+	/**
+	 * Method for processing POST requests Reads a JSON array of ip addresses
+	 * and streams back a JSON array of locations in the same order, null for
+	 * invalid or unknown addresses. The request is resolved in chunks and
+	 * every chunk is flushed as soon as it is resolved.
+	 *
+	 * @param HttpServletRequest
+	 *            request containing the JSON array
+	 * @param HttpServletResponse
+	 *            response to write the JSON array to
+	 * @see AppException
+	 */
+	@RequestMapping(value = "/locations", method = RequestMethod.POST)
+	public void getLocations(HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+
+		JsonGenerator generator = null;
+		try (JsonParser parser = JSON_FACTORY.createJsonParser(request
+				.getInputStream())) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new JsonParseException("JSON array expected",
+						parser.getCurrentLocation());
+			}
+
+			List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+			JsonToken token;
+			do {
+				token = parser.nextToken();
+				if (token == JsonToken.VALUE_STRING) {
+					chunk.add(parser.getText());
+				} else if (token == JsonToken.VALUE_NULL) {
+					chunk.add(null);
+				} else if (token != JsonToken.END_ARRAY) {
+					throw new JsonParseException(
+							"JSON array of strings expected",
+							parser.getCurrentLocation());
+				}
+
+				if (chunk.size() == CHUNK_SIZE
+						|| (token == JsonToken.END_ARRAY && !chunk.isEmpty())) {
+					List<LocationEntity> locationEntities = locationService
+							.getLocations(chunk);
+					if (generator == null) {
+						generator = startArray(response);
+					}
+					for (LocationEntity locationEntity : locationEntities) {
+						writeLocation(generator, locationEntity);
+					}
+					generator.flush();
+					chunk.clear();
+				}
+			} while (token != JsonToken.END_ARRAY);
+
+			if (generator == null) {
+				generator = startArray(response);
+			}
+			generator.writeEndArray();
+		} catch (JsonParseException jpe) {
+			handleError(response, generator, HttpServletResponse.SC_BAD_REQUEST,
+					"Please provide a JSON array of IP addresses", jpe);
+		} catch (AppException ae) {
+			handleError(response, generator,
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+					DEFAULT_ERROR, ae);
+		} finally {
+			if (generator != null) {
+				generator.close();
+			}
+		}
+	}
+
+	private JsonGenerator createGenerator(HttpServletResponse response)
+			throws IOException {
+		return createGenerator(response.getOutputStream());
+	}
+
+	private static JsonGenerator createGenerator(OutputStream out)
+			throws IOException {
+		JsonGenerator generator = JSON_FACTORY.createJsonGenerator(out,
+				JsonEncoding.UTF8);
+		// an interrupted stream must not look like a complete array
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+		return generator;
+	}
+
+	private JsonGenerator startArray(HttpServletResponse response)
+			throws IOException {
+		response.setContentType(CONTENT_TYPE);
+		JsonGenerator generator = createGenerator(response);
+		generator.writeStartArray();
+		return generator;
+	}
+
+	/**
+	 * Reports an error as JSON if nothing was streamed yet, otherwise the
+	 * response is left unterminated. Malformed requests are client errors,
+	 * logged at debug level only.
+	 *
+	 */
+	private void handleError(HttpServletResponse response,
+			JsonGenerator generator, int status, String message, Exception e)
+			throws IOException {
+		if (generator == null) {
+			writeError(response, status, message);
+		}
+		if (status == HttpServletResponse.SC_BAD_REQUEST) {
+			LOG.debug("{}", e);
+		} else {
+			LOG.error("{}", e);
+		}
+	}
+
+	/**
+	 * Maps the errors of the exception to a http status code
+	 *
+	 */
+	private int getStatus(AppException ae) {
+		for (ErrorInfo errorInfo : ae.getErrorInfoList()) {
+			if ("ServiceBusyError".equals(errorInfo.getErrorId())) {
+				return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+			}
+			if (errorInfo.getErrorType() == ErrorType.CLIENT_ERROR) {
+				return "IllegalReturnError".equals(errorInfo.getErrorId()) ? HttpServletResponse.SC_NOT_FOUND
+						: HttpServletResponse.SC_BAD_REQUEST;
+			}
+		}
+		return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+	}
+
+	private void writeError(HttpServletResponse response, int status,
+			String message) throws IOException {
+		response.setStatus(status);
+		response.setContentType(CONTENT_TYPE);
+		try (JsonGenerator generator = createGenerator(response)) {
+			generator.writeStartObject();
+			generator.writeStringField("error", message);
+			generator.writeEndObject();
+		}
+	}
+
+	private static ResponseEntity<byte[]> toEntity(HttpStatus status,
+			byte[] json) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(JSON_TYPE);
+		return new ResponseEntity<byte[]>(json, headers, status);
+	}
+
+	private static ResponseEntity<byte[]> toErrorEntity(int status,
+			String message) {
+		ByteArrayOutputStream json = new ByteArrayOutputStream(128);
+		try (JsonGenerator generator = createGenerator(json)) {
+			generator.writeStartObject();
+			generator.writeStringField("error", message);
+			generator.writeEndObject();
+		} catch (IOException ioe) {
+			// not thrown by in-memory streams
+			throw new IllegalStateException(ioe);
+		}
+		return toEntity(HttpStatus.valueOf(status), json.toByteArray());
+	}
+
+	private void writeLocation(JsonGenerator generator,
+			LocationEntity locationEntity) throws IOException {
+		if (locationEntity == null || locationEntity.isUnknownLocation()) {
+			generator.writeNull();
+			return;
+		}
+
+		generator.writeStartObject();
+		generator.writeStringField("ip4Address",
+				locationEntity.getIp4Address());
+		generator.writeStringField("countryCode",
+				locationEntity.getCountryCode());
+		generator.writeStringField("countryName",
+				locationEntity.getCountryName());
+		generator.writeStringField("regionName",
+				locationEntity.getRegionName());
+		generator.writeStringField("cityName", locationEntity.getCityName());
+		generator.writeNumberField("latitude", locationEntity.getLatitude());
+		generator.writeNumberField("longitude", locationEntity.getLongitude());
+		generator.writeStringField("zipCode", locationEntity.getZipCode());
+		generator.writeStringField("timeZone", locationEntity.getTimeZone());
+		generator.writeEndObject();
+	}
+}
@@ -4,6 +4,8 @@ import java.text.DateFormat;
 import java.util.Date;
 import java.util.Locale;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,11 +15,17 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
 
 import com.epam.training.domain.LocationEntity;
 import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
 import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
 import com.epam.training.service.LocationService;
+import com.epam.training.utils.AccessLog;
+import com.epam.training.utils.ClientAddressResolver;
 
 /**
  * Controller class - entry point for web clients Serving / requests
@@ -32,72 +40,152 @@ public class GeoController {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(GeoController.class);
 
+	private static final String VIEW_NAME = "geolocation";
+	private static final String DEFAULT_ERROR = "Ooops... Something went wrong, please check error log!";
+	private static final String BUSY_ERROR = "Server is busy, please try again later";
+
 	@Autowired
 	private LocationService locationService;
 
+	@Autowired
+	private ClientAddressResolver clientAddressResolver;
+
+	@Autowired
+	private AccessLog accessLog;
+
 	/**
 	 * Method for processing GET requests Exactly for calculating ip address
-	 * location
+	 * location The lookups run on the lookup executor, the page is rendered
+	 * when they complete, or with a busy message on timeout.
 	 * 
 	 * @param String
 	 *            request paramter ip4Address
+	 * @param HttpServletRequest
+	 *            current request, its client address is used without
+	 *            ip4Address
 	 * @param Locale
 	 *            current locale
 	 * @param Model
 	 *            model for jsp page
+	 * @return DeferredResult view with the location, set by the lookup
 	 * @see AppException
 	 */
 	@RequestMapping(method = RequestMethod.GET)
-	public String setupForm(
+	public DeferredResult<ModelAndView> setupForm(
 			@RequestParam(value = "ip4Address", required = false) String address,
-			Locale locale, Model model) {
+			HttpServletRequest request, Locale locale, Model model) {
 
-		LocationEntity locationEntity = null;
+		final long startNanos = System.nanoTime();
+		final DeferredResult<ModelAndView> deferredResult = new DeferredResult<ModelAndView>();
+		deferredResult.onTimeout(new Runnable() {
+			public void run() {
+				deferredResult.setResult(toView(null, BUSY_ERROR));
+			}
+		});
 		try {
 			// getting actual date for top right corner
 			DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.LONG,
 					locale);
 			String todaysDate = dateFormat.format(new Date());
 			model.addAttribute("date", todaysDate);
-			LOG.info("Today's date is {}", todaysDate);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Today's date is {}", todaysDate);
+			}
 
 			// low level check - if parameter is missing,
-			// local client wan ip will be used
-			String ipAddress = null;
-			ipAddress = (StringUtils.hasText(address)) ? address
-					: locationService.getMyIpAddress();
-			LOG.info("Getting location for IP {}", ipAddress);
-
-			// getting ip location
-			locationEntity = locationService.getLocation(ipAddress);
-			if (locationEntity.isUnknownLocation()) {
-				AppException ae = new AppException();
-				ae.addInfo(ErrorInfoFactory
-						.getIllegalReturnErrorInfo(
-								"GeoController",
-								"ip address was not found in database - maybe local or sensitive",
-								"IP address was not found - maybe local or sensitive",
-								"ipAddress", ipAddress));
-				throw ae;
+			// address of the client will be used
+			if (StringUtils.hasText(address)) {
+				getLocation(address, deferredResult, startNanos);
+			} else {
+				final String ipAddress = clientAddressResolver.resolve(request);
+				if (clientAddressResolver.isRemoteLookupNeeded(ipAddress)) {
+					locationService
+							.getMyIpAddressAsync(new LocationCallback<String>() {
+								public void onSuccess(String myIpAddress) {
+									getLocation(myIpAddress, deferredResult,
+											startNanos);
+								}
+
+								public void onFailure(AppException ae) {
+									setError(deferredResult, ae, ipAddress,
+											startNanos);
+								}
+							});
+				} else {
+					getLocation(ipAddress, deferredResult, startNanos);
+				}
 			}
-		} catch (AppException ae) {
-			model.addAttribute(
-					"exception",
-					"".equals(ae.getUserLog()) ? "Ooops... Something went wrong, please check error log!"
-							: ae.getUserLog());
-			LOG.error("{}", ae);
 		} catch (Throwable t) {
-			model.addAttribute("exception",
-					"Ooops... Something went wrong, please check error log!");
+			deferredResult.setResult(toView(null, DEFAULT_ERROR));
 			LOG.error("{}", t);
-		} finally {
-			if (locationEntity == null) {
-				locationEntity = new LocationEntity();
-			}
-			model.addAttribute("location", locationEntity);
-			LOG.info("Found location is {}", locationEntity);
 		}
 
-		return "geolocation";
+		return deferredResult;
+	}
+
+	/**
+	 * Starts the lookup of the address, the result is set by the callback
+	 * 
+	 */
+	private void getLocation(final String ipAddress,
+			final DeferredResult<ModelAndView> deferredResult,
+			final long startNanos) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Getting location for IP {}", ipAddress);
+		}
+
+		locationService.getLocationAsync(ipAddress,
+				new LocationCallback<LocationEntity>() {
+					public void onSuccess(LocationEntity locationEntity) {
+						if (locationEntity.isUnknownLocation()) {
+							AppException ae = new ClientErrorException();
+							ae.addInfo(ErrorInfoFactory
+									.getIllegalReturnErrorInfo(
+											"GeoController",
+											"ip address was not found in database - maybe local or sensitive",
+											"IP address was not found - maybe local or sensitive",
+											"ipAddress", ipAddress));
+							onFailure(ae);
+							return;
+						}
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Found location is {}", locationEntity);
+						}
+						accessLog.log("page", ipAddress, locationEntity, null,
+								startNanos);
+						deferredResult.setResult(toView(locationEntity, null));
+					}
+
+					public void onFailure(AppException ae) {
+						setError(deferredResult, ae, ipAddress, startNanos);
+					}
+				});
+	}
+
+	private void setError(DeferredResult<ModelAndView> deferredResult,
+			AppException ae, String ipAddress, long startNanos) {
+		accessLog.log("page", ipAddress, null, ae, startNanos);
+		if (ae.isClientError()) {
+			LOG.debug("{}", ae);
+		} else {
+			LOG.error("{}", ae);
+		}
+		deferredResult.setResult(toView(null,
+				"".equals(ae.getUserLog()) ? DEFAULT_ERROR : ae.getUserLog()));
+	}
+
+	/**
+	 * Geolocation page with the location, an empty one if not found, and the
+	 * error message if any
+	 * 
+	 */
+	private ModelAndView toView(LocationEntity locationEntity, String exception) {
+		ModelAndView modelAndView = new ModelAndView(VIEW_NAME);
+		if (exception != null) {
+			modelAndView.addObject("exception", exception);
+		}
+		modelAndView.addObject("location",
+				locationEntity == null ? new LocationEntity() : locationEntity);
+		return modelAndView;
 	}
 }
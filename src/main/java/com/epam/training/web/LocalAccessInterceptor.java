@@ -0,0 +1,63 @@
+package com.epam.training.web;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Interceptor answering 403 to requests of the given controllers unless they
+ * come from the loopback interface
+ *
+ * The operational pages, e.g. /metrics, are matched by their controller, so
+ * every url mapped to them is covered. The address of the connection is
+ * checked and forwarding headers are ignored, so a reverse proxy on the same
+ * host passes every request: it has to deny these urls itself.
+ *
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class LocalAccessInterceptor extends HandlerInterceptorAdapter {
+
+	private List<Class<?>> handlerTypes = Collections.emptyList();
+
+	/**
+	 * @param List
+	 *            controllers served to local clients only
+	 */
+	public void setHandlerTypes(List<Class<?>> handlerTypes) {
+		this.handlerTypes = handlerTypes;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws IOException {
+		if (!(handler instanceof HandlerMethod)
+				|| !handlerTypes.contains(ClassUtils
+						.getUserClass(((HandlerMethod) handler).getBeanType()))
+				|| isLoopback(request.getRemoteAddr())) {
+			return true;
+		}
+		response.sendError(HttpServletResponse.SC_FORBIDDEN);
+		return false;
+	}
+
+	private static boolean isLoopback(String address) {
+		if (address == null) {
+			return false;
+		}
+		try {
+			return InetAddress.getByName(address).isLoopbackAddress();
+		} catch (UnknownHostException uhe) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.epam.training.web;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.epam.training.utils.LookupMetrics;
+
+/**
+ * Controller class - serving /metrics requests Writes the lookup latencies
+ * and outcomes of LookupMetrics as plain text in the Prometheus text format
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@Controller
+@RequestMapping("/metrics")
+public class MetricsController {
+
+	private static final String CONTENT_TYPE = "text/plain;version=0.0.4;charset=UTF-8";
+
+	@Autowired
+	private LookupMetrics lookupMetrics;
+
+	/**
+	 * Method for processing GET requests Writes all metrics
+	 * 
+	 * @param HttpServletResponse
+	 *            response to write the metrics to
+	 */
+	@RequestMapping(method = RequestMethod.GET)
+	public void getMetrics(HttpServletResponse response) throws IOException {
+		response.setContentType(CONTENT_TYPE);
+		lookupMetrics.writeText(response.getWriter());
+	}
+}
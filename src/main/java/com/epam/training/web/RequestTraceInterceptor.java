@@ -0,0 +1,99 @@
+package com.epam.training.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.epam.training.utils.trace.Span;
+import com.epam.training.utils.trace.Tracer;
+
+/**
+ * Interceptor starting the trace of a request, see /admin/traces
+ * 
+ * The root span is named after the method and the uri and carries the
+ * X-Request-Id of the caller, or a generated one returned in the response.
+ * Asynchronous requests are suspended when the handler returns and resumed
+ * in the async dispatch, which renders the view in a span of its own.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class RequestTraceInterceptor extends HandlerInterceptorAdapter {
+
+	static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+	private static final int MAX_REQUEST_ID_LENGTH = 64;
+	private static final String ROOT_ATTRIBUTE = RequestTraceInterceptor.class
+			.getName() + ".root";
+	private static final String RENDER_ATTRIBUTE = RequestTraceInterceptor.class
+			.getName() + ".render";
+
+	@Autowired
+	private Tracer tracer;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		Object root = request.getAttribute(ROOT_ATTRIBUTE);
+		if (root instanceof Span) {
+			tracer.resume((Span) root);
+			return true;
+		}
+		Span span = tracer.startTrace(request.getMethod(),
+				request.getRequestURI(), getRequestId(request));
+		if (span != null) {
+			request.setAttribute(ROOT_ATTRIBUTE, span);
+			if (span.getRequestId() != null) {
+				response.setHeader(REQUEST_ID_HEADER, span.getRequestId());
+			}
+		}
+		return true;
+	}
+
+	private static String getRequestId(HttpServletRequest request) {
+		String requestId = request.getHeader(REQUEST_ID_HEADER);
+		if (requestId == null || requestId.trim().isEmpty()) {
+			return null;
+		}
+		requestId = requestId.trim();
+		return requestId.length() > MAX_REQUEST_ID_LENGTH ? requestId
+				.substring(0, MAX_REQUEST_ID_LENGTH) : requestId;
+	}
+
+	@Override
+	public void postHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler,
+			ModelAndView modelAndView) {
+		if (modelAndView != null && modelAndView.hasView()) {
+			Span span = tracer.startSpan(null, "render",
+					modelAndView.getViewName());
+			if (span != null) {
+				request.setAttribute(RENDER_ATTRIBUTE, span);
+			}
+		}
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		tracer.suspend();
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request,
+			HttpServletResponse response, Object handler, Exception ex) {
+		Object render = request.getAttribute(RENDER_ATTRIBUTE);
+		if (render instanceof Span) {
+			request.removeAttribute(RENDER_ATTRIBUTE);
+			tracer.endSpan((Span) render, ex);
+		}
+		Object root = request.getAttribute(ROOT_ATTRIBUTE);
+		if (root instanceof Span) {
+			request.removeAttribute(ROOT_ATTRIBUTE);
+			tracer.endSpan((Span) root, ex);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.epam.training.web;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.epam.training.utils.trace.Tracer;
+
+/**
+ * Controller class - serving /admin/traces requests Writes the slowest
+ * sampled request traces kept by the Tracer as plain text, one line per span
+ * Traces hold the request uris, served to local clients only, see
+ * LocalAccessInterceptor
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+@Controller
+@RequestMapping("/admin/traces")
+public class TraceController {
+
+	private static final String CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+	@Autowired
+	private Tracer tracer;
+
+	/**
+	 * Method for processing GET requests Writes the kept traces, the slowest
+	 * first
+	 * 
+	 * @param HttpServletResponse
+	 *            response to write the traces to
+	 */
+	@RequestMapping(method = RequestMethod.GET)
+	public void getTraces(HttpServletResponse response) throws IOException {
+		response.setContentType(CONTENT_TYPE);
+		tracer.writeText(response.getWriter());
+	}
+}
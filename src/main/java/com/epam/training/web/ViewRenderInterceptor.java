@@ -0,0 +1,49 @@
+package com.epam.training.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.LookupMetrics.Stage;
+
+/**
+ * Interceptor timing the rendering of views for LookupMetrics
+ * 
+ * Rendering starts after postHandle and ends before afterCompletion. Results
+ * of asynchronous requests are rendered in the async dispatch, where both are
+ * called again, responses written without a view are not timed.
+ * 
+ * @author Ferenc Kis
+ * @version 1.1
+ */
+public class ViewRenderInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String START_ATTRIBUTE = ViewRenderInterceptor.class
+			.getName() + ".startNanos";
+
+	@Autowired
+	private LookupMetrics lookupMetrics;
+
+	@Override
+	public void postHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler,
+			ModelAndView modelAndView) {
+		if (modelAndView != null && modelAndView.hasView()) {
+			request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+		}
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request,
+			HttpServletResponse response, Object handler, Exception ex) {
+		Object startNanos = request.getAttribute(START_ATTRIBUTE);
+		if (startNanos instanceof Long) {
+			request.removeAttribute(START_ATTRIBUTE);
+			lookupMetrics.record(Stage.VIEW_RENDER, (Long) startNanos);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.epam.training;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.Assert;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.LocationService;
+
+public class ApplicationContextTest {
+
+	/** Context of the web application, as loaded by the CLI */
+	private ClassPathXmlApplicationContext context;
+
+	/** Embedded database the context connects to */
+	private JdbcTemplate jdbcTemplate;
+
+	/** Constants */
+	private static final String JDBC_URL = "jdbc:h2:mem:applicationcontexttest;DB_CLOSE_DELAY=-1";
+	private static final String VALID_IP4_ADDRESS = "192.168.100.199";
+
+	@Before
+	public void setup() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				JDBC_URL, "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		ResourceDatabasePopulator setup = new ResourceDatabasePopulator();
+		setup.addScript(new FileSystemResource("database/db_setup.sql"));
+		DatabasePopulatorUtils.execute(setup, dataSource);
+		jdbcTemplate.update(
+				"INSERT INTO GEOLOCATION.IPLOCATION VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+				3232261120L, 4294967295L, "HU", "HUNGARY", "CSONGRAD",
+				"SZEGED", 46.253, 20.14824, "6754", "+01:00");
+
+		// system properties override jdbc.properties
+		System.setProperty("jdbc.url", JDBC_URL);
+		context = new ClassPathXmlApplicationContext(
+				"classpath:context-jdbc.xml", "classpath:context-service.xml");
+	}
+
+	@After
+	public void tearDown() {
+		if (context != null) {
+			context.close();
+		}
+		System.clearProperty("jdbc.url");
+		jdbcTemplate.execute("DROP SCHEMA GEOLOCATION");
+		jdbcTemplate.execute("SHUTDOWN");
+	}
+
+	/**
+	 * Test case: load context-jdbc.xml and context-service.xml with the
+	 * default properties and look up an address.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The dao and pool aliases resolve, only the selected pool is
+	 * created.</li>
+	 * <li>The transactional dao is wrapped by the tracing proxy.</li>
+	 * <li>The address is found in the database.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testLookup() throws AppException {
+		Assert.isTrue(context.getBeanFactory().containsSingleton(
+				"dbcpDataSource"));
+		Assert.isTrue(!context.getBeanFactory().containsSingleton(
+				"hikariDataSource"));
+		Assert.isTrue(AopUtils.isCglibProxy(context.getBean("locationDao")));
+		Assert.isTrue(AopUtils.isCglibProxy(context.getBean("dataSource")));
+
+		LocationEntity locationEntity = context.getBean(LocationService.class)
+				.getLocation(VALID_IP4_ADDRESS);
+		Assert.isTrue("HU".equals(locationEntity.getCountryCode()));
+		Assert.isTrue("SZEGED".equals(locationEntity.getCityName()));
+	}
+}
@@ -0,0 +1,104 @@
+package com.epam.training;
+
+import static com.epam.training.LocationsAnswer.INVALID_IP4_ADDRESS;
+import static org.easymock.EasyMock.createMock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.epam.training.cli.BatchLocator;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.LocationService;
+import com.epam.training.service.impl.LocationServiceImpl;
+
+public class BatchLocatorTest {
+
+	/** MOCK class emulating used service */
+	private LocationService locationService;
+
+	/** Constants */
+	private static final int ADDRESS_COUNT = 2500;
+
+	@Before
+	public void setup() throws AppException {
+		locationService = createMock(LocationServiceImpl.class);
+
+		LocationsAnswer.expectLocations(locationService, "SZEGED, BELVAROS");
+	}
+
+	private static String locate(BatchLocator batchLocator, String input,
+			int column, BatchLocator.Format format) throws AppException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		batchLocator.locate(
+				Channels.newChannel(new ByteArrayInputStream(input
+						.getBytes(StandardCharsets.UTF_8))),
+				Channels.newChannel(output), column, format);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Test case: locate many csv lines in small chunks on several threads.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The address is taken from the given column.</li>
+	 * <li>One output line is written per non-empty input line, in input
+	 * order.</li>
+	 * <li>Fields with separators are quoted, invalid addresses have no
+	 * location fields.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testLocate_Csv() throws AppException {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < ADDRESS_COUNT; i++) {
+			input.append(i).append(",\"10.0.0.").append(i).append("\"\n");
+			if (i % 100 == 0) {
+				input.append('\n');
+			}
+		}
+		input.append("x,").append(INVALID_IP4_ADDRESS).append('\n');
+
+		String[] lines = locate(new BatchLocator(locationService, 4, 7),
+				input.toString(), 1, BatchLocator.Format.CSV).split("\n");
+
+		Assert.isTrue(lines.length == ADDRESS_COUNT + 2,
+				"one line per address and a header must be written");
+		Assert.isTrue(lines[0].startsWith("ip4Address,countryCode"));
+		for (int i = 0; i < ADDRESS_COUNT; i++) {
+			Assert.isTrue(lines[i + 1].equals("10.0.0." + i + "," + i
+					+ ",HUNGARY,CSONGRAD,\"SZEGED, BELVAROS\",46.25,20.15,6720,+01:00"),
+					"lines must be written in input order: " + lines[i + 1]);
+		}
+		Assert.isTrue(lines[ADDRESS_COUNT + 1].equals(INVALID_IP4_ADDRESS
+				+ ",,,,,,,,"));
+	}
+
+	/**
+	 * Test case: locate addresses given one per line as JSON Lines.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Every address is written as a JSON object on its own line.</li>
+	 * <li>Invalid addresses are written without location fields.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testLocate_JsonLines() throws AppException {
+		String output = locate(new BatchLocator(locationService, 2,
+				BatchLocator.DEFAULT_CHUNK_SIZE), " 10.0.0.1 \n"
+				+ INVALID_IP4_ADDRESS + "\n", -1, BatchLocator.Format.JSONL);
+
+		Assert.isTrue(output.equals("{\"ip4Address\":\"10.0.0.1\",\"countryCode\":\"1\","
+				+ "\"countryName\":\"HUNGARY\",\"regionName\":\"CSONGRAD\","
+				+ "\"cityName\":\"SZEGED, BELVAROS\",\"latitude\":46.25,"
+				+ "\"longitude\":20.15,\"zipCode\":\"6720\",\"timeZone\":\"+01:00\"}\n"
+				+ "{\"ip4Address\":\"" + INVALID_IP4_ADDRESS + "\"}\n"), output);
+	}
+}
@@ -0,0 +1,271 @@
+package com.epam.training;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResult.DeferredResultHandler;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
+import com.epam.training.service.LocationService;
+import com.epam.training.service.impl.LocationServiceImpl;
+import com.epam.training.utils.AccessLog;
+import com.epam.training.web.GeoApiController;
+
+public class GeoApiControllerTest {
+
+	/** Instance of tested UNIT */
+	private GeoApiController geoApiController;
+
+	/** MOCK classes emulating used services */
+	private LocationService locationService;
+
+	/** Constants */
+	private static final String INVALID_IP4_ADDRESS = "256.256.0.3";
+	private static final String VALID_IP4_ADDRESS = "192.168.100.199";
+
+	@Before
+	public void setup() {
+
+		// instantiate the unit under test:
+		geoApiController = new GeoApiController();
+
+		// create a mock instances
+		locationService = createMock(LocationServiceImpl.class);
+
+		// inject the unit's dependencies as mock object via reflection
+		ReflectionTestUtils.setField(geoApiController, "locationService",
+				locationService);
+		ReflectionTestUtils.setField(geoApiController, "accessLog",
+				new AccessLog(1));
+	}
+
+	/** Mock async location lookup completing with the given outcome */
+	private void expectLocation(String ipAddress,
+			final LocationEntity locationEntity, final AppException exception) {
+		locationService.getLocationAsync(eq(ipAddress),
+				EasyMock.<LocationCallback<LocationEntity>> anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer() {
+				LocationCallback<LocationEntity> callback = (LocationCallback<LocationEntity>) getCurrentArguments()[1];
+				if (exception == null) {
+					callback.onSuccess(locationEntity);
+				} else {
+					callback.onFailure(exception);
+				}
+				return null;
+			}
+		});
+	}
+
+	/** Return the response entity set as result */
+	@SuppressWarnings("unchecked")
+	private ResponseEntity<byte[]> getResult(
+			DeferredResult<ResponseEntity<byte[]>> deferredResult) {
+		final Object[] result = new Object[1];
+		deferredResult.setResultHandler(new DeferredResultHandler() {
+			public void handleResult(Object deferred) {
+				result[0] = deferred;
+			}
+		});
+		return (ResponseEntity<byte[]>) result[0];
+	}
+
+	/** Return location entity with service returned parameters */
+	private LocationEntity getResponseLocationEntity() {
+		LocationEntity locationEntity = new LocationEntity();
+
+		locationEntity.setCityName("BUDAPEST");
+		locationEntity.setCountryCode("HU");
+		locationEntity.setCountryName("HUNGARY");
+		locationEntity.setIp4Address(VALID_IP4_ADDRESS);
+		locationEntity.setLatitude(10.0);
+		locationEntity.setLongitude(5.0);
+		locationEntity.setRegionName("BUDAPEST");
+		locationEntity.setTimeZone("+5:00");
+		locationEntity.setZipCode("1054");
+
+		return locationEntity;
+	}
+
+	/**
+	 * Test case: get location of a valid ip.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Service is invoked properly and the location is written as a JSON
+	 * object with status 200.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_ValidIp() throws IOException {
+		// mock calls
+		expectLocation(VALID_IP4_ADDRESS, getResponseLocationEntity(), null);
+		replay(locationService);
+
+		// controller method call
+		ResponseEntity<byte[]> response = getResult(geoApiController
+				.getLocation(VALID_IP4_ADDRESS));
+
+		verify(locationService);
+
+		Assert.state(response.getStatusCode().value() == 200,
+				"status must be 200");
+		Assert.state(response.getHeaders().getContentType().toString()
+				.startsWith("application/json"), "content type must be JSON");
+		Assert.state(
+				new String(response.getBody(), "UTF-8").equals(
+						"{\"ip4Address\":\"192.168.100.199\",\"countryCode\":\"HU\","
+								+ "\"countryName\":\"HUNGARY\",\"regionName\":\"BUDAPEST\","
+								+ "\"cityName\":\"BUDAPEST\",\"latitude\":10.0,\"longitude\":5.0,"
+								+ "\"zipCode\":\"1054\",\"timeZone\":\"+5:00\"}"),
+				"location must be written as JSON object");
+	}
+
+	/**
+	 * Test case: get location of an invalid ip.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>An error object is written with status 400.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_InvalidIp() throws IOException {
+		AppException mockResponse_Exception = new AppException();
+		mockResponse_Exception.addInfo(ErrorInfoFactory
+				.getIllegalClientParameterErrorInfo("GeoApiControllerTest",
+						"invalid Ip address", "provide a valid ip address",
+						"INVALID_IP4_ADDRESS", INVALID_IP4_ADDRESS));
+
+		// mock calls
+		expectLocation(INVALID_IP4_ADDRESS, null, mockResponse_Exception);
+		replay(locationService);
+
+		// controller method call
+		ResponseEntity<byte[]> response = getResult(geoApiController
+				.getLocation(INVALID_IP4_ADDRESS));
+
+		verify(locationService);
+
+		Assert.state(response.getStatusCode().value() == 400,
+				"status must be 400");
+		Assert.state(
+				new String(response.getBody(), "UTF-8").startsWith("{\"error\":"),
+				"error must be written as JSON object");
+	}
+
+	/**
+	 * Test case: get location while the lookup executor is saturated.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>An error object is written with status 503.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_Busy() throws IOException {
+		AppException mockResponse_Exception = new AppException();
+		mockResponse_Exception.addInfo(ErrorInfoFactory
+				.getServiceBusyErrorInfo("GeoApiControllerTest",
+						"lookup executor is saturated",
+						"Server is busy, please try again later",
+						"lookupExecutor", "executor"));
+
+		// mock calls
+		expectLocation(VALID_IP4_ADDRESS, null, mockResponse_Exception);
+		replay(locationService);
+
+		// controller method call
+		ResponseEntity<byte[]> response = getResult(geoApiController
+				.getLocation(VALID_IP4_ADDRESS));
+
+		verify(locationService);
+
+		Assert.state(response.getStatusCode().value() == 503,
+				"status must be 503");
+	}
+
+	/**
+	 * Test case: post a JSON array of valid and invalid ips.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Service is invoked once for the whole array</li>
+	 * <li>A JSON array is written in input order, null for the invalid ip.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocations_JsonArray() throws AppException, IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST",
+				"/api/v1/locations");
+		request.setContent(("[\"" + VALID_IP4_ADDRESS + "\", \""
+				+ INVALID_IP4_ADDRESS + "\"]").getBytes("UTF-8"));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		// mock calls
+		expect(
+				locationService.getLocations(Arrays.asList(VALID_IP4_ADDRESS,
+						INVALID_IP4_ADDRESS))).andReturn(
+				Arrays.asList(getResponseLocationEntity(), null));
+		replay(locationService);
+
+		// controller method call
+		geoApiController.getLocations(request, response);
+
+		verify(locationService);
+
+		String content = response.getContentAsString();
+		Assert.state(response.getStatus() == 200, "status must be 200");
+		Assert.state(content.startsWith("[{\"ip4Address\":\""
+				+ VALID_IP4_ADDRESS + "\""), "first element must be the location");
+		Assert.state(content.endsWith("},null]"),
+				"second element must be null");
+	}
+
+	/**
+	 * Test case: post something else than a JSON array.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Service is not invoked and status 400 is returned.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocations_NotAnArray() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST",
+				"/api/v1/locations");
+		request.setContent("{\"ip\": 1}".getBytes("UTF-8"));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		replay(locationService);
+
+		// controller method call
+		geoApiController.getLocations(request, response);
+
+		verify(locationService);
+
+		Assert.state(response.getStatus() == 400, "status must be 400");
+	}
+}
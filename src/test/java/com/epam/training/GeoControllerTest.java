@@ -1,24 +1,35 @@
 package com.epam.training;
 
 import static org.easymock.EasyMock.createMock;
-import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
 import java.util.Locale;
 
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.ui.Model;
 import org.springframework.util.Assert;
 import org.springframework.validation.support.BindingAwareModelMap;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResult.DeferredResultHandler;
+import org.springframework.web.servlet.ModelAndView;
 
 import com.epam.training.domain.LocationEntity;
 import com.epam.training.exception.AppException;
 import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
 import com.epam.training.service.LocationService;
 import com.epam.training.service.impl.LocationServiceImpl;
+import com.epam.training.utils.AccessLog;
+import com.epam.training.utils.ClientAddressResolver;
 import com.epam.training.web.GeoController;
 
 public class GeoControllerTest {
@@ -34,6 +45,8 @@ public class GeoControllerTest {
 	private static final String VALID_IP4_ADDRESS = "192.168.100.199";
 	private static final String EMPTY_STRING = "";
 	private static final String MY_ADDRESS = "192.168.100.199";
+	private static final String CLIENT_ADDRESS = "81.182.1.2";
+	private static final String LOCAL_ADDRESS = "127.0.0.1";
 
 	private static final Locale LOCALE = Locale.ENGLISH;
 
@@ -49,6 +62,61 @@ public class GeoControllerTest {
 		// inject the unit's dependencies as mock object via reflection
 		ReflectionTestUtils.setField(geoController, "locationService",
 				locationService);
+		ReflectionTestUtils.setField(geoController, "clientAddressResolver",
+				new ClientAddressResolver("", false));
+		ReflectionTestUtils.setField(geoController, "accessLog",
+				new AccessLog(1));
+	}
+
+	/** Mock async location lookup completing with the given outcome */
+	private void expectLocation(String ipAddress,
+			final LocationEntity locationEntity, final AppException exception) {
+		locationService.getLocationAsync(eq(ipAddress),
+				EasyMock.<LocationCallback<LocationEntity>> anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer() {
+				LocationCallback<LocationEntity> callback = (LocationCallback<LocationEntity>) getCurrentArguments()[1];
+				if (exception == null) {
+					callback.onSuccess(locationEntity);
+				} else {
+					callback.onFailure(exception);
+				}
+				return null;
+			}
+		});
+	}
+
+	/** Mock async wan address lookup */
+	private void expectMyIpAddress(final String myIpAddress) {
+		locationService.getMyIpAddressAsync(EasyMock
+				.<LocationCallback<String>> anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer() {
+				((LocationCallback<String>) getCurrentArguments()[0])
+						.onSuccess(myIpAddress);
+				return null;
+			}
+		});
+	}
+
+	/** Return the model of the view set as result */
+	private Model getResultModel(DeferredResult<ModelAndView> deferredResult) {
+		final Model model = new BindingAwareModelMap();
+		deferredResult.setResultHandler(new DeferredResultHandler() {
+			public void handleResult(Object result) {
+				model.addAllAttributes(((ModelAndView) result).getModel());
+			}
+		});
+		return model;
+	}
+
+	/** Return request coming from the given address */
+	private MockHttpServletRequest getRequest(String remoteAddress) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr(remoteAddress);
+		return request;
 	}
 
 	/** Return location entity with service returned parameters */
@@ -84,28 +152,20 @@ public class GeoControllerTest {
 
 		Model inputModelMap = new BindingAwareModelMap();
 
-		AppException responseException = null;
-
 		// mock calls
-		try {
-			expect(locationService.getLocation(VALID_IP4_ADDRESS)).andReturn(
-					mockResponse_LocationEntity);
-		} catch (AppException ae) {
-			responseException = ae;
-		}
+		expectLocation(VALID_IP4_ADDRESS, mockResponse_LocationEntity, null);
 		replay(locationService);
 
 		// service method call
-		geoController.setupForm(VALID_IP4_ADDRESS, LOCALE, inputModelMap);
+		Model resultModel = getResultModel(geoController.setupForm(
+				VALID_IP4_ADDRESS, getRequest(CLIENT_ADDRESS), LOCALE, inputModelMap));
 
 		verify(locationService);
 
-		Assert.state(inputModelMap.containsAttribute("location"),
+		Assert.state(resultModel.containsAttribute("location"),
 				"service must return location attribute in modelmap");
-		Assert.state(!inputModelMap.containsAttribute("exception"),
+		Assert.state(!resultModel.containsAttribute("exception"),
 				"service is not allowed to return an exception in modelmap");
-		Assert.isNull(responseException,
-				"service is not allowed to return an exception right now");
 
 	}
 
@@ -130,28 +190,20 @@ public class GeoControllerTest {
 
 		Model inputModelMap = new BindingAwareModelMap();
 
-		AppException responseException = null;
-
 		// mock calls
-		try {
-			expect(locationService.getLocation(INVALID_IP4_ADDRESS)).andThrow(
-					mockResponse_Exception);
-		} catch (AppException ae) {
-			responseException = ae;
-		}
+		expectLocation(INVALID_IP4_ADDRESS, null, mockResponse_Exception);
 		replay(locationService);
 
 		// service method call
-		geoController.setupForm(INVALID_IP4_ADDRESS, LOCALE, inputModelMap);
+		Model resultModel = getResultModel(geoController.setupForm(
+				INVALID_IP4_ADDRESS, getRequest(CLIENT_ADDRESS), LOCALE, inputModelMap));
 
 		verify(locationService);
 
-		Assert.state(inputModelMap.containsAttribute("location"),
+		Assert.state(resultModel.containsAttribute("location"),
 				"service must return location attribute in modelmap");
-		Assert.state(inputModelMap.containsAttribute("exception"),
+		Assert.state(resultModel.containsAttribute("exception"),
 				"service must return an exception in modelmap");
-		Assert.isNull(responseException,
-				"service must return an exception right now");
 
 	}
 	
@@ -160,7 +212,8 @@ public class GeoControllerTest {
 	 * 
 	 * Expected results in model map:
 	 * <ul>
-	 * <li>Service is invoked determines client ip</li>
+	 * <li>Client ip is taken from the request, the remote service is not
+	 * called</li>
 	 * <li>and calls location method with this parameter then returns location for it</li>
 	 * <li>Mock service is not allowed to return an exception.</li>
 	 * </ul>
@@ -171,29 +224,58 @@ public class GeoControllerTest {
 		LocationEntity mockResponse_LocationEntity = getResponseLocationEntity();
 
 		Model inputModelMap = new BindingAwareModelMap();
-		AppException responseException = null;
+		// mock calls
+		expectLocation(CLIENT_ADDRESS, mockResponse_LocationEntity, null);
+		replay(locationService);
+
+		// service method call
+		Model resultModel = getResultModel(geoController.setupForm(
+				EMPTY_STRING, getRequest(CLIENT_ADDRESS), LOCALE, inputModelMap));
 
+		verify(locationService);
+
+		Assert.state(resultModel.containsAttribute("location"),
+				"service must return location attribute in modelmap");
+		Assert.state(!resultModel.containsAttribute("exception"),
+				"service is not allowed to return an exception in modelmap");
+
+	}
+
+	/**
+	 * Test case: call location service with emtpy ip from a local client,
+	 * remote lookup fallback enabled.
+	 * 
+	 * Expected results in model map:
+	 * <ul>
+	 * <li>Service is invoked determines wan ip of the server</li>
+	 * <li>and calls location method with this parameter then returns location for it</li>
+	 * <li>Mock service is not allowed to return an exception.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testSetupForm_EmptyIpString_RemoteLookupFallback() {
+		ReflectionTestUtils.setField(geoController, "clientAddressResolver",
+				new ClientAddressResolver("", true));
+
+		// mock return value
+		LocationEntity mockResponse_LocationEntity = getResponseLocationEntity();
+
+		Model inputModelMap = new BindingAwareModelMap();
 		// mock calls
-		try {
-			expect(locationService.getMyIpAddress()).andReturn(MY_ADDRESS);
-			
-			expect(locationService.getLocation(MY_ADDRESS)).andReturn(mockResponse_LocationEntity);
-		} catch (AppException ae) {
-			responseException = ae;
-		}
+		expectMyIpAddress(MY_ADDRESS);
+		expectLocation(MY_ADDRESS, mockResponse_LocationEntity, null);
 		replay(locationService);
 
 		// service method call
-		geoController.setupForm(EMPTY_STRING, LOCALE, inputModelMap);
+		Model resultModel = getResultModel(geoController.setupForm(
+				EMPTY_STRING, getRequest(LOCAL_ADDRESS), LOCALE, inputModelMap));
 
 		verify(locationService);
 
-		Assert.state(inputModelMap.containsAttribute("location"),
+		Assert.state(resultModel.containsAttribute("location"),
 				"service must return location attribute in modelmap");
-		Assert.state(!inputModelMap.containsAttribute("exception"),
+		Assert.state(!resultModel.containsAttribute("exception"),
 				"service is not allowed to return an exception in modelmap");
-		Assert.isNull(responseException,
-				"service is not allowed to return an exception right now");
 
 	}
 }
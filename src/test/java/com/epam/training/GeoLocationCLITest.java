@@ -0,0 +1,66 @@
+package com.epam.training;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.epam.training.cli.GeoLocationCLI;
+import com.epam.training.dao.mapped.LocationFileWriter;
+import com.epam.training.dao.memory.LocationRecord;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+
+public class GeoLocationCLITest {
+
+	/** Binary location database written by the tests */
+	private File locationFile;
+
+	/** Constants */
+	private static final String MAPPED_FILE_PROPERTY = "location.mapped.file";
+	private static final String IP4_ADDRESS = "81.182.1.2";
+
+	@Before
+	public void setup() throws IOException {
+		locationFile = File.createTempFile("geolocationclitest", ".dat");
+		try (LocationFileWriter writer = new LocationFileWriter(locationFile)) {
+			writer.add(0, 1370882047L, new LocationRecord("-", "-", "-", "-",
+					0, 0, "-", "-"));
+			writer.add(1370882048L, 4294967295L, new LocationRecord("HU",
+					"HUNGARY", "BUDAPEST", "BUDAPEST", 47.5, 19.04, "1054",
+					"+01:00"));
+			writer.finish();
+		}
+		System.setProperty(MAPPED_FILE_PROPERTY, locationFile.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(MAPPED_FILE_PROPERTY);
+		locationFile.delete();
+	}
+
+	/**
+	 * Test case: look up an address with a binary location database set by
+	 * location.mapped.file.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The lookup context is loaded and the location is read from the
+	 * mapped file, the database of jdbc.properties is not used.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_MappedFile() throws AppException {
+		LocationEntity locationEntity = new GeoLocationCLI(IP4_ADDRESS)
+				.getLocation();
+
+		Assert.isTrue(IP4_ADDRESS.equals(locationEntity.getIp4Address()));
+		Assert.isTrue("HU".equals(locationEntity.getCountryCode()),
+				"location must be read from the mapped file");
+		Assert.isTrue("BUDAPEST".equals(locationEntity.getCityName()));
+	}
+}
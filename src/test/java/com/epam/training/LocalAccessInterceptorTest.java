@@ -0,0 +1,97 @@
+package com.epam.training;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.method.HandlerMethod;
+
+import com.epam.training.web.GeoApiController;
+import com.epam.training.web.LocalAccessInterceptor;
+import com.epam.training.web.MetricsController;
+import com.epam.training.web.TraceController;
+
+public class LocalAccessInterceptorTest {
+
+	/** Instance of tested UNIT */
+	private LocalAccessInterceptor interceptor;
+
+	/** Handlers of a restricted and an unrestricted url */
+	private HandlerMethod metrics;
+
+	private HandlerMethod traces;
+
+	private HandlerMethod locations;
+
+	/** Constants */
+	private static final String REMOTE_ADDRESS = "81.182.1.2";
+
+	@Before
+	public void setup() throws NoSuchMethodException {
+		interceptor = new LocalAccessInterceptor();
+		interceptor.setHandlerTypes(Arrays.<Class<?>> asList(
+				MetricsController.class, TraceController.class));
+
+		metrics = new HandlerMethod(new MetricsController(), "getMetrics",
+				HttpServletResponse.class);
+		traces = new HandlerMethod(new TraceController(), "getTraces",
+				HttpServletResponse.class);
+		locations = new HandlerMethod(new GeoApiController(), "getLocations",
+				HttpServletRequest.class, HttpServletResponse.class);
+	}
+
+	/**
+	 * Test case: request the restricted controllers from the ip4 and ip6
+	 * loopback addresses.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The requests are served.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testLoopback() throws IOException {
+		for (String address : new String[] { "127.0.0.1", "0:0:0:0:0:0:0:1" }) {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.setRemoteAddr(address);
+			Assert.isTrue(interceptor.preHandle(request,
+					new MockHttpServletResponse(), metrics), address);
+			Assert.isTrue(interceptor.preHandle(request,
+					new MockHttpServletResponse(), traces), address);
+		}
+	}
+
+	/**
+	 * Test case: request a restricted and an unrestricted controller from a
+	 * remote address claiming to forward a loopback client.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The restricted controllers answer 403, the forwarding header is
+	 * ignored.</li>
+	 * <li>The unrestricted controller is served.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testRemote() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr(REMOTE_ADDRESS);
+		request.addHeader("X-Forwarded-For", "127.0.0.1");
+
+		for (HandlerMethod handler : new HandlerMethod[] { metrics, traces }) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			Assert.isTrue(!interceptor.preHandle(request, response, handler));
+			Assert.isTrue(
+					response.getStatus() == HttpServletResponse.SC_FORBIDDEN);
+		}
+		Assert.isTrue(interceptor.preHandle(request,
+				new MockHttpServletResponse(), locations));
+	}
+}
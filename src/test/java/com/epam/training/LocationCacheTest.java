@@ -0,0 +1,226 @@
+package com.epam.training;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.service.cache.RangeLocationCache;
+import com.epam.training.service.cache.TinyLfuLocationCache;
+
+public class LocationCacheTest {
+
+	/** Instance of tested UNIT, with a controllable clock */
+	private TestLocationCache locationCache;
+
+	/** Constants */
+	private static final int MAX_ENTRIES = 1000;
+	private static final long TIME_TO_LIVE_SECONDS = 60;
+	private static final long ONE_SECOND = 1000000000L;
+
+	private static class TestLocationCache extends TinyLfuLocationCache {
+		private long now = 0;
+
+		TestLocationCache(int maxEntries, long timeToLiveSeconds) {
+			super(maxEntries, timeToLiveSeconds);
+		}
+
+		@Override
+		protected long now() {
+			return now;
+		}
+	}
+
+	@Before
+	public void setup() {
+		locationCache = new TestLocationCache(MAX_ENTRIES, TIME_TO_LIVE_SECONDS);
+	}
+
+	private LocationRange getLocationRange(long convertedIp4Address,
+			String cityName) {
+		return new LocationRange(convertedIp4Address, convertedIp4Address,
+				getLocationEntity(cityName));
+	}
+
+	private LocationEntity getLocationEntity(String cityName) {
+		LocationEntity locationEntity = new LocationEntity();
+		locationEntity.setCityName(cityName);
+		locationEntity.setCountryCode("HU");
+		return locationEntity;
+	}
+
+	/**
+	 * Test case: put an entity and get it back, modify the returned copy.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>The cached entity is returned and counted as hit.</li>
+	 * <li>Modifying stored or returned entities does not change the cache.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetPut_Copies() {
+		LocationEntity locationEntity = getLocationEntity("BUDAPEST");
+
+		Assert.isNull(locationCache.get(1L), "cache must be empty");
+		locationCache.put(1L, new LocationRange(0, 1, locationEntity),
+				locationCache.getGeneration());
+		locationEntity.setCityName("DEBRECEN");
+
+		LocationEntity cached = locationCache.get(1L);
+		Assert.state("BUDAPEST".equals(cached.getCityName()),
+				"stored entity must be a copy");
+		cached.setIp4Address("0.0.0.1");
+		Assert.state("".equals(locationCache.get(1L).getIp4Address()),
+				"returned entity must be a copy");
+
+		Assert.state(locationCache.getHitCount() == 2, "2 hits expected");
+		Assert.state(locationCache.getMissCount() == 1, "1 miss expected");
+	}
+
+	/**
+	 * Test case: get an entity after its time to live.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>The entity is dropped and counted as expiration.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGet_Expired() {
+		locationCache.put(1L, getLocationRange(1L, "BUDAPEST"),
+				locationCache.getGeneration());
+
+		locationCache.now = (TIME_TO_LIVE_SECONDS - 1) * ONE_SECOND;
+		Assert.notNull(locationCache.get(1L), "entity must be alive");
+
+		locationCache.now = TIME_TO_LIVE_SECONDS * ONE_SECOND;
+		Assert.isNull(locationCache.get(1L), "entity must be expired");
+		Assert.state(locationCache.getExpirationCount() == 1,
+				"1 expiration expected");
+		Assert.state(locationCache.getSize() == 0, "cache must be empty");
+	}
+
+	/**
+	 * Test case: put many more entities than the maximum.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Size stays within the maximum, the rest is evicted.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testPut_SizeBound() {
+		int count = 10 * MAX_ENTRIES;
+		for (int i = 0; i < count; i++) {
+			locationCache.put(i, getLocationRange(i, "BUDAPEST"),
+					locationCache.getGeneration());
+		}
+
+		int size = locationCache.getSize();
+		Assert.state(size <= MAX_ENTRIES, "size must not exceed the maximum");
+		Assert.state(locationCache.getEvictionCount() == count - size,
+				"every dropped entity must be counted as eviction");
+	}
+
+	/**
+	 * Test case: frequently requested entities mixed with a long scan of
+	 * one-hit addresses.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Frequently requested entities survive the scan.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testEviction_FrequentSurvivesScan() {
+		int hotCount = MAX_ENTRIES / 10;
+		for (int round = 0; round < 5; round++) {
+			for (long i = 0; i < hotCount; i++) {
+				if (locationCache.get(i) == null) {
+					locationCache.put(i, getLocationRange(i, "HOT"),
+							locationCache.getGeneration());
+				}
+			}
+		}
+
+		for (long i = 0; i < 20 * MAX_ENTRIES; i++) {
+			long key = (i % 4 == 0) ? i / 4 % hotCount : 1000000 + i;
+			if (locationCache.get(key) == null) {
+				locationCache.put(key, getLocationRange(key, "SCAN"),
+						locationCache.getGeneration());
+			}
+		}
+
+		int survivors = 0;
+		for (long i = 0; i < hotCount; i++) {
+			if (locationCache.get(i) != null) {
+				survivors++;
+			}
+		}
+		Assert.state(survivors >= hotCount * 9 / 10,
+				"frequent entities must survive the scan, survived: "
+						+ survivors);
+	}
+
+	/**
+	 * Test case: get neighbouring addresses of a cached range.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Addresses inside the range are hits, bounds included.</li>
+	 * <li>Addresses outside the range are misses.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testRangeGet_WholeRange() {
+		RangeLocationCache rangeCache = new RangeLocationCache(MAX_ENTRIES,
+				TIME_TO_LIVE_SECONDS);
+		rangeCache.put(150, new LocationRange(100, 199,
+				getLocationEntity("BUDAPEST")), rangeCache.getGeneration());
+		rangeCache.put(250, new LocationRange(200, 299,
+				getLocationEntity("DEBRECEN")), rangeCache.getGeneration());
+
+		Assert.state("BUDAPEST".equals(rangeCache.get(100).getCityName()),
+				"first address of the range must be a hit");
+		Assert.state("BUDAPEST".equals(rangeCache.get(199).getCityName()),
+				"last address of the range must be a hit");
+		Assert.state("DEBRECEN".equals(rangeCache.get(200).getCityName()),
+				"address of the next range must be a hit");
+		Assert.isNull(rangeCache.get(99), "address below must be a miss");
+		Assert.isNull(rangeCache.get(300), "address above must be a miss");
+		Assert.state(rangeCache.getSize() == 2, "one entry per range expected");
+	}
+
+	/**
+	 * Test case: put many more ranges than the maximum, hitting some of them
+	 * in between.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Size stays within the maximum, the rest is evicted.</li>
+	 * <li>Ranges hit regularly survive.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testRangePut_SizeBound() {
+		RangeLocationCache rangeCache = new RangeLocationCache(MAX_ENTRIES,
+				TIME_TO_LIVE_SECONDS);
+		rangeCache.put(0, new LocationRange(0, 9, getLocationEntity("HOT")),
+				rangeCache.getGeneration());
+
+		int count = 10 * MAX_ENTRIES;
+		for (int i = 1; i <= count; i++) {
+			rangeCache.put(i * 10, new LocationRange(i * 10, i * 10 + 9,
+					getLocationEntity("SCAN")), rangeCache.getGeneration());
+			Assert.notNull(rangeCache.get(5), "hot range must survive");
+		}
+
+		Assert.state(rangeCache.getSize() <= MAX_ENTRIES,
+				"size must not exceed the maximum");
+		Assert.state(rangeCache.getEvictionCount() == count + 1
+				- rangeCache.getSize(),
+				"every dropped range must be counted as eviction");
+	}
+}
@@ -0,0 +1,638 @@
+package com.epam.training;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.Assert;
+
+import com.epam.training.cli.LocationFileBuilder;
+import com.epam.training.cli.LocationImporter;
+import com.epam.training.dao.LocationDao;
+import com.epam.training.dao.csv.Db11CsvReader;
+import com.epam.training.dao.csv.ParallelDb11CsvReader;
+import com.epam.training.dao.jdbc.SimpleJdbcLocationEntityImpl;
+import com.epam.training.dao.mapped.MappedLocationDao;
+import com.epam.training.dao.memory.Ip6RangeLocationDao;
+import com.epam.training.dao.memory.LocationRecord;
+import com.epam.training.dao.memory.SortedRangeIndex;
+import com.epam.training.dao.memory.SortedRangeLocationDao;
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.cache.RangeLocationCache;
+import com.epam.training.service.reload.LocationDataReloader;
+import com.epam.training.utils.Ip6Parser;
+
+public class LocationDaoTest {
+
+	/** Instances of tested UNITs */
+	private SimpleJdbcLocationEntityImpl jdbcDao;
+
+	private SortedRangeLocationDao sortedRangeDao;
+
+	private MappedLocationDao mappedDao;
+
+	/** Embedded database and csv file shared by the units */
+	private JdbcTemplate jdbcTemplate;
+
+	private File csvFile;
+
+	private File locationFile;
+
+	/** Constants */
+	private static final long[] COVERED_ADDRESSES = { 0, 16777215, 16777216,
+			16777300, 16777471, 16778240, 3232261319L, 4294967295L };
+	private static final long UNCOVERED_ADDRESS = 16777800;
+
+	// out of order on purpose, with a gap at 16777472-16778239
+	private static final Object[][] ROWS = {
+			{ 16778240, 3232261119L, "CN", "CHINA", "FUJIAN", "FUZHOU",
+					26.06139, 119.30611, "350004", "+08:00" },
+			{ 0, 16777215, "-", "-", "-", "-", 0.0, 0.0, "-", "-" },
+			{ 16777216, 16777471, "AU", "AUSTRALIA", "QUEENSLAND",
+					"BRISBANE", -27.46794, 153.02809, "4000", "+10:00" },
+			{ 3232261120L, 4294967295L, "HU", "HUNGARY", "CSONGR\u00c1D",
+					"SZEGED", 46.253, 20.14824, "6754", "+01:00" } };
+
+	// ip6 csv lines, decimal bounds, with a gap at 1:: - 2001:db7:ffff:..
+	private static final String[] IP6_LINES = {
+			"\"0\",\"18446744073709551615\",\"-\",\"-\",\"-\",\"-\",\"0\",\"0\",\"-\",\"-\"",
+			"\"42540766411282592856903984951653826560\",\"42540766490510755371168322545197776895\","
+					+ "\"HU\",\"HUNGARY\",\"CSONGR\u00c1D\",\"SZEGED\",\"46.253\",\"20.14824\",\"6754\",\"+01:00\"",
+			"\"338953138925153547590470800371487866880\",\"340282366920938463463374607431768211455\","
+					+ "\"JP\",\"JAPAN\",\"TOKYO\",\"TOKYO\",\"35.6895\",\"139.69171\",\"100-0001\",\"+09:00\"" };
+
+	@Before
+	public void setup() throws IOException, AppException {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:locationdaotest;DB_CLOSE_DELAY=-1", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		// former float schema, migrated after loading the rows
+		jdbcTemplate.execute("CREATE SCHEMA GEOLOCATION");
+		jdbcTemplate.execute("CREATE TABLE GEOLOCATION.IPLOCATION ("
+				+ "ip_from float NOT NULL, ip_to float NOT NULL, "
+				+ "country_code nvarchar(2) NOT NULL, country_name nvarchar(64) NOT NULL, "
+				+ "region_name nvarchar(128) NOT NULL, city_name nvarchar(128) NOT NULL, "
+				+ "latitude float NOT NULL, longitude float NOT NULL, "
+				+ "zip_code nvarchar(30) NOT NULL, time_zone nvarchar(8) NOT NULL)");
+		for (Object[] row : ROWS) {
+			jdbcTemplate.update(
+					"INSERT INTO GEOLOCATION.IPLOCATION VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+					row);
+		}
+		ResourceDatabasePopulator migration = new ResourceDatabasePopulator();
+		migration.addScript(new FileSystemResource(
+				"database/db_migrate_bigint.sql"));
+		DatabasePopulatorUtils.execute(migration, dataSource);
+
+		// csv export of the table, sorted like the DB11 csv
+		csvFile = File.createTempFile("locationdaotest", ".csv");
+		try (PrintWriter pw = new PrintWriter(csvFile, "UTF-8")) {
+			for (int i : new int[] { 1, 2, 0, 3 }) {
+				StringBuilder line = new StringBuilder();
+				for (Object field : ROWS[i]) {
+					line.append(line.length() == 0 ? "\"" : ",\"")
+							.append(field).append('"');
+				}
+				pw.println(line);
+			}
+		}
+		locationFile = File.createTempFile("locationdaotest", ".dat");
+		new LocationFileBuilder().build(csvFile, locationFile);
+
+		jdbcDao = new SimpleJdbcLocationEntityImpl();
+		ReflectionTestUtils.setField(jdbcDao, "jdbcTemplate", jdbcTemplate);
+
+		sortedRangeDao = new SortedRangeLocationDao();
+		ReflectionTestUtils.setField(sortedRangeDao, "jdbcTemplate",
+				jdbcTemplate);
+
+		mappedDao = new MappedLocationDao();
+		ReflectionTestUtils.setField(mappedDao, "fileName",
+				locationFile.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.execute("DROP SCHEMA GEOLOCATION");
+		jdbcTemplate.execute("SHUTDOWN");
+
+		csvFile.delete();
+		locationFile.delete();
+	}
+
+	/**
+	 * Test case: find covered addresses with the in-memory dao.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>In-memory dao returns the same LocationEntity as the JDBC dao, range
+	 * bounds included</li>
+	 * </ul>
+	 */
+	@Test
+	public void testSortedRangeFind_SameAsJdbc() throws AppException {
+		assertSameAsJdbc(sortedRangeDao);
+	}
+
+	/**
+	 * Test case: find covered addresses with the memory mapped dao.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Memory mapped dao returns the same LocationEntity as the JDBC dao,
+	 * range bounds included</li>
+	 * </ul>
+	 */
+	@Test
+	public void testMappedFind_SameAsJdbc() throws AppException {
+		assertSameAsJdbc(mappedDao);
+	}
+
+	/**
+	 * Test case: find an address not covered by any range.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>All dao implementations throw an exception.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFind_UncoveredAddress() {
+		for (LocationDao locationDao : new LocationDao[] { jdbcDao,
+				sortedRangeDao, mappedDao }) {
+			AppException receivedException = null;
+			try {
+				locationDao.find(UNCOVERED_ADDRESS);
+			} catch (AppException ae) {
+				receivedException = ae;
+			}
+
+			Assert.notNull(receivedException, locationDao.getClass()
+					.getSimpleName() + " must return an exception");
+		}
+	}
+
+	/**
+	 * Test case: batch find of sorted covered and uncovered addresses.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>All dao implementations return the same LocationEntity as the
+	 * single find for covered addresses and null for uncovered ones.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFindAll_SameAsFind() throws AppException {
+		long[] addresses = Arrays.copyOf(COVERED_ADDRESSES,
+				COVERED_ADDRESSES.length + 1);
+		addresses[COVERED_ADDRESSES.length] = UNCOVERED_ADDRESS;
+		Arrays.sort(addresses);
+
+		for (LocationDao locationDao : new LocationDao[] { jdbcDao,
+				sortedRangeDao, mappedDao }) {
+			LocationEntity[] found = locationDao.findAll(addresses);
+
+			Assert.state(found.length == addresses.length, locationDao
+					.getClass().getSimpleName()
+					+ " must return a location for every address");
+			for (int i = 0; i < addresses.length; i++) {
+				LocationEntity expected = addresses[i] == UNCOVERED_ADDRESS ? null
+						: jdbcDao.find(addresses[i]);
+				Assert.state(expected == null ? found[i] == null : expected
+						.equals(found[i]), locationDao.getClass()
+						.getSimpleName()
+						+ " must return the same location for "
+						+ addresses[i]);
+			}
+		}
+	}
+
+	/**
+	 * Test case: find the ranges of covered addresses.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>All dao implementations return the bounds of the matching row and
+	 * the same LocationEntity as the single find.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFindRange_SameAsRows() throws AppException {
+		for (LocationDao locationDao : new LocationDao[] { jdbcDao,
+				sortedRangeDao, mappedDao }) {
+			for (long address : COVERED_ADDRESSES) {
+				LocationRange locationRange = locationDao.findRange(address);
+
+				Assert.state(locationRange.contains(address),
+						locationDao.getClass().getSimpleName()
+								+ " must return the range of " + address);
+				boolean rowFound = false;
+				for (Object[] row : ROWS) {
+					rowFound |= ((Number) row[0]).longValue() == locationRange
+							.getIpFrom()
+							&& ((Number) row[1]).longValue() == locationRange
+									.getIpTo();
+				}
+				Assert.state(rowFound, locationDao.getClass().getSimpleName()
+						+ " must return the bounds of a row for " + address);
+				Assert.state(
+						jdbcDao.find(address).equals(
+								locationRange.getLocationEntity()),
+						locationDao.getClass().getSimpleName()
+								+ " must return the same location for "
+								+ address);
+			}
+		}
+	}
+
+	/**
+	 * Test case: find with the deprecated double based methods.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>All dao implementations return the same as the long based methods,
+	 * fractions are truncated.</li>
+	 * </ul>
+	 */
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedDoubleFind_SameAsLong() throws AppException {
+		double[] addresses = new double[COVERED_ADDRESSES.length];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = COVERED_ADDRESSES[i] + 0.5;
+		}
+
+		for (LocationDao locationDao : new LocationDao[] { jdbcDao,
+				sortedRangeDao, mappedDao }) {
+			LocationEntity[] found = locationDao.findAll(addresses);
+			for (int i = 0; i < addresses.length; i++) {
+				LocationEntity expected = locationDao
+						.find(COVERED_ADDRESSES[i]);
+				Assert.state(expected.equals(locationDao.find(addresses[i]))
+						&& expected.equals(found[i]), locationDao.getClass()
+						.getSimpleName()
+						+ " must return the same location for "
+						+ addresses[i]);
+			}
+		}
+	}
+
+	/**
+	 * Test case: find ip6 addresses with the in-memory ip6 dao.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Addresses at and inside the range bounds are found, also above
+	 * 8000::, where the high 64 bits are negative as signed long.</li>
+	 * <li>Addresses in the gap are reported with an exception and with null
+	 * in batch find.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testIp6Find() throws IOException, AppException {
+		File ip6CsvFile = File.createTempFile("locationdaotest", ".csv");
+		try {
+			try (PrintWriter pw = new PrintWriter(ip6CsvFile, "UTF-8")) {
+				for (String line : IP6_LINES) {
+					pw.println(line);
+				}
+			}
+			Ip6RangeLocationDao ip6Dao = new Ip6RangeLocationDao();
+			ReflectionTestUtils.setField(ip6Dao, "fileName",
+					ip6CsvFile.getPath());
+
+			String[] ip6Addresses = { "::", "::ffff:ffff:ffff:ffff",
+					"2001:db8::", "2001:db8::1", "2001:db8:ffff::",
+					"2001:db8:ffff:ffff:ffff:ffff:ffff:ffff", "ff00::",
+					"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "1::",
+					"2001:db7:ffff:ffff:ffff:ffff:ffff:ffff", "2001:db9::" };
+			String[] cityNames = { "-", "-", "SZEGED", "SZEGED", "SZEGED",
+					"SZEGED", "TOKYO", "TOKYO", null, null, null };
+
+			long[] highs = new long[ip6Addresses.length];
+			long[] lows = new long[ip6Addresses.length];
+			long[] address = new long[2];
+			for (int i = 0; i < ip6Addresses.length; i++) {
+				Ip6Parser.parse(ip6Addresses[i], address);
+				highs[i] = address[Ip6Parser.HIGH];
+				lows[i] = address[Ip6Parser.LOW];
+			}
+			LocationEntity[] found = ip6Dao.findAll(highs, lows);
+
+			for (int i = 0; i < ip6Addresses.length; i++) {
+				LocationEntity locationEntity = null;
+				try {
+					locationEntity = ip6Dao.find(highs[i], lows[i]);
+				} catch (AppException ae) {
+					Assert.isNull(cityNames[i], "ip6 dao must find "
+							+ ip6Addresses[i]);
+				}
+				if (cityNames[i] == null) {
+					Assert.isNull(found[i], "ip6 dao must not find "
+							+ ip6Addresses[i]);
+				} else {
+					Assert.state(cityNames[i].equals(locationEntity
+							.getCityName())
+							&& locationEntity.equals(found[i]),
+							"ip6 dao must return the location of "
+									+ ip6Addresses[i]);
+				}
+			}
+		} finally {
+			ip6CsvFile.delete();
+		}
+	}
+
+	/**
+	 * Test case: load the in-memory dao from ranges sharing locations, the
+	 * first and fourth range in Budapest, the unknown location at both ends.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Each distinct location is stored once, strings shared by different
+	 * locations are pooled once.</li>
+	 * <li>find and findAll return equal but separate entities for ranges of
+	 * the same location, so each carries its own ip4Address.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testSortedRange_SharedLocations() throws IOException,
+			AppException {
+		String budapest = "\"HU\",\"HUNGARY\",\"BUDAPEST\",\"BUDAPEST\",\"47.49801\",\"19.03991\",\"1000\",\"+01:00\"";
+		String unknown = "\"-\",\"-\",\"-\",\"-\",\"0\",\"0\",\"-\",\"-\"";
+		File sharedFile = File.createTempFile("locationdaotest", ".csv");
+		try {
+			try (PrintWriter pw = new PrintWriter(sharedFile, "UTF-8")) {
+				pw.println("\"0\",\"16777215\"," + unknown);
+				pw.println("\"16777216\",\"16777471\"," + budapest);
+				pw.println("\"16777472\",\"16777727\",\"HU\",\"HUNGARY\",\"CSONGR\u00c1D\",\"SZEGED\",\"46.253\",\"20.14824\",\"6754\",\"+01:00\"");
+				pw.println("\"16777728\",\"16777983\"," + budapest);
+				pw.println("\"16777984\",\"4294967295\"," + unknown);
+			}
+			sortedRangeDao.reload(sharedFile);
+
+			SortedRangeIndex index = (SortedRangeIndex) ReflectionTestUtils
+					.getField(sortedRangeDao, "index");
+			Assert.state(index.size() == 5 && index.getLocationCount() == 3,
+					"each distinct location must be stored once");
+			Assert.state(index.getRecord(1) == index.getRecord(3)
+					&& index.getRecord(0) == index.getRecord(4),
+					"ranges of the same location must share the record");
+			Assert.state(index.getRecord(1).getCountryName() == index
+					.getRecord(2).getCountryName()
+					&& index.getRecord(1).getTimeZone() == index.getRecord(2)
+							.getTimeZone(),
+					"strings of different locations must be pooled once");
+			Assert.state(index.getRecord(0).getCountryCode() == index
+					.getRecord(0).getZipCode(),
+					"strings of the same location must be pooled once");
+
+			LocationEntity first = sortedRangeDao.find(16777300L);
+			LocationEntity fourth = sortedRangeDao.find(16777800L);
+			Assert.state(first.equals(fourth) && first != fourth,
+					"entities must be equal and separate");
+			Assert.state("BUDAPEST".equals(first.getCityName()));
+
+			LocationEntity[] found = sortedRangeDao.findAll(new long[] {
+					16777300L, 16777800L });
+			Assert.state(found[0] != found[1], "entities must be separate");
+			found[0].setIp4Address("1.0.0.84");
+			found[1].setIp4Address("1.0.3.40");
+			Assert.state("1.0.0.84".equals(found[0].getIp4Address())
+					&& "1.0.3.40".equals(found[1].getIp4Address()),
+					"each entity must keep its own ip4Address");
+			Assert.state(first.equals(sortedRangeDao.find(16777300L)),
+					"stored location must not be changed by the lookups");
+		} finally {
+			sharedFile.delete();
+		}
+	}
+
+	/**
+	 * Test case: reload the reloadable daos from a complete and from a
+	 * truncated file.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The complete file is swapped in and returns the same locations.</li>
+	 * <li>The truncated file is rejected, the current snapshot stays in
+	 * place.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testReload() throws IOException, AppException {
+		File truncatedFile = File.createTempFile("locationdaotest", ".csv");
+		try {
+			try (PrintWriter pw = new PrintWriter(truncatedFile, "UTF-8")) {
+				pw.println("\"0\",\"16777215\",\"-\",\"-\",\"-\",\"-\",\"0\",\"0\",\"-\",\"-\"");
+			}
+
+			Assert.state(sortedRangeDao.reload(csvFile) == 0,
+					"nothing must be replaced before the first load");
+			Assert.state(sortedRangeDao.reload(csvFile) == ROWS.length,
+					"all ranges must be replaced");
+			assertSameAsJdbc(sortedRangeDao);
+
+			mappedDao.find(COVERED_ADDRESSES[0]);
+			Assert.state(mappedDao.reload(locationFile) == ROWS.length,
+					"all ranges must be replaced");
+			assertSameAsJdbc(mappedDao);
+
+			AppException receivedException = null;
+			try {
+				sortedRangeDao.reload(truncatedFile);
+			} catch (AppException ae) {
+				receivedException = ae;
+			}
+			Assert.notNull(receivedException,
+					"truncated file must be rejected");
+			Assert.state(sortedRangeDao.getRangeCount() == ROWS.length,
+					"current snapshot must stay in place");
+			assertSameAsJdbc(sortedRangeDao);
+		} finally {
+			truncatedFile.delete();
+		}
+	}
+
+	/**
+	 * Test case: build the binary location database from a csv file failing
+	 * halfway on an overlapping range, into a new file and over the existing
+	 * one.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The build fails with AppException.</li>
+	 * <li>No new file is created and no temporary file is left behind.</li>
+	 * <li>The existing file is left in place and still maps the complete
+	 * dataset.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFileBuilder_FailedBuild() throws IOException, AppException {
+		File overlappingFile = File.createTempFile("locationdaotest", ".csv");
+		File newFile = new File(locationFile.getParentFile(),
+				locationFile.getName() + ".new");
+		try {
+			try (PrintWriter pw = new PrintWriter(overlappingFile, "UTF-8")) {
+				pw.println("\"0\",\"16777215\",\"-\",\"-\",\"-\",\"-\",\"0\",\"0\",\"-\",\"-\"");
+				pw.println("\"16777000\",\"16777471\",\"AU\",\"AUSTRALIA\",\"QUEENSLAND\",\"BRISBANE\",\"-27.46794\",\"153.02809\",\"4000\",\"+10:00\"");
+			}
+
+			for (File outputFile : new File[] { newFile, locationFile }) {
+				AppException receivedException = null;
+				try {
+					new LocationFileBuilder().build(overlappingFile, outputFile);
+				} catch (AppException ae) {
+					receivedException = ae;
+				}
+				Assert.notNull(receivedException, "build must fail");
+			}
+
+			Assert.state(!newFile.exists(), "no new file must be created");
+			String[] tempFiles = locationFile.getParentFile().list();
+			for (String name : tempFiles) {
+				Assert.state(!(name.startsWith(locationFile.getName()) && name
+						.endsWith(".tmp")), "temporary file must be deleted: "
+						+ name);
+			}
+			assertSameAsJdbc(mappedDao);
+		} finally {
+			overlappingFile.delete();
+			newFile.delete();
+		}
+	}
+
+	/**
+	 * Test case: reload the dataset through the reloader.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Range counts of the reload are recorded.</li>
+	 * <li>The location cache is cleared.</li>
+	 * <li>A range looked up before the reload is not cached when put after
+	 * it.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testReloader() throws AppException {
+		RangeLocationCache locationCache = new RangeLocationCache(100, 60);
+		long generation = locationCache.getGeneration();
+		LocationRange oldRange = sortedRangeDao.findRange(COVERED_ADDRESSES[0]);
+		locationCache.put(COVERED_ADDRESSES[0], oldRange, generation);
+
+		LocationDataReloader reloader = new LocationDataReloader();
+		ReflectionTestUtils.setField(reloader, "locationDao", sortedRangeDao);
+		ReflectionTestUtils.setField(reloader, "locationCache", locationCache);
+		reloader.reload(csvFile);
+		reloader.shutdown();
+
+		Assert.state(reloader.getReloadCount() == 1
+				&& reloader.getLastOldRangeCount() == ROWS.length
+				&& reloader.getLastNewRangeCount() == ROWS.length,
+				"reload must be recorded");
+		Assert.state(locationCache.getSize() == 0,
+				"location cache must be cleared");
+
+		// put of a lookup started before the reload
+		locationCache.put(COVERED_ADDRESSES[0], oldRange, generation);
+		Assert.state(locationCache.getSize() == 0,
+				"range of the old dataset must not be cached");
+		locationCache.put(COVERED_ADDRESSES[0], oldRange,
+				locationCache.getGeneration());
+		Assert.state(locationCache.getSize() == 1,
+				"range of a lookup started after the reload must be cached");
+	}
+
+	/**
+	 * Test case: import a csv file with crlf line ends, read in chunks
+	 * smaller than a line.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The parallel reader returns the same rows as Db11CsvReader.</li>
+	 * <li>The imported table, created by db_setup.sql, returns the same
+	 * locations as the source table.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testImporter_SameAsReader() throws IOException, AppException {
+		File crlfFile = File.createTempFile("locationdaotest", ".csv");
+		try {
+			try (PrintWriter pw = new PrintWriter(crlfFile, "UTF-8")) {
+				for (int i : new int[] { 1, 2, 0, 3 }) {
+					StringBuilder line = new StringBuilder();
+					for (Object field : ROWS[i]) {
+						line.append(line.length() == 0 ? "\"" : ",\"")
+								.append(field).append('"');
+					}
+					pw.print(line.append("\r\n"));
+				}
+			}
+
+			final List<Object> expected = new ArrayList<>();
+			new Db11CsvReader().read(crlfFile, new Db11CsvReader.RowHandler() {
+				public void handle(long ipFrom, long ipTo, LocationRecord record) {
+					expected.addAll(Arrays.asList(ipFrom, ipTo, record));
+				}
+			});
+			final List<Object> actual = new ArrayList<>();
+			ParallelDb11CsvReader reader = new ParallelDb11CsvReader(3, 16);
+			reader.read(crlfFile, new Db11CsvReader.RowHandler() {
+				public void handle(long ipFrom, long ipTo, LocationRecord record) {
+					actual.addAll(Arrays.asList(ipFrom, ipTo, record));
+				}
+			});
+			Assert.state(expected.size() == 3 * ROWS.length
+					&& expected.equals(actual),
+					"parallel reader must return the same rows");
+
+			DriverManagerDataSource dataSource = new DriverManagerDataSource(
+					"jdbc:h2:mem:locationimportertest;DB_CLOSE_DELAY=-1",
+					"sa", "");
+			ResourceDatabasePopulator setup = new ResourceDatabasePopulator();
+			setup.addScript(new FileSystemResource("database/db_setup.sql"));
+			DatabasePopulatorUtils.execute(setup, dataSource);
+			try {
+				Assert.state(new LocationImporter(reader).importToDatabase(
+						crlfFile, dataSource) == ROWS.length,
+						"importer must import all rows");
+
+				SimpleJdbcLocationEntityImpl importedDao = new SimpleJdbcLocationEntityImpl();
+				ReflectionTestUtils.setField(importedDao, "jdbcTemplate",
+						new JdbcTemplate(dataSource));
+				assertSameAsJdbc(importedDao);
+			} finally {
+				new JdbcTemplate(dataSource).execute("SHUTDOWN");
+			}
+		} finally {
+			crlfFile.delete();
+		}
+	}
+
+	private void assertSameAsJdbc(LocationDao locationDao) throws AppException {
+		for (long address : COVERED_ADDRESSES) {
+			LocationEntity expected = jdbcDao.find(address);
+			LocationEntity actual = locationDao.find(address);
+
+			Assert.state(expected.equals(actual), locationDao.getClass()
+					.getSimpleName()
+					+ " must return the same location for "
+					+ address);
+		}
+	}
+}
@@ -1,23 +1,37 @@
 package com.epam.training;
 
+import static org.easymock.EasyMock.aryEq;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.Assert;
 
+import com.epam.training.dao.Ip6LocationDao;
 import com.epam.training.dao.LocationDao;
 import com.epam.training.dao.jdbc.SimpleJdbcLocationEntityImpl;
+import com.epam.training.dao.memory.Ip6RangeLocationDao;
 import com.epam.training.dao.url.UrlMyIpDao;
 import com.epam.training.domain.LocationEntity;
+import com.epam.training.domain.LocationRange;
 import com.epam.training.exception.AppException;
 import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationCallback;
+import com.epam.training.service.cache.RangeLocationCache;
 import com.epam.training.service.impl.LocationServiceImpl;
 import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.LookupMetrics;
+import com.epam.training.utils.LookupMetrics.Outcome;
+import com.epam.training.utils.LookupMetrics.Stage;
 import com.epam.training.utils.Validator;
 
 public class LocationServiceTest {
@@ -28,17 +42,30 @@ public class LocationServiceTest {
 	/** MOCK classes emulating used services */
 	private LocationDao locationDao;
 
+	private Ip6LocationDao ip6LocationDao;
+
 	private UrlMyIpDao urlMyIpDao;
 
 	private Ip4Converter ipConverter;
 
 	private Validator ipValidator;
 
+	/** Metrics recorded by the service */
+	private LookupMetrics lookupMetrics;
+
 	/** Constants */
 	private static final String INVALID_IP4_ADDRESS = "256.256.0.3";
 	private static final String VALID_IP4_ADDRESS = "192.168.100.199";
 
-	private static final double CONVERTED_ADDRESS = 9999.99;
+	private static final String LOW_IP4_ADDRESS = "10.0.0.1";
+	private static final String NEIGHBOUR_IP4_ADDRESS = "192.168.100.200";
+
+	private static final String MAPPED_IP6_ADDRESS = "::ffff:192.168.100.199";
+	private static final String IP6_ADDRESS = "2001:db8::1";
+
+	private static final long CONVERTED_ADDRESS = 9999;
+	private static final long CONVERTED_LOW_ADDRESS = 1000;
+	private static final long CONVERTED_NEIGHBOUR_ADDRESS = 10000;
 
 	@Before
 	public void setup() {
@@ -48,6 +75,7 @@ public class LocationServiceTest {
 
 		// create a mock instances
 		locationDao = createMock(SimpleJdbcLocationEntityImpl.class);
+		ip6LocationDao = createMock(Ip6RangeLocationDao.class);
 		urlMyIpDao = createMock(UrlMyIpDao.class);
 		ipConverter = createMock(Ip4Converter.class);
 		ipValidator = createMock(Validator.class);
@@ -55,12 +83,18 @@ public class LocationServiceTest {
 		// inject the unit's dependencies as mock object via reflection
 		ReflectionTestUtils.setField(locationServiceImpl, "locationDao",
 				locationDao);
+		ReflectionTestUtils.setField(locationServiceImpl, "ip6LocationDao",
+				ip6LocationDao);
 		ReflectionTestUtils.setField(locationServiceImpl, "urlMyIpDao",
 				urlMyIpDao);
 		ReflectionTestUtils.setField(locationServiceImpl, "ipConverter",
 				ipConverter);
 		ReflectionTestUtils.setField(locationServiceImpl, "ipValidator",
 				ipValidator);
+
+		lookupMetrics = new LookupMetrics();
+		ReflectionTestUtils.setField(locationServiceImpl, "lookupMetrics",
+				lookupMetrics);
 	}
 
 	private LocationEntity getDefaultLocationEntity() {
@@ -86,6 +120,7 @@ public class LocationServiceTest {
 	 * <ul>
 	 * <li>Service is invoked properly and returns a LocationEntity object</li>
 	 * <li>Service is not allowed to return with an exception.</li>
+	 * <li>The lookup is counted as hit, every stage is timed.</li>
 	 * </ul>
 	 */
 	@Test
@@ -101,7 +136,7 @@ public class LocationServiceTest {
 					true);
 			replay(ipValidator);
 
-			expect(ipConverter.convertFromStringToDouble(VALID_IP4_ADDRESS))
+			expect(ipConverter.convertFromStringToLong(VALID_IP4_ADDRESS))
 					.andReturn(CONVERTED_ADDRESS);
 			replay(ipConverter);
 
@@ -124,6 +159,63 @@ public class LocationServiceTest {
 				"service must return a LocationEntity which is not null");
 		Assert.isNull(receivedException,
 				"service is not allowed to return an exception right now");
+		Assert.isTrue(lookupMetrics.getCount(Outcome.HIT) == 1,
+				"found location must be counted as hit");
+		for (Stage stage : new Stage[] { Stage.VALIDATION, Stage.CONVERSION,
+				Stage.DAO_LOOKUP }) {
+			Assert.isTrue(lookupMetrics.getSnapshot(stage).getCount() == 1,
+					"every stage of the lookup must be timed once");
+		}
+	}
+
+	/**
+	 * Test case: call location service with two ips of the same range, cache
+	 * enabled.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Dao is invoked only for the first call, the range is cached.</li>
+	 * <li>Both calls return the location with the requested ip.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_CachedRange() throws AppException {
+		ReflectionTestUtils.setField(locationServiceImpl, "locationCache",
+				new RangeLocationCache(100, 60));
+
+		// mock calls
+		expect(ipValidator.validateIp4String(VALID_IP4_ADDRESS)).andReturn(
+				true);
+		expect(ipValidator.validateIp4String(NEIGHBOUR_IP4_ADDRESS))
+				.andReturn(true);
+		replay(ipValidator);
+
+		expect(ipConverter.convertFromStringToLong(VALID_IP4_ADDRESS))
+				.andReturn(CONVERTED_ADDRESS);
+		expect(ipConverter.convertFromStringToLong(NEIGHBOUR_IP4_ADDRESS))
+				.andReturn(CONVERTED_NEIGHBOUR_ADDRESS);
+		replay(ipConverter);
+
+		expect(locationDao.findRange(CONVERTED_ADDRESS)).andReturn(
+				new LocationRange(9000, 10000, getDefaultLocationEntity()));
+		replay(locationDao);
+
+		// service method calls
+		LocationEntity first = locationServiceImpl
+				.getLocation(VALID_IP4_ADDRESS);
+		LocationEntity second = locationServiceImpl
+				.getLocation(NEIGHBOUR_IP4_ADDRESS);
+
+		verify(ipValidator);
+		verify(ipConverter);
+		verify(locationDao);
+
+		Assert.state(VALID_IP4_ADDRESS.equals(first.getIp4Address()),
+				"first location must have the requested ip");
+		Assert.state(NEIGHBOUR_IP4_ADDRESS.equals(second.getIp4Address()),
+				"cached location must have the requested ip");
+		Assert.state("BUDAPEST".equals(second.getCityName()),
+				"cached location must be returned");
 	}
 
 	/**
@@ -133,6 +225,9 @@ public class LocationServiceTest {
 	 * <ul>
 	 * <li>Service is invoked properly and an exception is thrown.</li>
 	 * <li>Service is not allowed to return with a LocationObject.</li>
+	 * <li>The exception is a client error without stack trace, its
+	 * development log is still available.</li>
+	 * <li>The address is counted as invalid input.</li>
 	 * </ul>
 	 */
 	@Test
@@ -158,6 +253,55 @@ public class LocationServiceTest {
 				"service is not allowed to return a LocationEntity right now");
 		Assert.notNull(receivedException,
 				"service must return an exception right now");
+		Assert.isTrue(receivedException.isClientError(),
+				"invalid address must be a client error");
+		Assert.isTrue(receivedException.getStackTrace().length == 0,
+				"client error must not fill in a stack trace");
+		Assert.isTrue(receivedException.getDevLog().contains(
+				"IllegalClientParameterError"));
+		Assert.isTrue(lookupMetrics.getCount(Outcome.INVALID_INPUT) == 1,
+				"invalid address must be counted");
+	}
+
+	/**
+	 * Test case: call location service with ip6 addresses.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>The ip4-mapped address is looked up by the ip4 dao.</li>
+	 * <li>The native ip6 address is looked up by the ip6 dao.</li>
+	 * <li>Both locations have the requested ip.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocation_Ip6() throws AppException {
+		// mock calls
+		expect(ipValidator.validateIp4String(MAPPED_IP6_ADDRESS)).andReturn(
+				false);
+		expect(ipValidator.validateIp4String(IP6_ADDRESS)).andReturn(false);
+		replay(ipValidator);
+
+		expect(locationDao.find(0xC0A864C7L)).andReturn(
+				getDefaultLocationEntity());
+		replay(locationDao);
+
+		expect(ip6LocationDao.find(0x20010db800000000L, 1L)).andReturn(
+				getDefaultLocationEntity());
+		replay(ip6LocationDao);
+
+		// service method calls
+		LocationEntity mapped = locationServiceImpl
+				.getLocation(MAPPED_IP6_ADDRESS);
+		LocationEntity ip6 = locationServiceImpl.getLocation(IP6_ADDRESS);
+
+		verify(ipValidator);
+		verify(locationDao);
+		verify(ip6LocationDao);
+
+		Assert.state(MAPPED_IP6_ADDRESS.equals(mapped.getIp4Address()),
+				"mapped location must have the requested ip");
+		Assert.state(IP6_ADDRESS.equals(ip6.getIp4Address()),
+				"ip6 location must have the requested ip");
 	}
 
 	/**
@@ -167,6 +311,7 @@ public class LocationServiceTest {
 	 * <ul>
 	 * <li>Service is invoked properly and an exception is thrown</li>
 	 * <li>Service is not allowed to return with a LocationObject.</li>
+	 * <li>The lookup is counted as upstream error.</li>
 	 * </ul>
 	 */
 	@Test
@@ -184,7 +329,7 @@ public class LocationServiceTest {
 					true);
 			replay(ipValidator);
 
-			expect(ipConverter.convertFromStringToDouble(VALID_IP4_ADDRESS))
+			expect(ipConverter.convertFromStringToLong(VALID_IP4_ADDRESS))
 					.andReturn(CONVERTED_ADDRESS);
 			replay(ipConverter);
 
@@ -207,6 +352,77 @@ public class LocationServiceTest {
 				"service is not allowed to return a LocationEntity which is not null");
 		Assert.notNull(receivedException,
 				"service must return an exception right now");
+		Assert.isTrue(lookupMetrics.getCount(Outcome.UPSTREAM_ERROR) == 1,
+				"dao error must be counted as upstream error");
+	}
+
+	/**
+	 * Test case: call batch location service with valid and invalid ips.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>Dao is invoked once with the sorted converted addresses</li>
+	 * <li>Locations are returned in input order, null for the invalid ip.</li>
+	 * <li>Every address is counted by its outcome.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocations_InputOrder() {
+		// mock return value
+		LocationEntity lowLocationEntity = getDefaultLocationEntity();
+		LocationEntity highLocationEntity = getDefaultLocationEntity();
+		highLocationEntity.setCityName("SZEGED");
+
+		AppException receivedException = null;
+		List<LocationEntity> response_LocationEntities = null;
+		try {
+			// mock calls
+			expect(ipValidator.validateIp4String(VALID_IP4_ADDRESS)).andReturn(
+					true);
+			expect(ipValidator.validateIp4String(INVALID_IP4_ADDRESS))
+					.andReturn(false);
+			expect(ipValidator.validateIp4String(LOW_IP4_ADDRESS)).andReturn(
+					true);
+			replay(ipValidator);
+
+			expect(ipConverter.convertFromStringToLong(VALID_IP4_ADDRESS))
+					.andReturn(CONVERTED_ADDRESS);
+			expect(ipConverter.convertFromStringToLong(LOW_IP4_ADDRESS))
+					.andReturn(CONVERTED_LOW_ADDRESS);
+			replay(ipConverter);
+
+			expect(
+					locationDao.findAll(aryEq(new long[] {
+							CONVERTED_LOW_ADDRESS, CONVERTED_ADDRESS }))).andReturn(
+					new LocationEntity[] { lowLocationEntity,
+							highLocationEntity });
+			replay(locationDao);
+
+			// service method call
+			response_LocationEntities = locationServiceImpl.getLocations(Arrays
+					.asList(VALID_IP4_ADDRESS, INVALID_IP4_ADDRESS,
+							LOW_IP4_ADDRESS));
+
+			verify(ipValidator);
+			verify(ipConverter);
+			verify(locationDao);
+		} catch (AppException _ae) {
+			receivedException = _ae;
+		}
+
+		Assert.isNull(receivedException,
+				"service is not allowed to return an exception right now");
+		Assert.state(response_LocationEntities.size() == 3,
+				"service must return a result for every address");
+		Assert.state(response_LocationEntities.get(0) == highLocationEntity,
+				"service must return locations in input order");
+		Assert.isNull(response_LocationEntities.get(1),
+				"service must return null for an invalid address");
+		Assert.state(response_LocationEntities.get(2) == lowLocationEntity,
+				"service must return locations in input order");
+		Assert.state(lookupMetrics.getCount(Outcome.HIT) == 2
+				&& lookupMetrics.getCount(Outcome.INVALID_INPUT) == 1,
+				"every address of the batch must be counted");
 	}
 
 	/**
@@ -281,4 +497,87 @@ public class LocationServiceTest {
 		Assert.notNull(receivedException,
 				"service must return an exception right now");
 	}
+
+	/**
+	 * Callback recording the outcome of an async call
+	 */
+	private static class RecordingCallback<T> implements LocationCallback<T> {
+		T result;
+		AppException exception;
+		int calls;
+
+		public void onSuccess(T result) {
+			this.result = result;
+			calls++;
+		}
+
+		public void onFailure(AppException ae) {
+			this.exception = ae;
+			calls++;
+		}
+	}
+
+	/**
+	 * Test case: async lookups run on the executor, executor rejects when
+	 * saturated.
+	 * 
+	 * Expected result:
+	 * <ul>
+	 * <li>The callback receives the location or the exception of the lookup,
+	 * exactly once.</li>
+	 * <li>A rejected lookup is reported as service busy.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testGetLocationAsync() throws AppException {
+		final int[] executed = new int[1];
+		ReflectionTestUtils.setField(locationServiceImpl, "lookupExecutor",
+				new Executor() {
+					public void execute(Runnable command) {
+						executed[0]++;
+						command.run();
+					}
+				});
+
+		// mock calls
+		expect(ipValidator.validateIp4String(VALID_IP4_ADDRESS)).andReturn(
+				true);
+		expect(ipConverter.convertFromStringToLong(VALID_IP4_ADDRESS))
+				.andReturn(CONVERTED_ADDRESS);
+		expect(locationDao.find(CONVERTED_ADDRESS)).andReturn(
+				getDefaultLocationEntity());
+		expect(ipValidator.validateIp4String(INVALID_IP4_ADDRESS)).andReturn(
+				false);
+		replay(ipValidator, ipConverter, locationDao);
+
+		// service method calls
+		RecordingCallback<LocationEntity> found = new RecordingCallback<LocationEntity>();
+		locationServiceImpl.getLocationAsync(VALID_IP4_ADDRESS, found);
+		RecordingCallback<LocationEntity> invalid = new RecordingCallback<LocationEntity>();
+		locationServiceImpl.getLocationAsync(INVALID_IP4_ADDRESS, invalid);
+
+		verify(ipValidator, ipConverter, locationDao);
+
+		Assert.isTrue(executed[0] == 2, "lookups must run on the executor");
+		Assert.isTrue(found.calls == 1 && found.exception == null
+				&& VALID_IP4_ADDRESS.equals(found.result.getIp4Address()),
+				"callback must receive the location");
+		Assert.isTrue(invalid.calls == 1 && invalid.result == null
+				&& invalid.exception != null,
+				"callback must receive the exception");
+
+		ReflectionTestUtils.setField(locationServiceImpl, "lookupExecutor",
+				new Executor() {
+					public void execute(Runnable command) {
+						throw new RejectedExecutionException("saturated");
+					}
+				});
+		RecordingCallback<LocationEntity> rejected = new RecordingCallback<LocationEntity>();
+		locationServiceImpl.getLocationAsync(VALID_IP4_ADDRESS, rejected);
+
+		Assert.isTrue(rejected.calls == 1
+				&& "ServiceBusyError".equals(rejected.exception
+						.getErrorInfoList().get(0).getErrorId()),
+				"rejected lookup must be reported as service busy");
+	}
 }
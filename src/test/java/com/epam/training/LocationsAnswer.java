@@ -0,0 +1,69 @@
+package com.epam.training;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.service.LocationService;
+
+/**
+ * Mock batch lookup of the batch tool tests, every valid address is found in
+ * the country named by its last part, INVALID_IP4_ADDRESS is not found
+ */
+class LocationsAnswer implements IAnswer<List<LocationEntity>> {
+
+	static final String INVALID_IP4_ADDRESS = "256.256.0.3";
+
+	private final String cityName;
+
+	/**
+	 * @param String
+	 *            city of every location, to test the quoting of the output
+	 */
+	LocationsAnswer(String cityName) {
+		this.cityName = cityName;
+	}
+
+	/**
+	 * Expects any number of batch lookups and replays the mock
+	 */
+	static void expectLocations(LocationService locationService,
+			String cityName) throws AppException {
+		expect(locationService.getLocations(EasyMock
+				.<Collection<String>> anyObject())).andAnswer(
+				new LocationsAnswer(cityName)).anyTimes();
+		replay(locationService);
+	}
+
+	public List<LocationEntity> answer() {
+		List<LocationEntity> locationEntities = new ArrayList<>();
+		for (Object address : (Collection<?>) getCurrentArguments()[0]) {
+			if (INVALID_IP4_ADDRESS.equals(address)) {
+				locationEntities.add(null);
+				continue;
+			}
+			LocationEntity locationEntity = new LocationEntity();
+			String ip4Address = address.toString();
+			locationEntity.setCountryCode(ip4Address.substring(ip4Address
+					.lastIndexOf('.') + 1));
+			locationEntity.setCountryName("HUNGARY");
+			locationEntity.setRegionName("CSONGRAD");
+			locationEntity.setCityName(cityName);
+			locationEntity.setLatitude(46.25);
+			locationEntity.setLongitude(20.15);
+			locationEntity.setZipCode("6720");
+			locationEntity.setTimeZone("+01:00");
+			locationEntities.add(locationEntity);
+		}
+		return locationEntities;
+	}
+}
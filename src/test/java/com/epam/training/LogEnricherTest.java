@@ -0,0 +1,174 @@
+package com.epam.training;
+
+import static com.epam.training.LocationsAnswer.INVALID_IP4_ADDRESS;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.epam.training.cli.LogEnricher;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.service.LocationService;
+import com.epam.training.service.impl.LocationServiceImpl;
+
+public class LogEnricherTest {
+
+	/** MOCK class emulating used service */
+	private LocationService locationService;
+
+	/** Access log written by the tests */
+	private File logFile;
+
+	/** Constants */
+	private static final int LINE_COUNT = 3000;
+
+	@Before
+	public void setup() throws IOException {
+		locationService = createMock(LocationServiceImpl.class);
+		logFile = File.createTempFile("access", ".log");
+	}
+
+	@After
+	public void tearDown() {
+		logFile.delete();
+	}
+
+	private static String logLine(int i) {
+		return "10.0." + (i / 256) + "." + (i % 256)
+				+ " - - [10/Oct/2000:13:55:36 -0700] \"GET /page/" + i
+				+ " HTTP/1.0\" 200 2326";
+	}
+
+	/**
+	 * Test case: enrich a log in chunks much smaller than the log, with lines
+	 * crossing the chunk boundaries, on several parser and lookup threads.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>Every line is written once, in log order, with the location of its
+	 * client appended.</li>
+	 * <li>Empty lines are skipped, CRLF line ends and a missing last line end
+	 * are accepted.</li>
+	 * <li>Quotes in the location are escaped, lines of addresses not found
+	 * get - as location.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testEnrich() throws IOException, AppException {
+		LocationsAnswer.expectLocations(locationService,
+				"SZEGED \"BELVAROS\"");
+
+		StringBuilder log = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < LINE_COUNT; i++) {
+			log.append(logLine(i)).append(i % 10 == 0 ? "\r\n" : "\n");
+			expected.append(logLine(i)).append(" \"").append(i % 256)
+					.append("\" \"CSONGRAD\" \"SZEGED \\\"BELVAROS\\\"\" 46.25 20.15\n");
+			if (i % 100 == 0) {
+				log.append('\n');
+			}
+		}
+		log.append(INVALID_IP4_ADDRESS + " - - \"GET / HTTP/1.0\" 200 1");
+		expected.append(INVALID_IP4_ADDRESS
+				+ " - - \"GET / HTTP/1.0\" 200 1 \"-\" \"-\" \"-\" - -\n");
+		Files.write(logFile.toPath(), log.toString().getBytes(
+				StandardCharsets.UTF_8));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		long lineCount = new LogEnricher(locationService, 0, 2, 3, 1000)
+				.enrich(logFile, Channels.newChannel(output));
+
+		Assert.isTrue(lineCount == LINE_COUNT + 1, "every line must be written");
+		Assert.isTrue(
+				expected.toString().equals(
+						new String(output.toByteArray(), StandardCharsets.UTF_8)),
+				"lines must be enriched in log order");
+	}
+
+	/**
+	 * Test case: the lookup of a chunk fails.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The exception of the service is thrown by the enricher.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testEnrich_LookupFailure() throws IOException, AppException {
+		AppException serviceError = new AppException();
+		serviceError.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
+				"LogEnricherTest", "database down", null));
+		expect(locationService.getLocations(EasyMock
+				.<Collection<String>> anyObject()))
+				.andThrow(serviceError).anyTimes();
+		replay(locationService);
+
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < LINE_COUNT; i++) {
+			log.append(logLine(i)).append('\n');
+		}
+		Files.write(logFile.toPath(), log.toString().getBytes(
+				StandardCharsets.UTF_8));
+
+		AppException receivedException = null;
+		try {
+			new LogEnricher(locationService, 0, 1, 2, 1000).enrich(logFile,
+					Channels.newChannel(new ByteArrayOutputStream()));
+		} catch (AppException ae) {
+			receivedException = ae;
+		}
+
+		Assert.isTrue(receivedException == serviceError,
+				"enricher must throw the exception of the service");
+	}
+
+	/**
+	 * Test case: the lookup of a chunk fails with an error.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The error is thrown by the enricher instead of waiting for the
+	 * chunk forever.</li>
+	 * </ul>
+	 */
+	@Test(timeout = 10000)
+	public void testEnrich_LookupError() throws IOException, AppException {
+		Error serviceError = new OutOfMemoryError("lookup");
+		expect(locationService.getLocations(EasyMock
+				.<Collection<String>> anyObject())).andThrow(serviceError)
+				.anyTimes();
+		replay(locationService);
+
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < LINE_COUNT; i++) {
+			log.append(logLine(i)).append('\n');
+		}
+		Files.write(logFile.toPath(), log.toString().getBytes(
+				StandardCharsets.UTF_8));
+
+		Error receivedError = null;
+		try {
+			new LogEnricher(locationService, 0, 1, 2, 1000).enrich(logFile,
+					Channels.newChannel(new ByteArrayOutputStream()));
+		} catch (Error e) {
+			receivedError = e;
+		}
+
+		Assert.isTrue(receivedError == serviceError,
+				"enricher must throw the error of the service");
+	}
+}
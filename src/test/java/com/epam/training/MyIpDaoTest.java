@@ -0,0 +1,192 @@
+package com.epam.training;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.Assert;
+
+import com.epam.training.dao.url.UrlMyIpDao;
+import com.epam.training.exception.AppException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class MyIpDaoTest {
+
+	/** Instance of tested UNIT, with a controllable clock */
+	private TestUrlMyIpDao urlMyIpDao;
+
+	/** Local stub of the remote service */
+	private HttpServer server;
+
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	private volatile String responseIp = "1.2.3.4";
+	private volatile int responseCode = 200;
+	private volatile long responseDelayMillis = 0;
+
+	/** Constants */
+	private static final long TIME_TO_LIVE_SECONDS = 60;
+	private static final int FAILURE_THRESHOLD = 2;
+	private static final long OPEN_SECONDS = 30;
+	private static final int READ_TIMEOUT_MILLIS = 300;
+	private static final long ONE_SECOND = 1000000000L;
+
+	private static class TestUrlMyIpDao extends UrlMyIpDao {
+		private volatile long now = 0;
+
+		@Override
+		protected long now() {
+			return now;
+		}
+	}
+
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/csv", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				requestCount.incrementAndGet();
+				try {
+					Thread.sleep(responseDelayMillis);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				byte[] body = ("\"" + responseIp + "\",\"HU\",\"Hungary\"\r\n")
+						.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(responseCode, body.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(body);
+				}
+			}
+		});
+		server.start();
+
+		urlMyIpDao = new TestUrlMyIpDao();
+		ReflectionTestUtils.setField(urlMyIpDao, "url", "http://127.0.0.1:"
+				+ server.getAddress().getPort() + "/csv");
+		ReflectionTestUtils.setField(urlMyIpDao, "readTimeoutMillis",
+				READ_TIMEOUT_MILLIS);
+		ReflectionTestUtils.setField(urlMyIpDao, "timeToLiveSeconds",
+				TIME_TO_LIVE_SECONDS);
+		ReflectionTestUtils.setField(urlMyIpDao, "failureThreshold",
+				FAILURE_THRESHOLD);
+		ReflectionTestUtils.setField(urlMyIpDao, "openSeconds", OPEN_SECONDS);
+	}
+
+	@After
+	public void tearDown() {
+		urlMyIpDao.shutdown();
+		server.stop(0);
+	}
+
+	/**
+	 * Waits for the background refresh to reach the stub and finish
+	 */
+	private void awaitRequestCount(int expected) throws InterruptedException {
+		for (int i = 0; i < 500 && requestCount.get() < expected; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+	}
+
+	/**
+	 * Test case: find the address repeatedly within and after the time to
+	 * live.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The remote service is called once within the time to live.</li>
+	 * <li>After it the cached address is returned while it is fetched again in
+	 * the background.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFind_CachedAndRefreshed() throws AppException,
+			InterruptedException {
+		Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()));
+		urlMyIpDao.now += (TIME_TO_LIVE_SECONDS - 1) * ONE_SECOND;
+		Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()));
+		Assert.isTrue(requestCount.get() == 1,
+				"remote service must be called once within time to live");
+
+		responseIp = "5.6.7.8";
+		urlMyIpDao.now += 2 * ONE_SECOND;
+		Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()),
+				"cached address must be returned while refreshing");
+		awaitRequestCount(2);
+		Assert.isTrue("5.6.7.8".equals(urlMyIpDao.find()));
+		Assert.isTrue(requestCount.get() == 2);
+	}
+
+	/**
+	 * Test case: the remote service answers slower than the read timeout.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>An exception is thrown soon after the read timeout.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFind_Timeout() {
+		responseDelayMillis = 5000;
+
+		long start = System.currentTimeMillis();
+		AppException receivedException = null;
+		try {
+			urlMyIpDao.find();
+		} catch (AppException ae) {
+			receivedException = ae;
+		}
+
+		Assert.notNull(receivedException, "find must return an exception");
+		Assert.isTrue(System.currentTimeMillis() - start < 3000,
+				"find must not wait for the slow remote service");
+	}
+
+	/**
+	 * Test case: the remote service fails after the address was fetched.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The last known address is returned.</li>
+	 * <li>After the failure threshold the remote service is not called until
+	 * the open period is over.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testFind_CircuitOpen() throws AppException,
+			InterruptedException {
+		Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()));
+
+		responseCode = 500;
+		for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+			urlMyIpDao.now += TIME_TO_LIVE_SECONDS * ONE_SECOND;
+			Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()),
+					"last known address must be returned");
+			awaitRequestCount(2 + i);
+		}
+		Assert.isTrue(urlMyIpDao.isCircuitOpen());
+
+		urlMyIpDao.now += ONE_SECOND;
+		Assert.isTrue("1.2.3.4".equals(urlMyIpDao.find()));
+		Thread.sleep(100);
+		Assert.isTrue(requestCount.get() == 1 + FAILURE_THRESHOLD,
+				"remote service must not be called while circuit is open");
+
+		responseCode = 200;
+		responseIp = "5.6.7.8";
+		urlMyIpDao.now += OPEN_SECONDS * ONE_SECOND;
+		urlMyIpDao.find();
+		awaitRequestCount(2 + FAILURE_THRESHOLD);
+		Assert.isTrue("5.6.7.8".equals(urlMyIpDao.find()));
+		Assert.isTrue(!urlMyIpDao.isCircuitOpen());
+	}
+}
@@ -0,0 +1,235 @@
+package com.epam.training;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.util.Assert;
+
+import com.epam.training.dao.LocationDao;
+import com.epam.training.dao.MyIpDao;
+import com.epam.training.domain.LocationRange;
+import com.epam.training.exception.AppException;
+import com.epam.training.utils.trace.Span;
+import com.epam.training.utils.trace.Trace;
+import com.epam.training.utils.trace.TracedInterfacesPointcut;
+import com.epam.training.utils.trace.Tracer;
+import com.epam.training.utils.trace.TracingExecutor;
+import com.epam.training.utils.trace.TracingMethodInterceptor;
+
+public class TracerTest {
+
+	/** Constants */
+	private static final long CONVERTED_IP4_ADDRESS = 1370882050L;
+	private static final Runnable NOOP = new Runnable() {
+		public void run() {
+		}
+	};
+
+	/**
+	 * Test case: trace three requests of different durations, keeping the
+	 * slowest two.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The two slowest traces are kept, the slowest first.</li>
+	 * <li>The child spans are kept under the root span and written with the
+	 * request id.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testSlowestTraces() throws InterruptedException, IOException {
+		Tracer tracer = new Tracer(1, 2);
+
+		traceRequest(tracer, "slowest", 100);
+		traceRequest(tracer, "fast", 0);
+		traceRequest(tracer, "slow", 50);
+
+		List<Trace> traces = tracer.getSlowestTraces();
+		Assert.isTrue(tracer.getFinishedTraces() == 3);
+		Assert.isTrue(traces.size() == 2, "only the slowest two are kept");
+		Assert.isTrue("slowest".equals(traces.get(0).getRequestId()));
+		Assert.isTrue("slow".equals(traces.get(1).getRequestId()));
+		Assert.isTrue(traces.get(0).getDurationNanos() >= TimeUnit.MILLISECONDS
+				.toNanos(100));
+		List<Span> spans = traces.get(0).getSpans();
+		Assert.isTrue(spans.size() == 2);
+		Assert.isTrue("GET /api/v1/location".equals(spans.get(0)
+				.getDescription()));
+		Assert.isTrue("TracerTest.sleep 100".equals(spans.get(1)
+				.getDescription()));
+
+		StringWriter writer = new StringWriter();
+		tracer.writeText(writer);
+		String text = writer.toString();
+		Assert.isTrue(text.startsWith("# 2 slowest of 3 traced requests"));
+		Assert.isTrue(text.contains("trace slowest "));
+		Assert.isTrue(text.contains("    TracerTest.sleep 100 ["), text);
+		Assert.isTrue(!text.contains("trace fast "));
+	}
+
+	private void traceRequest(Tracer tracer, String requestId, long millis)
+			throws InterruptedException {
+		Span root = tracer.startTrace("GET", "/api/v1/location", requestId);
+		Span span = tracer.startSpan(TracerTest.class, "sleep",
+				String.valueOf(millis));
+		Thread.sleep(millis);
+		tracer.endSpan(span, null);
+		tracer.endSpan(root, null);
+	}
+
+	/**
+	 * Test case: trace a request with 0 sample rate.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>No spans are started and no trace is kept.</li>
+	 * <li>The thread has no current span after the request.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testUnsampled() {
+		Tracer tracer = new Tracer(0, 2);
+
+		Span root = tracer.startTrace("GET", "/", null);
+		Assert.notNull(root);
+		Assert.isNull(root.getRequestId(), "request must not be sampled");
+		Assert.isNull(tracer.startSpan(TracerTest.class, "child", null));
+		Assert.isTrue(tracer.wrap(NOOP, "executor") != null);
+		tracer.endSpan(root, null);
+
+		Assert.isNull(tracer.suspend(), "current span must be cleared");
+		Assert.isTrue(tracer.getFinishedTraces() == 0);
+		Assert.isTrue(tracer.getSlowestTraces().isEmpty());
+	}
+
+	/**
+	 * Test case: run a task of a traced request on a TracingExecutor, the
+	 * request ends before the task runs. Submit a task to the shut down
+	 * executor.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The trace is finished when the task has run, with the queue and run
+	 * spans of the task and the span started by the task.</li>
+	 * <li>The rejected task finishes its trace with an error in the queue
+	 * span, the RejectedExecutionException is passed to the caller.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testExecutor() throws InterruptedException, IOException {
+		final Tracer tracer = new Tracer(1, 2);
+		final CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		Executor executor = new TracingExecutor(executorService, tracer,
+				"lookupExecutor");
+
+		Span root = tracer.startTrace("GET", "/async", "async");
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					started.await();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				tracer.endSpan(tracer.startSpan(TracerTest.class, "lookup",
+						null), null);
+			}
+		});
+		tracer.endSpan(root, null);
+		Assert.isTrue(tracer.getFinishedTraces() == 0,
+				"trace must wait for the task");
+		started.countDown();
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+		Assert.isTrue(tracer.getFinishedTraces() == 1);
+		List<Span> spans = tracer.getSlowestTraces().get(0).getSpans();
+		Assert.isTrue(spans.size() == 4);
+		Assert.isTrue("lookupExecutor queue".equals(spans.get(1)
+				.getDescription()));
+		Assert.isTrue("lookupExecutor run".equals(spans.get(2)
+				.getDescription()));
+		Assert.isTrue("TracerTest.lookup".equals(spans.get(3)
+				.getDescription()));
+
+		root = tracer.startTrace("GET", "/async", "busy");
+		try {
+			executor.execute(NOOP);
+			Assert.isTrue(false, "task must be rejected");
+		} catch (RejectedExecutionException ree) {
+			// expected, the executor is shut down
+		}
+		tracer.endSpan(root, null);
+		Assert.isTrue(tracer.getFinishedTraces() == 2);
+		StringWriter writer = new StringWriter();
+		tracer.writeText(writer);
+		Assert.isTrue(writer.toString().contains(
+				"lookupExecutor queue [" + Thread.currentThread().getName()
+						+ "] error=RejectedExecutionException"),
+				writer.toString());
+	}
+
+	/**
+	 * Test case: call a dao proxied with the tracing advice in a traced
+	 * request, the second call fails.
+	 *
+	 * Expected result:
+	 * <ul>
+	 * <li>The calls of the traced interface are recorded as spans named after
+	 * the target class and the method, the failed one with its error.</li>
+	 * <li>The AppException is passed to the caller.</li>
+	 * </ul>
+	 */
+	@Test
+	public void testMethodInterceptor() throws AppException, IOException {
+		Tracer tracer = new Tracer(1, 2);
+		LocationDao locationDao = createMock(LocationDao.class);
+		LocationRange locationRange = new LocationRange(0, 0xFFFFFFFFL, null);
+		expect(locationDao.findRange(CONVERTED_IP4_ADDRESS)).andReturn(
+				locationRange);
+		expect(locationDao.findRange(CONVERTED_IP4_ADDRESS)).andThrow(
+				new AppException());
+		replay(locationDao);
+		ProxyFactory proxyFactory = new ProxyFactory(locationDao);
+		proxyFactory.addAdvisor(new DefaultPointcutAdvisor(
+				new TracedInterfacesPointcut(new Class<?>[] {
+						LocationDao.class, MyIpDao.class }),
+				new TracingMethodInterceptor(tracer)));
+		LocationDao tracedDao = (LocationDao) proxyFactory.getProxy();
+
+		Span root = tracer.startTrace("GET", "/", "dao");
+		Assert.isTrue(tracedDao.findRange(CONVERTED_IP4_ADDRESS) == locationRange);
+		try {
+			tracedDao.findRange(CONVERTED_IP4_ADDRESS);
+			Assert.isTrue(false, "AppException must be passed on");
+		} catch (AppException ae) {
+			// expected
+		}
+		tracer.endSpan(root, null);
+		verify(locationDao);
+
+		List<Span> spans = tracer.getSlowestTraces().get(0).getSpans();
+		Assert.isTrue(spans.size() == 3);
+		Assert.isTrue(spans.get(1).getDescription().endsWith(".findRange"));
+		StringWriter writer = new StringWriter();
+		tracer.writeText(writer);
+		Assert.isTrue(writer.toString().contains(
+				".findRange [" + Thread.currentThread().getName()
+						+ "] error=AppException"), writer.toString());
+	}
+}
@@ -1,11 +1,34 @@
 package com.epam.training;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
 import junit.framework.Assert;
 
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 
+import com.epam.training.domain.LocationEntity;
+import com.epam.training.exception.AppException;
+import com.epam.training.exception.ClientErrorException;
+import com.epam.training.exception.ErrorInfoFactory;
+import com.epam.training.utils.AccessLog;
+import com.epam.training.utils.ClientAddressResolver;
 import com.epam.training.utils.Ip4Converter;
+import com.epam.training.utils.Ip4Parser;
+import com.epam.training.utils.Ip6Parser;
+import com.epam.training.utils.LatencyHistogram;
+import com.epam.training.utils.LineChunk;
+import com.epam.training.utils.LookupMetrics;
 import com.epam.training.utils.Validator;
 
 public class UtilityTest {
@@ -14,6 +37,23 @@ public class UtilityTest {
 	private static final String VALID_IP4_ADDRESS = "192.168.100.199";
 	private static final String BAD_IP4_ADDRESS = "25a.f56.0.3";
 
+	/** The former validator regexp, reference of the parser */
+	private static final Pattern IP4_VALIDATOR_REGEXP = Pattern
+			.compile("^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$");
+
+	private static final String[] EDGE_CASES = { "0.0.0.0",
+			"255.255.255.255", "1.2.3.4", "01.002.099.199", "000.000.000.000",
+			"1.2.3.04", "255.255.255.256", "300.1.1.1", "1.2.3", "1.2.3.4.5",
+			"1.2.3.", ".1.2.3", "1..2.3", "1.2.3.0004", "1.2.3.4\n",
+			" 1.2.3.4", "+1.2.3.4", "-1.2.3.4", "1.2.3.a", "1,2.3.4",
+			"1.2.3.\u0664", "255.255.255.2555", "9999.1.1.1" };
+
+	private static final String[] INVALID_IP6_ADDRESSES = { "", ":", ":::",
+			"1:::2", "1::2::3", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7",
+			"12345::", "1:2", "1::2:", ":1::2", "fe80::1%eth0", "[::1]",
+			"g::1", "::1.2.3", "::256.1.1.1", "1:2:3:4:5:6:7:1.2.3.4",
+			"1.2.3.4" };
+
 	private Ip4Converter converter;
 
 	private Validator validator;
@@ -81,58 +121,343 @@ public class UtilityTest {
 				validator.validateIp4String(""));
 	}
 
-	/** Test case: convert a null string
+	/** Test case: convert null, empty, valid, invalid and bad ip strings with
+     * the deprecated double adapter
      * 
      * Expected result: 
-     * converter returns 0.0
+     * converter returns 0.0 for null, empty and bad strings, a double greater
+     * than 0.0 for valid and invalid ones
      */
 	@Test
-	public void testNullStringIp4AddressConverter() {
+	@SuppressWarnings("deprecation")
+	public void testIp4AddressConverter_DoubleAdapter() {
 		Assert.assertTrue("test not failed on a null string",
 				converter.convertFromStringToDouble(null) == 0.0);
+		Assert.assertTrue("test not failed on an empty string",
+				converter.convertFromStringToDouble("") == 0.0);
+		Assert.assertTrue("test failed on a convertable IP4 address",
+				converter.convertFromStringToDouble(VALID_IP4_ADDRESS) > 0.0);
+		Assert.assertTrue("test failed on a convertable IP4 address",
+				converter.convertFromStringToDouble(INVALID_IP4_ADDRESS) > 0.0);
+		Assert.assertTrue("test not failed on a inconvertable IP4 address",
+				converter.convertFromStringToDouble(BAD_IP4_ADDRESS) == 0.0);
 	}
 
-	/** Test case: convert an empty string
+	/** Test case: parse edge cases with the single pass parser
      * 
      * Expected result: 
-     * converter returns 0.0
+     * parser accepts exactly the strings the former regexp matched
      */
 	@Test
-	public void testEmptyStringIp4AddressConverter() {
-		Assert.assertTrue("test not failed on an empty string",
-				converter.convertFromStringToDouble("") == 0.0);
+	public void testParserSameAsRegexp() {
+		for (String ip4Address : EDGE_CASES) {
+			Assert.assertEquals("parser differs from regexp on: " + ip4Address,
+					IP4_VALIDATOR_REGEXP.matcher(ip4Address).matches(),
+					Ip4Parser.isValid(ip4Address));
+		}
 	}
 
-	/** Test case: convert a valid ip string
+	/** Test case: convert valid ip strings
      * 
      * Expected result: 
-     * converter returns a double greater than 0.0
+     * parser and converter return the unsigned 32 bit address
      */
 	@Test
-	public void testValidIp4AddressConverter() {
-		Assert.assertTrue("test failed on a convertable IP4 address",
-				converter.convertFromStringToDouble(VALID_IP4_ADDRESS) > 0.0);
+	public void testParserConversion() {
+		Assert.assertEquals(3232261319L, Ip4Parser.parse(VALID_IP4_ADDRESS));
+		Assert.assertEquals(4294967295L, Ip4Parser.parse("255.255.255.255"));
+		Assert.assertEquals(0L, Ip4Parser.parse("0.0.0.0"));
+		Assert.assertEquals(Ip4Parser.INVALID, Ip4Parser.parse(null));
+		Assert.assertEquals("converter differs from parser", 3232261319L,
+				converter.convertFromStringToLong(VALID_IP4_ADDRESS));
 	}
 
-	/** Test case: convert an invalid ip string
+	/** Test case: parse valid ip6 strings
      * 
      * Expected result: 
-     * converter returns a double greater than 0.0
+     * full, compressed and ip4-mapped forms give the high and low 64 bits
      */
 	@Test
-	public void testInvalidIp4AddressConverter() {
-		Assert.assertTrue("test failed on a convertable IP4 address",
-				converter.convertFromStringToDouble(INVALID_IP4_ADDRESS) > 0.0);
+	public void testIp6Parser() {
+		assertIp6(0L, 0L, "::");
+		assertIp6(0L, 1L, "::1");
+		assertIp6(0x0001000000000000L, 0L, "1::");
+		assertIp6(0x20010db800000000L, 0x0000ff0000428329L,
+				"2001:0db8:0000:0000:0000:ff00:0042:8329");
+		assertIp6(0x20010db800000000L, 0x0000ff0000428329L,
+				"2001:DB8::FF00:42:8329");
+		assertIp6(0x0001000200030004L, 0x0005000600070008L,
+				"1:2:3:4:5:6:7:8");
+		assertIp6(0x0001000000000000L, 0x0000000000000008L, "1::8");
+		assertIp6(0xffffffffffffffffL, 0xffffffffffffffffL,
+				"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+		assertIp6(0L, 0x0000ffffc0a864c7L, "::ffff:192.168.100.199");
+		assertIp6(0x0064ff9b00000000L, 0x00000000c0a864c7L,
+				"64:ff9b::192.168.100.199");
+
+		long[] address = new long[2];
+		Assert.assertTrue(Ip6Parser.parse("::ffff:192.168.100.199", address));
+		Assert.assertTrue("ip4-mapped address not recognized",
+				Ip6Parser.isIp4Mapped(address[Ip6Parser.HIGH],
+						address[Ip6Parser.LOW]));
+		Assert.assertEquals(Ip4Parser.parse(VALID_IP4_ADDRESS),
+				Ip6Parser.toIp4Address(address[Ip6Parser.LOW]));
+		Assert.assertFalse("native address taken for ip4-mapped",
+				Ip6Parser.isIp4Mapped(0L, 1L));
 	}
 
-	/** Test case: convert a bad ip string
+	/** Test case: parse invalid ip6 strings
      * 
      * Expected result: 
-     * converter returns a double greater than 0.0
+     * parser rejects all of them
      */
 	@Test
-	public void testBadIp4AddressConverter() {
-		Assert.assertTrue("test not failed on a inconvertable IP4 address",
-				converter.convertFromStringToDouble(BAD_IP4_ADDRESS) == 0.0);
+	public void testIp6ParserInvalid() {
+		long[] address = new long[2];
+		Assert.assertFalse(Ip6Parser.parse(null, address));
+		for (String ip6Address : INVALID_IP6_ADDRESSES) {
+			Assert.assertFalse("parser accepted: " + ip6Address,
+					Ip6Parser.parse(ip6Address, address));
+		}
+	}
+
+	/** Test case: parse 128 bit decimal numbers of the ip6 csv files
+     * 
+     * Expected result: 
+     * numbers up to 2^128-1 are split into high and low 64 bits, larger
+     * numbers and non digits are rejected
+     */
+	@Test
+	public void testIp6DecimalParser() {
+		long[] address = new long[2];
+		Assert.assertTrue(Ip6Parser.parseDecimal("0", address));
+		Assert.assertEquals(0L, address[Ip6Parser.HIGH]);
+		Assert.assertEquals(0L, address[Ip6Parser.LOW]);
+
+		Assert.assertTrue(Ip6Parser.parseDecimal("18446744073709551616",
+				address));
+		Assert.assertEquals(1L, address[Ip6Parser.HIGH]);
+		Assert.assertEquals(0L, address[Ip6Parser.LOW]);
+
+		Assert.assertTrue(Ip6Parser.parseDecimal(
+				"42540766411282592856903984951653826561", address));
+		Assert.assertEquals(0x20010db800000000L, address[Ip6Parser.HIGH]);
+		Assert.assertEquals(1L, address[Ip6Parser.LOW]);
+
+		Assert.assertTrue(Ip6Parser.parseDecimal(
+				"340282366920938463463374607431768211455", address));
+		Assert.assertEquals(-1L, address[Ip6Parser.HIGH]);
+		Assert.assertEquals(-1L, address[Ip6Parser.LOW]);
+
+		Assert.assertFalse(Ip6Parser.parseDecimal(
+				"340282366920938463463374607431768211456", address));
+		Assert.assertFalse(Ip6Parser.parseDecimal(
+				"999999999999999999999999999999999999999", address));
+		Assert.assertFalse(Ip6Parser.parseDecimal("", address));
+		Assert.assertFalse(Ip6Parser.parseDecimal("12a", address));
+	}
+
+	/** Test case: resolve client address behind trusted and untrusted proxies
+     * 
+     * Expected result: 
+     * forwarding headers are only taken from trusted proxies, the nearest
+     * untrusted hop is the client, Forwarded takes precedence over
+     * X-Forwarded-For
+     */
+	@Test
+	public void testClientAddressResolver() {
+		ClientAddressResolver resolver = new ClientAddressResolver(
+				"10.0.0.0/8, 2001:db8::/32, 192.0.2.7", false);
+
+		// direct client, headers are ignored
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr("81.182.1.2");
+		request.addHeader("X-Forwarded-For", "1.1.1.1");
+		Assert.assertEquals("81.182.1.2", resolver.resolve(request));
+
+		// trusted proxies, spoofed leftmost entry is skipped
+		request = new MockHttpServletRequest();
+		request.setRemoteAddr("10.1.2.3");
+		request.addHeader("X-Forwarded-For", "1.1.1.1, 81.182.1.2:5555");
+		request.addHeader("X-Forwarded-For", "192.0.2.7");
+		Assert.assertEquals("81.182.1.2", resolver.resolve(request));
+
+		// Forwarded with ip6 hops
+		request = new MockHttpServletRequest();
+		request.setRemoteAddr("2001:db8::1");
+		request.addHeader("Forwarded",
+				"for=\"[2a00:1450::8a]:4711\";proto=https, for=10.0.0.1;by=10.0.0.2");
+		request.addHeader("X-Forwarded-For", "1.1.1.1");
+		Assert.assertEquals("2a00:1450::8a", resolver.resolve(request));
+
+		// obfuscated hop, the nearest known one is kept
+		request = new MockHttpServletRequest();
+		request.setRemoteAddr("10.1.2.3");
+		request.addHeader("Forwarded", "for=1.1.1.1, for=_hidden, for=10.0.0.1");
+		Assert.assertEquals("10.0.0.1", resolver.resolve(request));
+
+		// no trusted proxies configured
+		request = new MockHttpServletRequest();
+		request.setRemoteAddr("10.1.2.3");
+		request.addHeader("X-Forwarded-For", "81.182.1.2");
+		Assert.assertEquals("10.1.2.3",
+				new ClientAddressResolver("", false).resolve(request));
+	}
+
+	/** Test case: remote lookup fallback and invalid proxy settings
+     * 
+     * Expected result: 
+     * remote lookup is only needed for private addresses when enabled,
+     * invalid trusted proxies are rejected
+     */
+	@Test
+	public void testClientAddressResolverSettings() {
+		ClientAddressResolver resolver = new ClientAddressResolver("", true);
+		Assert.assertTrue(resolver.isRemoteLookupNeeded("127.0.0.1"));
+		Assert.assertTrue(resolver.isRemoteLookupNeeded("192.168.100.199"));
+		Assert.assertTrue(resolver.isRemoteLookupNeeded("::1"));
+		Assert.assertFalse(resolver.isRemoteLookupNeeded("81.182.1.2"));
+		Assert.assertFalse(new ClientAddressResolver("", false)
+				.isRemoteLookupNeeded("127.0.0.1"));
+
+		for (String trustedProxies : new String[] { "10.0.0.0/33",
+				"10.0.0.0/x", "proxy.local", "2001:db8::/129" }) {
+			try {
+				new ClientAddressResolver(trustedProxies, false);
+				Assert.fail("accepted trusted proxies: " + trustedProxies);
+			} catch (IllegalArgumentException iae) {
+				// expected
+			}
+		}
+	}
+
+	/** Test case: access log with sampling off and on
+     * 
+     * Expected result: 
+     * without sampling only service errors are logged, with full sampling
+     * every lookup is logged with its result, invalid rates are rejected
+     */
+	@Test
+	public void testAccessLog() {
+		StringWriter lines = new StringWriter();
+		WriterAppender appender = new WriterAppender(new PatternLayout(
+				"%m%n"), lines);
+		Logger.getLogger("com.epam.training.access").addAppender(appender);
+		try {
+			AppException clientError = new ClientErrorException();
+			clientError.addInfo(ErrorInfoFactory
+					.getIllegalClientParameterErrorInfo("UtilityTest",
+							"invalid ip address", "invalid", "ip", "x"));
+			AppException serviceError = new AppException();
+			serviceError.addInfo(ErrorInfoFactory.getJdbcDaoErrorInfo(
+					"UtilityTest", "database down", null));
+			LocationEntity locationEntity = new LocationEntity();
+			locationEntity.setCountryCode("HU");
+
+			AccessLog accessLog = new AccessLog(0);
+			accessLog.log("api", "x", null, clientError, System.nanoTime());
+			accessLog.log("api", "1.2.3.4", locationEntity, null,
+					System.nanoTime());
+			Assert.assertEquals("", lines.toString());
+			accessLog.log("api", "1.2.3.4", null, serviceError,
+					System.nanoTime());
+			Assert.assertTrue(lines.toString().startsWith(
+					"handler=api ip=1.2.3.4 result=JdbcDaoError micros="));
+
+			lines.getBuffer().setLength(0);
+			new AccessLog(1).log("page", "1.2.3.4", locationEntity, null,
+					System.nanoTime());
+			Assert.assertTrue(lines.toString().startsWith(
+					"handler=page ip=1.2.3.4 result=OK country=HU micros="));
+		} finally {
+			Logger.getLogger("com.epam.training.access").removeAppender(
+					appender);
+		}
+
+		for (double sampleRate : new double[] { -0.1, 1.1 }) {
+			try {
+				new AccessLog(sampleRate);
+				Assert.fail("accepted sample rate: " + sampleRate);
+			} catch (IllegalArgumentException iae) {
+				// expected
+			}
+		}
+	}
+
+	/**
+     * Test case: 
+     * record a million durations from 1 ns to 1 ms into a histogram
+     * 
+     * Expected result: 
+     * count, sum and max are exact, quantiles are within 4 percent
+     * of the exact values, an empty histogram reports 0
+     */
+	@Test
+	public void testLatencyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getSnapshot().getValueAt(0.99));
+
+		long sum = 0;
+		for (long nanos = 1; nanos <= 1000000; nanos++) {
+			histogram.record(nanos);
+			sum += nanos;
+		}
+		histogram.record(-1);
+
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		Assert.assertEquals(1000001, snapshot.getCount());
+		Assert.assertEquals(sum, snapshot.getSum());
+		Assert.assertEquals(1000000, snapshot.getMax());
+		for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+			long exact = (long) (quantile * 1000000);
+			long value = snapshot.getValueAt(quantile);
+			Assert.assertTrue("p" + quantile + " is " + value,
+					value >= exact && value <= exact * 1.04);
+		}
+		Assert.assertEquals(1000000, snapshot.getValueAt(1));
+
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getSnapshot().getCount());
+	}
+
+	/**
+     * Test case: 
+     * record stages and outcomes and write the metrics as text
+     * 
+     * Expected result: 
+     * every stage and outcome is written with its recorded values
+     */
+	@Test
+	public void testLookupMetricsText() throws IOException {
+		LookupMetrics lookupMetrics = new LookupMetrics();
+		long startNanos = System.nanoTime() - 2000000;
+		lookupMetrics.record(LookupMetrics.Stage.DAO_LOOKUP, startNanos);
+		lookupMetrics.count(LookupMetrics.Outcome.HIT);
+		lookupMetrics.count(LookupMetrics.Outcome.INVALID_INPUT, 3);
+
+		StringWriter text = new StringWriter();
+		lookupMetrics.writeText(text);
+
+		Assert.assertTrue(text.toString().contains(
+				"geolocation_stage_seconds_count{stage=\"dao_lookup\"} 1\n"));
+		Assert.assertTrue(text.toString().contains(
+				"geolocation_stage_seconds_count{stage=\"view_render\"} 0\n"));
+		Assert.assertTrue(text.toString().contains(
+				"geolocation_lookups_total{outcome=\"hit\"} 1\n"));
+		Assert.assertTrue(text.toString().contains(
+				"geolocation_lookups_total{outcome=\"invalid_input\"} 3\n"));
+		Assert.assertEquals(1, lookupMetrics.getHits());
+		Assert.assertTrue(lookupMetrics.getStageLatencyMicros("dao_lookup",
+				0.5) >= 2000);
+	}
+
+	private static void assertIp6(long high, long low, String ip6Address) {
+		long[] address = new long[2];
+		Assert.assertTrue("parser rejected: " + ip6Address,
+				Ip6Parser.parse(ip6Address, address));
+		Assert.assertEquals("high bits of " + ip6Address, high,
+				address[Ip6Parser.HIGH]);
+		Assert.assertEquals("low bits of " + ip6Address, low,
+				address[Ip6Parser.LOW]);
 	}
 }